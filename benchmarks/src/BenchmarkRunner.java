@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A small benchmark harness shared by the benchmark programs of this project.
+ * <p>
+ * Each benchmark is run for a number of warmup samples followed by measured samples. A sample
+ * prepares a batch of fresh states outside the timed region, runs the benchmark body once per
+ * state and divides the elapsed time by the number of operations performed. The mean time per
+ * operation, its standard deviation and the bytes allocated per operation are printed and
+ * appended as a CSV row to a results file, so runs can be compared over time.
+ */
+public class BenchmarkRunner {
+    /** The header of the CSV results file. */
+    private static final String CSV_HEADER =
+            "timestamp,suite,benchmark,implementation,params,nsPerOp,error,allocBytesPerOp,samples";
+
+    /** The minimum number of operations timed in a single sample. */
+    private static final int MIN_OPS_PER_SAMPLE = 100_000;
+
+    /** Receives benchmark results so that the JIT cannot eliminate the measured work. */
+    private static volatile long sink;
+
+    /** The name of the benchmark suite, written to every result row. */
+    private final String suite;
+
+    /** The CSV file the results are appended to. */
+    private final Path resultsFile;
+
+    /** The number of warmup samples per benchmark. */
+    private final int warmupSamples;
+
+    /** The number of measured samples per benchmark. */
+    private final int samples;
+
+    /** The allocation counter of the JVM, or null if it is not available. */
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * Constructs a new BenchmarkRunner.
+     *
+     * @param suite the name of the benchmark suite
+     * @param resultsFile the CSV file the results are appended to
+     * @param warmupSamples the number of warmup samples per benchmark
+     * @param samples the number of measured samples per benchmark
+     * @throws IllegalArgumentException if there are no measured samples or the warmup count is negative
+     */
+    public BenchmarkRunner(String suite, Path resultsFile, int warmupSamples, int samples) {
+        if (warmupSamples < 0) {
+            throw new IllegalArgumentException("Warmup samples cannot be negative.");
+        }
+        if (samples < 1) {
+            throw new IllegalArgumentException("At least one measured sample is required.");
+        }
+        this.suite = suite;
+        this.resultsFile = resultsFile;
+        this.warmupSamples = warmupSamples;
+        this.samples = samples;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    /**
+     * Runs a benchmark and records its result.
+     *
+     * @param benchmark the name of the benchmark, e.g. the measured operation
+     * @param implementation the name of the implementation under test
+     * @param params the parameters of the run, e.g. {@code "size=1000;hitRatio=0.5"}
+     * @param opsPerInvocation the number of operations performed by one call of {@code body}
+     * @param setup creates a fresh state for one call of {@code body}; not timed
+     * @param body performs the measured operations on a state and returns a checksum
+     * @param <S> the type of the state
+     * @return the mean time per operation in nanoseconds
+     */
+    public <S> double run(String benchmark, String implementation, String params, long opsPerInvocation,
+                          Supplier<S> setup, ToLongFunction<S> body) {
+        int batch = (int) Math.max(1, MIN_OPS_PER_SAMPLE / Math.max(1, opsPerInvocation));
+        for (int i = 0; i < warmupSamples; i++) {
+            sample(batch, setup, body);
+        }
+        double[] nanosPerOp = new double[samples];
+        long allocated = 0;
+        for (int i = 0; i < samples; i++) {
+            long[] result = sample(batch, setup, body);
+            nanosPerOp[i] = (double) result[0] / (batch * opsPerInvocation);
+            allocated += result[1];
+        }
+
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= samples;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = samples > 1 ? Math.sqrt(variance / (samples - 1)) : 0;
+        double allocPerOp = threadBean == null ? Double.NaN
+                : (double) allocated / ((long) samples * batch * opsPerInvocation);
+
+        System.out.printf("%-12s %-22s %-36s %12.2f ns/op +- %-10.2f %10.2f B/op%n",
+                benchmark, implementation, params, mean, error, allocPerOp);
+        record(String.format("%s,%s,%s,%s,%s,%.3f,%.3f,%.3f,%d", Instant.now(), suite, benchmark,
+                implementation, params, mean, error, allocPerOp, samples));
+        return mean;
+    }
+
+    /**
+     * Runs one sample: prepares a batch of states, then times running the body on each.
+     *
+     * @param batch the number of states to prepare and run
+     * @param setup creates a fresh state
+     * @param body performs the measured operations on a state
+     * @param <S> the type of the state
+     * @return the elapsed nanoseconds and the allocated bytes of the timed region
+     */
+    private <S> long[] sample(int batch, Supplier<S> setup, ToLongFunction<S> body) {
+        Object[] states = new Object[batch];
+        for (int i = 0; i < batch; i++) {
+            states[i] = setup.get();
+        }
+        long checksum = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < batch; i++) {
+            @SuppressWarnings("unchecked")
+            S state = (S) states[i];
+            checksum += body.applyAsLong(state);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        sink += checksum;
+        return new long[] {elapsed, allocated};
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the allocated bytes, or 0 if the counter is not available
+     */
+    private long allocatedBytes() {
+        return threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Appends a row to the results file, writing the header first if the file is new.
+     *
+     * @param row the CSV row to append
+     */
+    private void record(String row) {
+        try {
+            boolean exists = Files.exists(resultsFile);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                if (!exists) {
+                    out.println(CSV_HEADER);
+                }
+                out.println(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write benchmark results to " + resultsFile, e);
+        }
+    }
+}
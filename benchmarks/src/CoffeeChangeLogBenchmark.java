@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The {@code CoffeeChangeLogBenchmark} class compares two ways of bringing a replica of a
+ * catalogue up to date after a batch of changes: shipping the whole catalogue with
+ * {@link CoffeeBinaryFormat} and loading it, against replaying only the new records of a
+ * {@link CoffeeChangeLog} with {@link CoffeeChangeReplayer}. It also measures the cost of
+ * recording a change with group commit. The sync results are per element of the catalogue.
+ * Before measuring, it checks that replaying the log reproduces the source set, including
+ * updates of coffees with long names.
+ * <p>
+ * Options: {@code --sizes} (default {@code 100000}), {@code --changes} (default {@code 1000}),
+ * {@code --samples} (default 5) and {@code --out} (default {@code benchmark-results.csv}).
+ */
+public class CoffeeChangeLogBenchmark {
+    /**
+     * The lengths in bytes of the names of the coffees added and updated before the changes,
+     * chosen so that their records outgrow the record buffer of the log.
+     */
+    private static final int[] LONG_NAME_LENGTHS = {185, 441, 1000};
+
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int changes = Integer.parseInt(options.getOrDefault("changes", "1000"));
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeChangeLog", out, 3, samples);
+        for (int size : sizes) {
+            Path directory = Files.createTempDirectory("coffee-change-log");
+            Path catalogue = directory.resolve("catalogue.bin");
+            Path synced = directory.resolve("synced.bin");
+            CoffeeSet source = new CoffeeSet(Arrays.asList(CoffeeFixtures.randomCoffees(size, 1)));
+            CoffeeBinaryFormat.write(synced, source);
+            try (CoffeeChangeLog log = new CoffeeChangeLog(directory.resolve("log"))) {
+                source.addListener(log);
+                long after = log.getLastSequence();
+                for (int length : LONG_NAME_LENGTHS) {
+                    Coffee coffee = new Coffee("x".repeat(length), 10, 0.5, 0.1, 1, 0.2, 5);
+                    source.add(coffee);
+                    coffee.setPrice(11);
+                    coffee.setQualityRating(6);
+                }
+                Random random = new Random(2);
+                Coffee[] members = source.toArray(new Coffee[0]);
+                for (int i = 0; i < changes; i++) {
+                    Coffee coffee = members[random.nextInt(size)];
+                    if (i % 2 == 0) {
+                        coffee.setPrice(coffee.getPrice() + 0.01);
+                    } else {
+                        coffee.setQualityRating(random.nextInt(11));
+                    }
+                }
+                log.flush();
+                checkReplay(log, synced, after, source);
+
+                String params = "size=" + size + ",changes=" + changes;
+                runner.run("sync", "full catalogue", params, size, () -> catalogue, file -> {
+                    try {
+                        CoffeeBinaryFormat.write(file, source);
+                        return CoffeeBinaryFormat.read(file).size();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                runner.run("sync", "change log replay", params, size, () -> read(synced), replica -> {
+                    try {
+                        return CoffeeChangeReplayer.replay(log.getDirectory(), replica, after);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                runner.run("record", "group commit", "size=" + size, 1, () -> members, a -> {
+                    Coffee coffee = a[random.nextInt(a.length)];
+                    coffee.setPackagingWeight(coffee.getPackagingWeight());
+                    return coffee.hashCode();
+                });
+                source.removeListener(log);
+            }
+        }
+    }
+
+    /**
+     * Replays the log onto the catalogue written before the changes and checks that the result
+     * holds the same coffees as the source set.
+     *
+     * @param log the log of the changes
+     * @param synced the catalogue written before the changes
+     * @param after the sequence number of the last change already in the catalogue
+     * @param source the set the changes were made to
+     * @throws IOException if the log or the catalogue cannot be read
+     * @throws IllegalStateException if the replayed catalogue differs from the source
+     */
+    private static void checkReplay(CoffeeChangeLog log, Path synced, long after, CoffeeSet source)
+            throws IOException {
+        CoffeeSet replica = CoffeeBinaryFormat.read(synced);
+        CoffeeChangeReplayer.replay(log.getDirectory(), replica, after);
+        if (replica.size() != source.size() || !replica.containsAll(source)) {
+            throw new IllegalStateException("The replayed catalogue differs from the source.");
+        }
+    }
+
+    /**
+     * Reads a catalogue written before the changes, as the state of an up-to-date replica.
+     *
+     * @param file the catalogue file
+     * @return a new set holding the catalogue
+     */
+    private static CoffeeSet read(Path file) {
+        try {
+            return CoffeeBinaryFormat.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
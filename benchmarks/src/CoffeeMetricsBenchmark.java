@@ -0,0 +1,62 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The {@code CoffeeMetricsBenchmark} class measures sorting a large {@link CoffeeSet} by
+ * price/weight ratio using the cached {@link Coffee#getPriceWeightRatio()} against computing the
+ * ratio from the raw fields on every comparison, as the getter used to.
+ * <p>
+ * Options: {@code --sizes} (default {@code 100000,1000000}), {@code --samples} (default 5) and
+ * {@code --out} (default {@code benchmark-results.csv}).
+ */
+public class CoffeeMetricsBenchmark {
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        Comparator<Coffee> cached = Comparator.comparingDouble(Coffee::getPriceWeightRatio);
+        Comparator<Coffee> recomputed = Comparator.comparingDouble(CoffeeMetricsBenchmark::computeRatio);
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeMetrics", out, 2, samples);
+        for (int size : sizes) {
+            CoffeeSet set = new CoffeeSet(Arrays.asList(CoffeeFixtures.randomCoffees(size, 1)));
+            String params = "size=" + size;
+            Supplier<Coffee[]> snapshot = () -> set.toArray(new Coffee[size]);
+            runner.run("sortByRatio", "recomputed", params, size, snapshot, coffees -> {
+                Arrays.sort(coffees, recomputed);
+                return coffees[0].getQualityRating();
+            });
+            runner.run("sortByRatio", "cached", params, size, snapshot, coffees -> {
+                Arrays.sort(coffees, cached);
+                return coffees[0].getQualityRating();
+            });
+        }
+    }
+
+    /**
+     * Computes the price/weight ratio from the raw fields, the way the getter did before the
+     * derived metrics were cached.
+     *
+     * @param coffee the coffee
+     * @return the price/weight ratio
+     * @throws ArithmeticException if total weight is zero
+     */
+    private static double computeRatio(Coffee coffee) {
+        double totalWeight = coffee.getCoffeeWeight() + coffee.getPackagingWeight();
+        if (totalWeight == 0) {
+            throw new ArithmeticException("Total weight cannot be zero when calculating price/weight ratio.");
+        }
+        return coffee.getPrice() / totalWeight;
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code CoffeeQueryLoadGenerator} class opens many connections to a
+ * {@link CoffeeQueryServer}, sends pipelined batches of queries on all of them at once and
+ * reports the throughput and the latency percentiles of the requests.
+ * <p>
+ * Each connection runs on its own thread, virtual if the JVM has them, and repeatedly writes a
+ * batch of requests, then reads the answers, recording for each request the time from writing
+ * its batch to reading its answer. The requests are 80% {@code CONTAINS} (half of them for
+ * absent names), 15% {@code GET}, 4% {@code RANGE} and 1% {@code TOP}, over the coffees
+ * {@link CoffeeQueryServer#main(String[])} serves.
+ * <p>
+ * Options: {@code --port} the TCP port of a server on the loopback interface, or {@code --unix}
+ * the path of its Unix-domain socket; without either, a server is started in this process.
+ * {@code --size} the number of coffees served (default 100000), {@code --connections}
+ * (default 10000), {@code --pipeline} the requests per batch (default 16) and
+ * {@code --seconds} the measurement time (default 10). Every connection takes a file
+ * descriptor on both ends, so an in-process server needs twice as many as a separate one.
+ */
+public class CoffeeQueryLoadGenerator {
+    /**
+     * The main method where the load generator starts execution.
+     *
+     * @param args the options described in the class documentation
+     * @throws IOException if the in-process server cannot be started
+     * @throws InterruptedException if the main thread is interrupted while waiting for the connections
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int size = Integer.parseInt(options.getOrDefault("size", "100000"));
+        int connectionCount = Integer.parseInt(options.getOrDefault("connections", "10000"));
+        int pipeline = Integer.parseInt(options.getOrDefault("pipeline", "16"));
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+
+        Coffee[] coffees = CoffeeFixtures.randomCoffees(size, 1);
+        String[] names = new String[coffees.length];
+        for (int i = 0; i < coffees.length; i++) {
+            names[i] = coffees[i].getName();
+        }
+        CoffeeQueryServer server = null;
+        SocketAddress address;
+        if (options.containsKey("unix")) {
+            address = UnixDomainSocketAddress.of(options.get("unix"));
+        } else if (options.containsKey("port")) {
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(options.get("port")));
+        } else {
+            server = new CoffeeQueryServer(new CoffeeSet(Arrays.asList(coffees)),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            address = server.getAddress();
+        }
+
+        List<SocketChannel> channels = connect(address, connectionCount);
+        System.out.printf("Connected %d of %d connections to %s, %s threads, pipeline %d%n", channels.size(),
+                connectionCount, address, CoffeeQueryServer.usesVirtualThreads() ? "virtual" : "platform", pipeline);
+
+        ConcurrentHistogram latencies = new ConcurrentHistogram();
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(channels.size());
+        long[] deadline = new long[1];
+        ExecutorService clients = CoffeeQueryServer.newThreadPerTaskExecutor("coffee-load");
+        for (SocketChannel channel : channels) {
+            clients.execute(() -> {
+                try {
+                    start.await();
+                    run(channel, names, pipeline, deadline, latencies, requests);
+                } catch (IOException | RuntimeException e) {
+                    errors.increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        clients.shutdown();
+
+        System.out.printf("%d requests in %.1f s: %.0f requests/s, %d failed connections%n", requests.sum(),
+                elapsed / 1e9, requests.sum() / (elapsed / 1e9), errors.sum());
+        System.out.printf("Latency per request: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3,
+                latencies.getPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+        if (server != null) {
+            System.out.println(server);
+            server.close();
+        }
+    }
+
+    /**
+     * Opens the connections one after another, stopping at the first one that fails, as when
+     * the process runs out of file descriptors.
+     *
+     * @param address the address of the server
+     * @param count the number of connections to open
+     * @return the open connections
+     */
+    private static List<SocketChannel> connect(SocketAddress address, int count) {
+        List<SocketChannel> channels = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                SocketChannel channel = address instanceof UnixDomainSocketAddress
+                        ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+                try {
+                    channel.connect(address);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                channels.add(channel);
+            }
+        } catch (IOException e) {
+            System.out.println("Stopped opening connections after " + channels.size() + ": " + e);
+        }
+        return channels;
+    }
+
+    /**
+     * Sends batches of random requests on a connection and reads their answers until the end of
+     * the measurement, then closes the connection.
+     *
+     * @param channel the connection
+     * @param names the names of the coffees served
+     * @param pipeline the number of requests per batch
+     * @param deadline holds the end of the measurement, from {@link System#nanoTime()}
+     * @param latencies records the latency of every request
+     * @param requests counts the requests answered
+     * @throws IOException if the connection fails
+     */
+    private static void run(SocketChannel channel, String[] names, int pipeline, long[] deadline,
+                            ConcurrentHistogram latencies, LongAdder requests) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean[] lists = new boolean[pipeline];
+        StringBuilder batch = new StringBuilder(pipeline * 32);
+        try (SocketChannel c = channel;
+             BufferedReader in = new BufferedReader(Channels.newReader(c, StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(Channels.newWriter(c, StandardCharsets.UTF_8))) {
+            while (System.nanoTime() < deadline[0]) {
+                batch.setLength(0);
+                for (int i = 0; i < pipeline; i++) {
+                    int roll = random.nextInt(100);
+                    String name = names[random.nextInt(names.length)];
+                    lists[i] = roll >= 80;
+                    if (roll < 40) {
+                        batch.append("CONTAINS ").append(name);
+                    } else if (roll < 80) {
+                        batch.append("CONTAINS Absent ").append(name);
+                    } else if (roll < 95) {
+                        batch.append("GET ").append(name);
+                    } else if (roll < 99) {
+                        int price = 5 + random.nextInt(45);
+                        batch.append("RANGE ").append(price).append(' ').append(price + 0.5).append(" 10");
+                    } else {
+                        batch.append(random.nextBoolean() ? "TOP 10 rating" : "TOP 10 price");
+                    }
+                    batch.append('\n');
+                }
+                long sent = System.nanoTime();
+                out.write(batch.toString());
+                out.flush();
+                for (int i = 0; i < pipeline; i++) {
+                    String answer = in.readLine();
+                    if (answer == null || answer.startsWith("ERR")) {
+                        throw new IOException("Unexpected answer " + answer);
+                    }
+                    if (lists[i]) {
+                        for (int rows = Integer.parseInt(answer); rows > 0; rows--) {
+                            in.readLine();
+                        }
+                    }
+                    latencies.record(System.nanoTime() - sent);
+                }
+                requests.add(pipeline);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The {@code CoffeeSetAggregationBenchmark} class compares the ways of aggregating a numeric
+ * attribute over a {@link CoffeeSet}: the iterator, the {@code forEach} visitor, the primitive
+ * stream views, the allocation-free {@link CoffeeSet#sum} and the columns of a
+ * {@link CoffeeStore}. The bytes allocated per element are reported next to the time. It also
+ * compares selecting the top 100 coffees by sorting a copy of the whole set against the
+ * bounded-heap {@link CoffeeAggregations#topK(java.util.Collection, int, Comparator)}.
+ * <p>
+ * Options: {@code --sizes} (default {@code 1000,1000000}), {@code --samples} (default 5) and
+ * {@code --out} (default {@code benchmark-results.csv}).
+ */
+public class CoffeeSetAggregationBenchmark {
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "1000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        Comparator<Coffee> order = Comparator.comparingInt(Coffee::getQualityRating)
+                .thenComparing(CoffeeComparators.BY_PRICE_WEIGHT_RATIO.reversed());
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeSetAggregation", out, 3, samples);
+        for (int size : sizes) {
+            CoffeeSet set = new CoffeeSet(Arrays.asList(CoffeeFixtures.randomCoffees(size, 1)));
+            CoffeeStore store = new CoffeeStore(set);
+            String params = "size=" + size;
+
+            runner.run("sumWeight", "iterator", params, size, () -> set, s -> {
+                double sum = 0;
+                for (Coffee coffee : s) {
+                    sum += coffee.getTotalWeight();
+                }
+                return (long) sum;
+            });
+            runner.run("sumWeight", "forEachDouble", params, size, () -> set, s -> {
+                double[] sum = new double[1];
+                s.forEachDouble(Coffee::getTotalWeight, value -> sum[0] += value);
+                return (long) sum[0];
+            });
+            runner.run("sumWeight", "totalWeights().sum()", params, size, () -> set,
+                    s -> (long) s.totalWeights().sum());
+            runner.run("sumWeight", "sum(getTotalWeight)", params, size, () -> set,
+                    s -> (long) s.sum(Coffee::getTotalWeight));
+            runner.run("sumWeight", "CoffeeStore", params, size, () -> store,
+                    s -> (long) s.sumTotalWeights());
+            runner.run("maxRating", "qualityRatings().max()", params, size, () -> set,
+                    s -> s.qualityRatings().max().orElse(-1));
+            runner.run("top100", "sort toArray", params, size, () -> set, s -> {
+                Coffee[] coffees = s.toArray(new Coffee[0]);
+                Arrays.sort(coffees, order.reversed());
+                return coffees[0].getQualityRating();
+            });
+            runner.run("top100", "CoffeeAggregations.topK", params, size, () -> set,
+                    s -> CoffeeAggregations.topK(s, 100, order).get(0).getQualityRating());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The {@code CoffeeSetBenchmark} class measures every {@link CoffeeSet} operation at several set
+ * sizes, hit ratios and operation mixes, and compares it with the JDK sets and the other
+ * {@code Set<Coffee>} implementations of this project.
+ * <p>
+ * Options are passed as {@code --name=value1,value2} arguments:
+ * <ul>
+ *     <li>{@code --sizes} the set sizes (default {@code 10,1000,100000,1000000})</li>
+ *     <li>{@code --hitRatios} the fraction of probes that are present (default {@code 0.5})</li>
+ *     <li>{@code --mixes} the contains/add/remove percentages of the mixed benchmark (default {@code 90/5/5})</li>
+ *     <li>{@code --ops} the benchmarks to run (default all of {@link #OPERATIONS})</li>
+ *     <li>{@code --impls} the implementations to run (default all)</li>
+ *     <li>{@code --samples} the number of measured samples (default 5)</li>
+ *     <li>{@code --out} the CSV results file (default {@code benchmark-results.csv})</li>
+ * </ul>
+ */
+public class CoffeeSetBenchmark {
+    /** The names of all benchmarks. */
+    static final String[] OPERATIONS = {"add", "contains", "remove", "retainAll", "iterate", "mix"};
+
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "10,1000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double[] hitRatios = Arrays.stream(options.getOrDefault("hitRatios", "0.5").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        String[] mixes = options.getOrDefault("mixes", "90/5/5").split(",");
+        List<String> ops = Arrays.asList(options.getOrDefault("ops", String.join(",", OPERATIONS)).split(","));
+        Map<String, Supplier<Set<Coffee>>> implementations = implementations();
+        if (options.containsKey("impls")) {
+            implementations.keySet().retainAll(Arrays.asList(options.get("impls").split(",")));
+        }
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeSet", out, 3, samples);
+        for (int size : sizes) {
+            Coffee[] present = CoffeeFixtures.randomCoffees(size, 1);
+            Coffee[] absent = CoffeeFixtures.randomCoffees(size, 2);
+            for (int i = 0; i < absent.length; i++) {
+                absent[i] = new Coffee("Absent " + absent[i].getName(), absent[i].getPrice(),
+                        absent[i].getCoffeeWeight(), absent[i].getPackagingWeight(), absent[i].getCoffeeVolume(),
+                        absent[i].getPackagingVolume(), absent[i].getQualityRating());
+            }
+            for (Map.Entry<String, Supplier<Set<Coffee>>> impl : implementations.entrySet()) {
+                String name = impl.getKey();
+                Supplier<Set<Coffee>> factory = impl.getValue();
+                String sizeParam = "size=" + size;
+                if (ops.contains("add")) {
+                    runner.run("add", name, sizeParam, size, factory, set -> {
+                        for (Coffee coffee : present) {
+                            set.add(coffee);
+                        }
+                        return set.size();
+                    });
+                }
+                if (ops.contains("iterate")) {
+                    Set<Coffee> filled = filled(factory, present);
+                    runner.run("iterate", name, sizeParam, size, () -> filled, set -> {
+                        long sum = 0;
+                        for (Coffee coffee : set) {
+                            sum += coffee.getQualityRating();
+                        }
+                        return sum;
+                    });
+                }
+                for (double hitRatio : hitRatios) {
+                    Coffee[] probes = probes(present, absent, hitRatio, 3);
+                    String params = sizeParam + ";hitRatio=" + hitRatio;
+                    if (ops.contains("contains")) {
+                        Set<Coffee> filled = filled(factory, present);
+                        runner.run("contains", name, params, size, () -> filled, set -> {
+                            long hits = 0;
+                            for (Coffee probe : probes) {
+                                if (set.contains(probe)) {
+                                    hits++;
+                                }
+                            }
+                            return hits;
+                        });
+                    }
+                    if (ops.contains("remove")) {
+                        runner.run("remove", name, params, size, () -> filled(factory, present), set -> {
+                            long removed = 0;
+                            for (Coffee probe : probes) {
+                                if (set.remove(probe)) {
+                                    removed++;
+                                }
+                            }
+                            return removed;
+                        });
+                    }
+                    if (ops.contains("retainAll")) {
+                        Set<Coffee> keep = new HashSet<>(Arrays.asList(probes));
+                        runner.run("retainAll", name, params, size, () -> filled(factory, present),
+                                set -> set.retainAll(keep) ? set.size() : -1);
+                    }
+                    if (ops.contains("mix")) {
+                        for (String mix : mixes) {
+                            byte[] kinds = operationKinds(mix, size, 4);
+                            runner.run("mix", name, params + ";mix=" + mix, size,
+                                    () -> filled(factory, present), set -> runMix(set, probes, kinds));
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("\nResults appended to " + out.toAbsolutePath());
+    }
+
+    /**
+     * Returns the factories of the implementations under test, keyed by name.
+     *
+     * @return the factories of the implementations under test
+     */
+    static Map<String, Supplier<Set<Coffee>>> implementations() {
+        Map<String, Supplier<Set<Coffee>>> implementations = new LinkedHashMap<>();
+        implementations.put("CoffeeSet", CoffeeSet::new);
+        implementations.put("CoffeeSet+filter", () -> {
+            CoffeeSet set = new CoffeeSet();
+            set.enableMembershipFilter(0.01);
+            return set;
+        });
+        implementations.put("CoffeeSet+metrics", () -> {
+            CoffeeSet set = new CoffeeSet();
+            set.enableMetrics();
+            return set;
+        });
+        implementations.put("HashSet", HashSet::new);
+        implementations.put("LinkedHashSet", LinkedHashSet::new);
+        implementations.put("ConcurrentCoffeeSet", ConcurrentCoffeeSet::new);
+        implementations.put("OpenAddressingCoffeeSet", OpenAddressingCoffeeSet::new);
+        implementations.put("SortedCoffeeSet", () -> new SortedCoffeeSet(CoffeeComparators.BY_PRICE));
+        return implementations;
+    }
+
+    /**
+     * Creates a set holding the specified coffees.
+     *
+     * @param factory creates the empty set
+     * @param coffees the coffees to add
+     * @return the filled set
+     */
+    private static Set<Coffee> filled(Supplier<Set<Coffee>> factory, Coffee[] coffees) {
+        Set<Coffee> set = factory.get();
+        set.addAll(Arrays.asList(coffees));
+        return set;
+    }
+
+    /**
+     * Builds a shuffled array of probes in which the specified fraction is present in the set.
+     *
+     * @param present the coffees stored in the set
+     * @param absent coffees that are not stored in the set
+     * @param hitRatio the fraction of probes that are present
+     * @param seed the seed of the shuffle
+     * @return the probes
+     */
+    private static Coffee[] probes(Coffee[] present, Coffee[] absent, double hitRatio, long seed) {
+        Random random = new Random(seed);
+        List<Coffee> probes = new ArrayList<>(present.length);
+        int hits = (int) Math.round(present.length * hitRatio);
+        for (int i = 0; i < present.length; i++) {
+            probes.add(i < hits ? present[i] : absent[i]);
+        }
+        Collections.shuffle(probes, random);
+        return probes.toArray(new Coffee[0]);
+    }
+
+    /**
+     * Builds a random sequence of operation kinds (0 contains, 1 add, 2 remove) following a mix
+     * given as contains/add/remove percentages.
+     *
+     * @param mix the mix, e.g. {@code "90/5/5"}
+     * @param count the number of operations
+     * @param seed the seed of the random number generator
+     * @return the operation kinds
+     */
+    private static byte[] operationKinds(String mix, int count, long seed) {
+        String[] parts = mix.split("/");
+        int contains = Integer.parseInt(parts[0]);
+        int add = Integer.parseInt(parts[1]);
+        Random random = new Random(seed);
+        byte[] kinds = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int roll = random.nextInt(100);
+            kinds[i] = (byte) (roll < contains ? 0 : roll < contains + add ? 1 : 2);
+        }
+        return kinds;
+    }
+
+    /**
+     * Applies a sequence of mixed operations to a set.
+     *
+     * @param set the set
+     * @param probes the coffees the operations apply to
+     * @param kinds the operation kinds
+     * @return the number of successful operations
+     */
+    private static long runMix(Set<Coffee> set, Coffee[] probes, byte[] kinds) {
+        long successes = 0;
+        for (int i = 0; i < probes.length; i++) {
+            boolean success;
+            if (kinds[i] == 0) {
+                success = set.contains(probes[i]);
+            } else if (kinds[i] == 1) {
+                success = set.add(probes[i]);
+            } else {
+                success = set.remove(probes[i]);
+            }
+            if (success) {
+                successes++;
+            }
+        }
+        return successes;
+    }
+
+    /**
+     * Parses {@code --name=value} arguments.
+     *
+     * @param args the command-line arguments
+     * @return the options, keyed by name
+     * @throws IllegalArgumentException if an argument is not of the form {@code --name=value}
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
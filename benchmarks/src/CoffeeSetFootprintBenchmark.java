@@ -0,0 +1,80 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The {@code CoffeeSetFootprintBenchmark} class measures how much heap each {@code Set<Coffee>}
+ * implementation retains per element, and how much garbage collection building it causes.
+ * <p>
+ * The coffees are created once and shared by all implementations, so the figures cover only
+ * the structure of each set. Options: {@code --sizes} (default {@code 1000000}) and
+ * {@code --impls} (default all of {@link CoffeeSetBenchmark#implementations()}). Run with a
+ * fixed heap, for example {@code -Xms2g -Xmx2g}, for stable results.
+ */
+public class CoffeeSetFootprintBenchmark {
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Map<String, Supplier<Set<Coffee>>> implementations = CoffeeSetBenchmark.implementations();
+        if (options.containsKey("impls")) {
+            implementations.keySet().retainAll(Arrays.asList(options.get("impls").split(",")));
+        }
+
+        System.out.printf("%-24s %10s %12s %10s %10s%n", "implementation", "size", "bytes/elem", "gc count", "gc ms");
+        for (int size : sizes) {
+            Coffee[] coffees = CoffeeFixtures.randomCoffees(size, 1);
+            for (Map.Entry<String, Supplier<Set<Coffee>>> impl : implementations.entrySet()) {
+                long before = usedHeap();
+                long[] gcBefore = gcTotals();
+                Set<Coffee> set = impl.getValue().get();
+                for (Coffee coffee : coffees) {
+                    set.add(coffee);
+                }
+                long[] gcAfter = gcTotals();
+                long retained = usedHeap() - before;
+                System.out.printf("%-24s %10d %12.1f %10d %10d%n", impl.getKey(), set.size(),
+                        retained / (double) size, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the heap in use after asking the collector to run a few times.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Returns the number of collections and the time spent collecting so far, summed over all
+     * collectors.
+     *
+     * @return the collection count and the collection time in milliseconds
+     */
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, time};
+    }
+}
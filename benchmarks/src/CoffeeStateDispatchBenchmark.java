@@ -0,0 +1,211 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The {@code CoffeeStateDispatchBenchmark} class compares reading the state of a mix of coffee
+ * subclasses through an overridden {@code getState()} method against {@link Coffee#getState()}
+ * and the final {@link Coffee#getCoffeeState()}, both backed by the {@link CoffeeState} field.
+ * <p>
+ * The virtual variant uses a stand-in hierarchy of four subclasses that each override the
+ * method, so its call site is megamorphic. The enum variant uses plain, ground, whole bean and
+ * instant coffees. Both label reads and per-state counting are measured, the latter with a
+ * string switch on the label against an array indexed by the state ordinal.
+ * <p>
+ * Options: {@code --sizes} (default {@code 1000000}), {@code --samples} (default 5) and
+ * {@code --out} (default {@code benchmark-results.csv}).
+ */
+public class CoffeeStateDispatchBenchmark {
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeStateDispatch", out, 3, samples);
+        for (int size : sizes) {
+            Random random = new Random(1);
+            Coffee[] coffees = new Coffee[size];
+            LegacyCoffee[] legacy = new LegacyCoffee[size];
+            for (int i = 0; i < size; i++) {
+                Coffee coffee = CoffeeFixtures.randomCoffee(random, i);
+                int kind = random.nextInt(4);
+                coffees[i] = kind == 0 ? coffee : CoffeeState.ofOrdinal(kind - 1).newCoffee(coffee.getName(),
+                        coffee.getPrice(), coffee.getCoffeeWeight(), coffee.getPackagingWeight(),
+                        coffee.getCoffeeVolume(), coffee.getPackagingVolume(), coffee.getQualityRating());
+                legacy[i] = LegacyCoffee.of(kind, coffee);
+            }
+            String params = "size=" + size + ",classes=4";
+
+            runner.run("stateLabel", "virtual getState", params, size, () -> legacy, a -> {
+                long sum = 0;
+                for (LegacyCoffee coffee : a) {
+                    sum += coffee.getState().length();
+                }
+                return sum;
+            });
+            runner.run("stateLabel", "final getState", params, size, () -> coffees, a -> {
+                long sum = 0;
+                for (Coffee coffee : a) {
+                    sum += coffee.getState().length();
+                }
+                return sum;
+            });
+            runner.run("countByState", "virtual getState + string switch", params, size, () -> legacy, a -> {
+                long[] counts = new long[4];
+                for (LegacyCoffee coffee : a) {
+                    switch (coffee.getState()) {
+                        case "Ground":
+                            counts[0]++;
+                            break;
+                        case "Whole Bean":
+                            counts[1]++;
+                            break;
+                        case "Instant":
+                            counts[2]++;
+                            break;
+                        default:
+                            counts[3]++;
+                            break;
+                    }
+                }
+                return counts[0] + 2 * counts[1] + 3 * counts[2] + 4 * counts[3];
+            });
+            runner.run("countByState", "enum ordinal", params, size, () -> coffees, a -> {
+                long[] counts = new long[CoffeeState.values().length];
+                for (Coffee coffee : a) {
+                    counts[coffee.getCoffeeState().ordinal()]++;
+                }
+                return counts[0] + 2 * counts[1] + 3 * counts[2];
+            });
+        }
+    }
+
+    /**
+     * A stand-in for a coffee hierarchy whose subclasses override {@code getState()}.
+     */
+    private abstract static class LegacyCoffee {
+        /** The coffee holding the properties. */
+        final Coffee coffee;
+
+        /**
+         * Constructs a new LegacyCoffee wrapping the specified coffee.
+         *
+         * @param coffee the coffee holding the properties
+         */
+        LegacyCoffee(Coffee coffee) {
+            this.coffee = coffee;
+        }
+
+        /**
+         * Creates a legacy coffee of one of the four subclasses.
+         *
+         * @param kind the subclass, from 0 to 3
+         * @param coffee the coffee holding the properties
+         * @return a new legacy coffee
+         */
+        static LegacyCoffee of(int kind, Coffee coffee) {
+            switch (kind) {
+                case 1:
+                    return new LegacyGround(coffee);
+                case 2:
+                    return new LegacyWholeBean(coffee);
+                case 3:
+                    return new LegacyInstant(coffee);
+                default:
+                    return new LegacyPlain(coffee);
+            }
+        }
+
+        /**
+         * Returns the state of the coffee.
+         *
+         * @return the label of the state
+         */
+        abstract String getState();
+    }
+
+    /**
+     * A legacy plain coffee, ground by default.
+     */
+    private static final class LegacyPlain extends LegacyCoffee {
+        /**
+         * Constructs a new LegacyPlain.
+         *
+         * @param coffee the coffee holding the properties
+         */
+        LegacyPlain(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        String getState() {
+            return "Ground";
+        }
+    }
+
+    /**
+     * A legacy ground coffee.
+     */
+    private static final class LegacyGround extends LegacyCoffee {
+        /**
+         * Constructs a new LegacyGround.
+         *
+         * @param coffee the coffee holding the properties
+         */
+        LegacyGround(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        String getState() {
+            return "Ground";
+        }
+    }
+
+    /**
+     * A legacy whole bean coffee.
+     */
+    private static final class LegacyWholeBean extends LegacyCoffee {
+        /**
+         * Constructs a new LegacyWholeBean.
+         *
+         * @param coffee the coffee holding the properties
+         */
+        LegacyWholeBean(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        String getState() {
+            return "Whole Bean";
+        }
+    }
+
+    /**
+     * A legacy instant coffee.
+     */
+    private static final class LegacyInstant extends LegacyCoffee {
+        /**
+         * Constructs a new LegacyInstant.
+         *
+         * @param coffee the coffee holding the properties
+         */
+        LegacyInstant(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        String getState() {
+            return "Instant";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The {@code CoffeeViewCacheBenchmark} class measures serving requests for coffees by name, with
+ * popularity following a Zipf distribution, by looking each coffee up in a {@link CoffeeSet} and
+ * rendering it, against serving it from a {@link CoffeeViewCache} of several sizes. A second
+ * workload interleaves the popular requests with a scan of names requested only once, which a
+ * plain LRU cache would let evict the popular coffees. The hit ratio and eviction statistics of
+ * every cache are printed after its runs.
+ * <p>
+ * Options: {@code --sizes} the catalogue sizes (default {@code 100000}), {@code --capacities}
+ * the cache sizes as fractions of the catalogue (default {@code 0.01,0.1}), {@code --skew} the
+ * Zipf exponent (default {@code 0.99}), {@code --samples} (default 5) and {@code --out}
+ * (default {@code benchmark-results.csv}).
+ */
+public class CoffeeViewCacheBenchmark {
+    /** The number of requests per benchmark invocation. */
+    private static final int REQUESTS = 100_000;
+
+    /**
+     * The main method where the benchmark starts execution.
+     *
+     * @param args the options described in the class documentation
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = CoffeeSetBenchmark.parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "100000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double[] capacities = Arrays.stream(options.getOrDefault("capacities", "0.01,0.1").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        double skew = Double.parseDouble(options.getOrDefault("skew", "0.99"));
+        int samples = Integer.parseInt(options.getOrDefault("samples", "5"));
+        Path out = Paths.get(options.getOrDefault("out", "benchmark-results.csv"));
+
+        BenchmarkRunner runner = new BenchmarkRunner("CoffeeViewCache", out, 10, samples);
+        for (int size : sizes) {
+            Coffee[] coffees = CoffeeFixtures.randomCoffees(size, 1);
+            CoffeeSet set = new CoffeeSet(Arrays.asList(coffees));
+            String[] popular = zipfNames(coffees, REQUESTS, skew, 2);
+            String[] scanned = scanNames(popular, coffees, 3);
+            for (String workload : new String[] {"zipf", "zipf+scan"}) {
+                String[] names = workload.equals("zipf") ? popular : scanned;
+                String params = "size=" + size + ";workload=" + workload;
+                runner.run("render", "uncached", params, names.length, () -> set, s -> {
+                    long length = 0;
+                    for (String name : names) {
+                        List<Coffee> found = s.findByName(name);
+                        Coffee coffee = found.get(0);
+                        length += coffee.toString().length() + (long) coffee.getPriceWeightRatio()
+                                + (long) coffee.getTotalWeight();
+                    }
+                    return length;
+                });
+                for (double capacity : capacities) {
+                    CoffeeViewCache cache = new CoffeeViewCache(set, Math.max(1, (int) (size * capacity)));
+                    runner.run("render", "cached", params + ";capacity=" + capacity, names.length, () -> cache, c -> {
+                        long length = 0;
+                        for (String name : names) {
+                            CoffeeViewCache.View view = c.get(name);
+                            length += view.getText().length() + (long) view.getPriceWeightRatio()
+                                    + (long) view.getTotalWeight();
+                        }
+                        return length;
+                    });
+                    System.out.println("  " + cache);
+                    cache.close();
+                }
+            }
+        }
+        System.out.println("\nResults appended to " + out.toAbsolutePath());
+    }
+
+    /**
+     * Draws names of coffees with a Zipf distribution over a random ranking of the coffees.
+     *
+     * @param coffees the coffees
+     * @param count the number of names to draw
+     * @param skew the exponent of the distribution
+     * @param seed the seed of the random number generator
+     * @return the names drawn
+     */
+    private static String[] zipfNames(Coffee[] coffees, int count, double skew, long seed) {
+        Random random = new Random(seed);
+        double[] cumulative = new double[coffees.length];
+        double total = 0;
+        for (int rank = 0; rank < coffees.length; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        int[] ranking = new int[coffees.length];
+        for (int i = 0; i < ranking.length; i++) {
+            int j = random.nextInt(i + 1);
+            ranking[i] = ranking[j];
+            ranking[j] = i;
+        }
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            rank = rank >= 0 ? rank : Math.min(-rank - 1, coffees.length - 1);
+            names[i] = coffees[ranking[rank]].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Replaces every other name of a request sequence with the next name of a scan over the
+     * whole catalogue, so that half of the requests are for names seen once.
+     *
+     * @param names the popular requests
+     * @param coffees the coffees
+     * @param seed the seed of the random number generator choosing where the scan starts
+     * @return the mixed requests
+     */
+    private static String[] scanNames(String[] names, Coffee[] coffees, long seed) {
+        int next = new Random(seed).nextInt(coffees.length);
+        String[] mixed = names.clone();
+        for (int i = 1; i < mixed.length; i += 2) {
+            mixed[i] = coffees[next].getName();
+            next = (next + 1) % coffees.length;
+        }
+        return mixed;
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The {@code ConcurrentCoffeeSetStress} class hammers a {@link ConcurrentCoffeeSet} from many
+ * threads, checks that no update is lost and that iterators never throw, and reports the
+ * throughput of a mixed workload next to a {@link CoffeeSet} guarded by a single global lock.
+ */
+public class ConcurrentCoffeeSetStress {
+    /** The number of distinct coffees the workload draws from. */
+    private static final int POOL_SIZE = 100_000;
+
+    /** The number of coffees each thread adds and partly removes in the consistency check. */
+    private static final int COFFEES_PER_THREAD = 20_000;
+
+    /** The thread counts the throughput is measured at. */
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+    /**
+     * The main method where the stress run starts execution.
+     *
+     * @param args optionally the measurement time per run in milliseconds (default 1000)
+     * @throws InterruptedException if the main thread is interrupted while waiting for workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+        checkConsistency(16);
+        System.out.println("Consistency check passed with 16 threads.");
+
+        Coffee[] pool = CoffeeFixtures.randomCoffees(POOL_SIZE, 42);
+        System.out.println("\nMixed workload: 80% contains, 10% add, 10% remove, " + POOL_SIZE + " coffees");
+        System.out.printf("%-28s %8s %16s%n", "Implementation", "Threads", "Ops/s");
+        for (int threads : THREAD_COUNTS) {
+            report("ConcurrentCoffeeSet", threads,
+                    run(ConcurrentCoffeeSet::new, pool, threads, millis));
+            report("synchronized CoffeeSet", threads,
+                    run(() -> Collections.synchronizedSet(new CoffeeSet()), pool, threads, millis));
+        }
+    }
+
+    /**
+     * Lets each thread add its own range of coffees, remove every other one again and iterate
+     * the set concurrently, then verifies that exactly the expected elements remain.
+     *
+     * @param threads the number of worker threads
+     * @throws InterruptedException if the main thread is interrupted while waiting for workers
+     */
+    private static void checkConsistency(int threads) throws InterruptedException {
+        Coffee[] coffees = CoffeeFixtures.randomCoffees(threads * COFFEES_PER_THREAD, 7);
+        ConcurrentCoffeeSet set = new ConcurrentCoffeeSet();
+        AtomicLong failures = new AtomicLong();
+        runThreads(threads, id -> {
+            int from = id * COFFEES_PER_THREAD;
+            for (int i = from; i < from + COFFEES_PER_THREAD; i++) {
+                if (!set.add(coffees[i])) {
+                    failures.incrementAndGet();
+                }
+            }
+            for (int i = from; i < from + COFFEES_PER_THREAD; i += 2) {
+                if (!set.remove(coffees[i])) {
+                    failures.incrementAndGet();
+                }
+            }
+            try {
+                Iterator<Coffee> iterator = set.iterator();
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < coffees.length; i++) {
+            if (set.contains(coffees[i]) != (i % 2 == 1)) {
+                failures.incrementAndGet();
+            }
+        }
+        if (failures.get() != 0 || set.size() != coffees.length / 2) {
+            throw new IllegalStateException("Consistency check failed: " + failures.get()
+                    + " failures, size " + set.size());
+        }
+    }
+
+    /**
+     * Runs the mixed workload against a fresh, half-filled set for the specified time.
+     *
+     * @param factory creates the set under test
+     * @param pool the coffees the workload draws from
+     * @param threads the number of worker threads
+     * @param millis the measurement time in milliseconds
+     * @return the number of operations per second across all threads
+     * @throws InterruptedException if the main thread is interrupted while waiting for workers
+     */
+    private static double run(Supplier<Set<Coffee>> factory, Coffee[] pool, int threads, long millis)
+            throws InterruptedException {
+        Set<Coffee> set = factory.get();
+        for (int i = 0; i < pool.length; i += 2) {
+            set.add(pool[i]);
+        }
+        AtomicLong operations = new AtomicLong();
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long start = System.nanoTime();
+        runThreads(threads, id -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long count = 0;
+            while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                Coffee coffee = pool[random.nextInt(pool.length)];
+                int op = random.nextInt(10);
+                if (op == 0) {
+                    set.add(coffee);
+                } else if (op == 1) {
+                    set.remove(coffee);
+                } else {
+                    set.contains(coffee);
+                }
+                count++;
+            }
+            operations.addAndGet(count);
+        });
+        return operations.get() * 1e9 / (System.nanoTime() - start);
+    }
+
+    /**
+     * Starts the specified number of threads on the same task and waits for all of them.
+     *
+     * @param threads the number of threads
+     * @param task the task, receiving the id of the thread running it
+     * @throws InterruptedException if the main thread is interrupted while waiting for workers
+     */
+    private static void runThreads(int threads, IntConsumer task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.accept(id);
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Prints one line of the throughput table.
+     *
+     * @param name the name of the implementation
+     * @param threads the number of threads
+     * @param opsPerSecond the measured throughput
+     */
+    private static void report(String name, int threads, double opsPerSecond) {
+        System.out.printf("%-28s %8d %,16.0f%n", name, threads, opsPerSecond);
+    }
+}
@@ -0,0 +1,246 @@
+package jmh;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@code CoffeeSetJmhBenchmark} class measures the {@code CoffeeSet} operations of
+ * {@code CoffeeSetBenchmark} under JMH, for the same implementations, set sizes, hit ratios and
+ * operation mixes. Every benchmark method performs one operation, so the scores are average
+ * times per operation.
+ * <p>
+ * JMH does not accept benchmarks in the default package and classes in a named package cannot
+ * refer to the default package of the project, so the fixtures and the implementations under
+ * test are obtained once per trial through reflection and then used through {@link Set}.
+ * <p>
+ * Build with {@code mvn package} and run with
+ * {@code java -jar benchmarks/target/benchmarks.jar -rf json -rff jmh-results.json} to get
+ * machine-readable results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoffeeSetJmhBenchmark {
+    /** The implementation under test, a key of {@code CoffeeSetBenchmark.implementations()}. */
+    @Param({"CoffeeSet", "CoffeeSet+filter", "CoffeeSet+metrics", "HashSet", "LinkedHashSet",
+            "ConcurrentCoffeeSet", "OpenAddressingCoffeeSet", "SortedCoffeeSet"})
+    public String impl;
+
+    /** The number of coffees in the set. */
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    /** The fraction of probes that are present in the set. */
+    @Param({"0.5"})
+    public double hitRatio;
+
+    /** The contains/add/remove percentages of the mixed benchmark. */
+    @Param({"90/5/5"})
+    public String operationMix;
+
+    /** Creates empty sets of the implementation under test. */
+    private Supplier<Set<Object>> factory;
+
+    /** The coffees stored in the set. */
+    private Object[] present;
+
+    /** The probes, shuffled, of which the fraction {@link #hitRatio} is present. */
+    private Object[] probes;
+
+    /** The operation kinds of the mixed benchmark: 0 contains, 1 add, 2 remove. */
+    private byte[] kinds;
+
+    /** The probes kept by the {@code retainAll} benchmark. */
+    private Set<Object> keep;
+
+    /** The set read by the {@code contains}, {@code iterate} and {@code mix} benchmarks. */
+    private Set<Object> set;
+
+    /** The set changed by the {@code removeAndAdd} benchmark. */
+    private Set<Object> scratch;
+
+    /** The index of the next probe. */
+    private int next;
+
+    /**
+     * Creates the coffees, the probes and the implementation under test.
+     *
+     * @throws ReflectiveOperationException if the project classes cannot be reached
+     */
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUpTrial() throws ReflectiveOperationException {
+        Method implementations = Class.forName("CoffeeSetBenchmark").getDeclaredMethod("implementations");
+        implementations.setAccessible(true);
+        factory = ((Map<String, Supplier<Set<Object>>>) implementations.invoke(null)).get(impl);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown implementation " + impl + ".");
+        }
+        Method randomCoffees = Class.forName("CoffeeFixtures").getMethod("randomCoffees", int.class, long.class);
+        present = (Object[]) randomCoffees.invoke(null, size, 1L);
+        Object[] absent = (Object[]) randomCoffees.invoke(null, size, 2L);
+
+        Random random = new Random(3);
+        List<Object> shuffled = new ArrayList<>(size);
+        int hits = (int) Math.round(size * hitRatio);
+        for (int i = 0; i < size; i++) {
+            shuffled.add(i < hits ? present[i] : absent[i]);
+        }
+        Collections.shuffle(shuffled, random);
+        probes = shuffled.toArray();
+        keep = new HashSet<>(shuffled);
+
+        String[] parts = operationMix.split("/");
+        int contains = Integer.parseInt(parts[0]);
+        int add = Integer.parseInt(parts[1]);
+        kinds = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int roll = random.nextInt(100);
+            kinds[i] = (byte) (roll < contains ? 0 : roll < contains + add ? 1 : 2);
+        }
+    }
+
+    /**
+     * Fills the sets for the next iteration, so that the mixed benchmark starts from the same
+     * contents every time.
+     */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        set = filled();
+        scratch = filled();
+        next = 0;
+    }
+
+    /**
+     * Creates a set of the implementation under test holding all present coffees.
+     *
+     * @return the filled set
+     */
+    private Set<Object> filled() {
+        Set<Object> filled = factory.get();
+        filled.addAll(Arrays.asList(present));
+        return filled;
+    }
+
+    /**
+     * Returns the index of the next probe, cycling through all of them.
+     *
+     * @return the index of the next probe
+     */
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == size ? 0 : index + 1;
+        return index;
+    }
+
+    /**
+     * Measures {@code contains} of a probe.
+     *
+     * @return whether the probe is present
+     */
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[nextIndex()]);
+    }
+
+    /**
+     * Measures {@code remove} of a present coffee followed by its {@code add}, which keeps the
+     * set at its size across invocations.
+     *
+     * @return whether both operations changed the set
+     */
+    @Benchmark
+    public boolean removeAndAdd() {
+        Object coffee = present[nextIndex()];
+        return scratch.remove(coffee) & scratch.add(coffee);
+    }
+
+    /**
+     * Measures {@code retainAll} of the probes on a filled set.
+     *
+     * @param retained holds the set, refilled outside the measurement before every call
+     * @return the size of the set afterwards
+     */
+    @Benchmark
+    public int retainAll(Retained retained) {
+        retained.set.retainAll(keep);
+        return retained.set.size();
+    }
+
+    /**
+     * Measures iterating over the whole set.
+     *
+     * @param blackhole consumes the elements
+     */
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Object coffee : set) {
+            blackhole.consume(coffee);
+        }
+    }
+
+    /**
+     * Measures one operation of the contains/add/remove mix on a probe.
+     *
+     * @return whether the operation succeeded
+     */
+    @Benchmark
+    public boolean mix() {
+        int index = nextIndex();
+        Object probe = probes[index];
+        switch (kinds[index]) {
+            case 0:
+                return set.contains(probe);
+            case 1:
+                return set.add(probe);
+            default:
+                return set.remove(probe);
+        }
+    }
+
+    /**
+     * Holds the set filtered by the {@code retainAll} benchmark. It is a separate state so that
+     * only that benchmark pays for refilling a set before every call.
+     */
+    @State(Scope.Thread)
+    public static class Retained {
+        /** The set filtered by the next call. */
+        private Set<Object> set;
+
+        /**
+         * Fills the set filtered by the next call.
+         *
+         * @param benchmark the benchmark state holding the coffees
+         */
+        @Setup(Level.Invocation)
+        public void setUp(CoffeeSetJmhBenchmark benchmark) {
+            set = benchmark.filled();
+        }
+    }
+}
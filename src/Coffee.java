@@ -1,28 +1,64 @@
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Represents a coffee product with details such as name, price, weight, volume, and quality rating.
  * The class also provides methods to calculate total weight, total volume, and price/weight ratio.
+ * These derived values are cached and recomputed by the setters they depend on, so reading them
+ * costs no more than reading a field.
+ * <p>
+ * Every coffee has a {@link CoffeeState}, fixed at construction: plain coffees are ground, and
+ * the subclasses {@link GroundCoffee}, {@link WholeBeanCoffee} and {@link InstantCoffee} select
+ * their own state. Two coffees are equal when they have the same state, name, price, weights,
+ * volumes and quality rating. The hash code is cached and recomputed after a mutation. Because
+ * hashed collections rely on a stable hash code, a coffee can be {@linkplain #freeze() frozen}
+ * before it is stored in one, after which its setters reject any change. Alternatively,
+ * {@linkplain #addChangeListener(CoffeeChangeListener) change listeners} are told before and
+ * after each field changes, which lets a {@link CoffeeSet} re-key a stored coffee and record the
+ * change.
  */
 public class Coffee {
     /** The name of the coffee product. */
-    protected String name;
+    private String name;
     
     /** The price of the coffee product. */
-    protected double price;
+    private double price;
     
     /** The weight of the coffee content. */
-    protected double coffeeWeight;
+    private double coffeeWeight;
     
     /** The weight of the packaging. */
-    protected double packagingWeight;
+    private double packagingWeight;
     
     /** The volume of the coffee content. */
-    protected double coffeeVolume;
+    private double coffeeVolume;
     
     /** The volume of the packaging. */
-    protected double packagingVolume;
+    private double packagingVolume;
     
     /** The quality rating of the coffee product, rated from 0 to 10. */
-    protected int qualityRating;
+    private int qualityRating;
+
+    /** The state the coffee product is sold in. */
+    private final CoffeeState state;
+
+    /** The cached total weight (coffee + packaging), recomputed by the weight setters. */
+    private double totalWeight;
+
+    /** The cached total volume (coffee + packaging), recomputed by the volume setters. */
+    private double totalVolume;
+
+    /** The cached price/weight ratio, recomputed by the price and weight setters. */
+    private double priceWeightRatio;
+
+    /** The cached hash code of the coffee product, or 0 if it has not been computed yet. */
+    private int hash;
+
+    /** Whether the coffee product has been frozen and can no longer be modified. */
+    private boolean frozen;
+
+    /** The listeners notified of changes to the fields, or null if there are none. */
+    private CoffeeChangeListener[] listeners;
 
     /**
      * Constructs a new Coffee object with the specified properties.
@@ -40,6 +76,29 @@ public class Coffee {
      */
     public Coffee(String name, double price, double coffeeWeight, double packagingWeight,
                   double coffeeVolume, double packagingVolume, int qualityRating) {
+        this(CoffeeState.GROUND, name, price, coffeeWeight, packagingWeight, coffeeVolume, packagingVolume,
+                qualityRating);
+    }
+
+    /**
+     * Constructs a new Coffee object in the specified state with the specified properties.
+     * Subclasses use this constructor to select their state.
+     *
+     * @param state the state the coffee product is sold in
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @throws NullPointerException if the state is null, or if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    protected Coffee(CoffeeState state, String name, double price, double coffeeWeight,
+                     double packagingWeight, double coffeeVolume, double packagingVolume, int qualityRating) {
+        this.state = Objects.requireNonNull(state, "State cannot be null.");
         setName(name);
         setPrice(price);
         setCoffeeWeight(coffeeWeight);
@@ -50,12 +109,23 @@ public class Coffee {
     }
 
     /**
-     * Returns the state of the coffee (e.g., "Ground", "Whole Bean").
+     * Returns the state of the coffee (e.g., "Ground", "Whole Bean"). By default the label is
+     * read from the {@link CoffeeState} chosen at construction; subclasses written before the
+     * state field existed may still override it.
      *
-     * @return the state of the coffee, default is "Ground"
+     * @return the label of the state of the coffee, "Ground" for a plain coffee
      */
     public String getState() {
-        return "Ground";
+        return state.getLabel();
+    }
+
+    /**
+     * Returns the state of the coffee as a {@link CoffeeState} constant, for code that switches on it.
+     *
+     * @return the state of the coffee
+     */
+    public final CoffeeState getCoffeeState() {
+        return state;
     }
 
     /**
@@ -65,11 +135,10 @@ public class Coffee {
      * @throws ArithmeticException if total weight is zero
      */
     public double getPriceWeightRatio() {
-        double totalWeight = getTotalWeight();
         if (totalWeight == 0) {
             throw new ArithmeticException("Total weight cannot be zero when calculating price/weight ratio.");
         }
-        return price / totalWeight;
+        return priceWeightRatio;
     }
 
     /**
@@ -78,7 +147,7 @@ public class Coffee {
      * @return the total weight of the coffee product
      */
     public double getTotalWeight() {
-        return coffeeWeight + packagingWeight;
+        return totalWeight;
     }
 
     /**
@@ -87,7 +156,7 @@ public class Coffee {
      * @return the total volume of the coffee product
      */
     public double getTotalVolume() {
-        return coffeeVolume + packagingVolume;
+        return totalVolume;
     }
 
     /**
@@ -158,12 +227,15 @@ public class Coffee {
      *
      * @param name the new name of the coffee product
      * @throws NullPointerException if the name is null or empty
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setName(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new NullPointerException("Name cannot be null or empty.");
-        }
-        this.name = name;
+        checkNotFrozen();
+        String value = checkName(name);
+        beforeChange(CoffeeField.NAME);
+        this.name = value;
+        hash = 0;
+        afterChange(CoffeeField.NAME);
     }
 
     /**
@@ -171,12 +243,16 @@ public class Coffee {
      *
      * @param price the new price of the coffee product
      * @throws IllegalArgumentException if the price is less than or equal to 0
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setPrice(double price) {
-        if (price <= 0) {
-            throw new IllegalArgumentException("Price must be greater than zero.");
-        }
-        this.price = price;
+        checkNotFrozen();
+        double value = checkPrice(price);
+        beforeChange(CoffeeField.PRICE);
+        this.price = value;
+        priceWeightRatio = price / totalWeight;
+        hash = 0;
+        afterChange(CoffeeField.PRICE);
     }
 
     /**
@@ -184,12 +260,16 @@ public class Coffee {
      *
      * @param coffeeWeight the new coffee weight
      * @throws IllegalArgumentException if the coffee weight is negative
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setCoffeeWeight(double coffeeWeight) {
-        if (coffeeWeight < 0) {
-            throw new IllegalArgumentException("Coffee weight cannot be negative.");
-        }
-        this.coffeeWeight = coffeeWeight;
+        checkNotFrozen();
+        double value = checkNonNegative(coffeeWeight, "Coffee weight");
+        beforeChange(CoffeeField.COFFEE_WEIGHT);
+        this.coffeeWeight = value;
+        updateWeightMetrics();
+        hash = 0;
+        afterChange(CoffeeField.COFFEE_WEIGHT);
     }
 
     /**
@@ -197,12 +277,16 @@ public class Coffee {
      *
      * @param packagingWeight the new packaging weight
      * @throws IllegalArgumentException if the packaging weight is negative
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setPackagingWeight(double packagingWeight) {
-        if (packagingWeight < 0) {
-            throw new IllegalArgumentException("Packaging weight cannot be negative.");
-        }
-        this.packagingWeight = packagingWeight;
+        checkNotFrozen();
+        double value = checkNonNegative(packagingWeight, "Packaging weight");
+        beforeChange(CoffeeField.PACKAGING_WEIGHT);
+        this.packagingWeight = value;
+        updateWeightMetrics();
+        hash = 0;
+        afterChange(CoffeeField.PACKAGING_WEIGHT);
     }
 
     /**
@@ -210,12 +294,16 @@ public class Coffee {
      *
      * @param coffeeVolume the new coffee volume
      * @throws IllegalArgumentException if the coffee volume is negative
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setCoffeeVolume(double coffeeVolume) {
-        if (coffeeVolume < 0) {
-            throw new IllegalArgumentException("Coffee volume cannot be negative.");
-        }
-        this.coffeeVolume = coffeeVolume;
+        checkNotFrozen();
+        double value = checkNonNegative(coffeeVolume, "Coffee volume");
+        beforeChange(CoffeeField.COFFEE_VOLUME);
+        this.coffeeVolume = value;
+        totalVolume = coffeeVolume + packagingVolume;
+        hash = 0;
+        afterChange(CoffeeField.COFFEE_VOLUME);
     }
 
     /**
@@ -223,12 +311,16 @@ public class Coffee {
      *
      * @param packagingVolume the new packaging volume
      * @throws IllegalArgumentException if the packaging volume is negative
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setPackagingVolume(double packagingVolume) {
-        if (packagingVolume < 0) {
-            throw new IllegalArgumentException("Packaging volume cannot be negative.");
-        }
-        this.packagingVolume = packagingVolume;
+        checkNotFrozen();
+        double value = checkNonNegative(packagingVolume, "Packaging volume");
+        beforeChange(CoffeeField.PACKAGING_VOLUME);
+        this.packagingVolume = value;
+        totalVolume = coffeeVolume + packagingVolume;
+        hash = 0;
+        afterChange(CoffeeField.PACKAGING_VOLUME);
     }
 
     /**
@@ -236,37 +328,265 @@ public class Coffee {
      *
      * @param qualityRating the new quality rating, must be between 0 and 10
      * @throws IllegalArgumentException if the quality rating is not between 0 and 10
+     * @throws IllegalStateException if the coffee product is frozen
      */
     public void setQualityRating(int qualityRating) {
+        checkNotFrozen();
+        int value = checkQualityRating(qualityRating);
+        beforeChange(CoffeeField.QUALITY_RATING);
+        this.qualityRating = value;
+        hash = 0;
+        afterChange(CoffeeField.QUALITY_RATING);
+    }
+
+    /**
+     * Recomputes the cached total weight and price/weight ratio after a weight has changed.
+     */
+    private void updateWeightMetrics() {
+        totalWeight = coffeeWeight + packagingWeight;
+        priceWeightRatio = price / totalWeight;
+    }
+
+    /**
+     * Validates a coffee name using the rules of {@link #setName(String)}.
+     *
+     * @param name the name to validate
+     * @return the name
+     * @throws NullPointerException if the name is null or empty
+     */
+    static String checkName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new NullPointerException("Name cannot be null or empty.");
+        }
+        return name;
+    }
+
+    /**
+     * Validates a price using the rules of {@link #setPrice(double)}.
+     *
+     * @param price the price to validate
+     * @return the price
+     * @throws IllegalArgumentException if the price is less than or equal to 0
+     */
+    static double checkPrice(double price) {
+        if (price <= 0) {
+            throw new IllegalArgumentException("Price must be greater than zero.");
+        }
+        return price;
+    }
+
+    /**
+     * Validates a weight or volume using the rules of the weight and volume setters.
+     *
+     * @param value the weight or volume to validate
+     * @param label the name of the value used in the error message, e.g. "Coffee weight"
+     * @return the value
+     * @throws IllegalArgumentException if the value is negative
+     */
+    static double checkNonNegative(double value, String label) {
+        if (value < 0) {
+            throw new IllegalArgumentException(label + " cannot be negative.");
+        }
+        return value;
+    }
+
+    /**
+     * Validates a quality rating using the rules of {@link #setQualityRating(int)}.
+     *
+     * @param qualityRating the quality rating to validate
+     * @return the quality rating
+     * @throws IllegalArgumentException if the quality rating is not between 0 and 10
+     */
+    static int checkQualityRating(int qualityRating) {
         if (qualityRating < 0 || qualityRating > 10) {
             throw new IllegalArgumentException("Quality rating must be between 0 and 10.");
         }
-        this.qualityRating = qualityRating;
+        return qualityRating;
+    }
+
+    /**
+     * Freezes the coffee product so that its fields, and therefore its hash code, can no longer
+     * change. Freezing an already frozen coffee product has no effect.
+     *
+     * @return this coffee product
+     */
+    public Coffee freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Returns whether the coffee product has been frozen.
+     *
+     * @return {@code true} if the coffee product is frozen; {@code false} otherwise
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Registers a listener to be notified before and after each change to a field of the coffee
+     * product. Listeners are notified in registration order, on the thread making the change.
+     *
+     * @param listener the listener to register
+     * @throws NullPointerException if the listener is null
+     */
+    public void addChangeListener(CoffeeChangeListener listener) {
+        Objects.requireNonNull(listener, "Listener cannot be null.");
+        if (listeners == null) {
+            listeners = new CoffeeChangeListener[] {listener};
+        } else {
+            CoffeeChangeListener[] extended = Arrays.copyOf(listeners, listeners.length + 1);
+            extended[listeners.length] = listener;
+            listeners = extended;
+        }
+    }
+
+    /**
+     * Unregisters a listener registered with {@link #addChangeListener(CoffeeChangeListener)}.
+     * Nothing happens if the listener is not registered.
+     *
+     * @param listener the listener to unregister
+     */
+    public void removeChangeListener(CoffeeChangeListener listener) {
+        if (listeners == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    listeners = null;
+                } else {
+                    CoffeeChangeListener[] reduced = new CoffeeChangeListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, reduced, 0, i);
+                    System.arraycopy(listeners, i + 1, reduced, i, reduced.length - i);
+                    listeners = reduced;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that a field is about to change.
+     *
+     * @param field the field about to change
+     */
+    private void beforeChange(CoffeeField field) {
+        CoffeeChangeListener[] current = listeners;
+        if (current != null) {
+            for (CoffeeChangeListener listener : current) {
+                listener.beforeChange(this, field);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that a field has changed.
+     *
+     * @param field the field that changed
+     */
+    private void afterChange(CoffeeField field) {
+        CoffeeChangeListener[] current = listeners;
+        if (current != null) {
+            for (CoffeeChangeListener listener : current) {
+                listener.afterChange(this, field);
+            }
+        }
+    }
+
+    /**
+     * Throws if the coffee product has been frozen.
+     *
+     * @throws IllegalStateException if the coffee product is frozen
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Coffee is frozen and cannot be modified.");
+        }
+    }
+
+    /**
+     * Compares this coffee product with the specified object. The result is {@code true} if the
+     * object is a coffee product with the same state, name, price, weights, volumes and quality
+     * rating. The class of the coffee only matters through its state.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the objects are equal; {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Coffee)) {
+            return false;
+        }
+        Coffee other = (Coffee) o;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        return state == other.state
+                && qualityRating == other.qualityRating
+                && Double.compare(price, other.price) == 0
+                && Double.compare(coffeeWeight, other.coffeeWeight) == 0
+                && Double.compare(packagingWeight, other.packagingWeight) == 0
+                && Double.compare(coffeeVolume, other.coffeeVolume) == 0
+                && Double.compare(packagingVolume, other.packagingVolume) == 0
+                && name.equals(other.name);
+    }
+
+    /**
+     * Returns the hash code of the coffee product. The value is computed from the same fields
+     * as {@link #equals(Object)} except the state, so that it can also be computed from the raw
+     * properties by {@link #hash}, and cached until the next mutation.
+     *
+     * @return the hash code of the coffee product
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = hash(name, price, coffeeWeight, packagingWeight, coffeeVolume, packagingVolume, qualityRating);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Computes the hash code that a coffee with the specified properties has, so that stores
+     * keeping coffees in another form can hash them consistently with {@link #hashCode()}.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product
+     * @return the hash code
+     */
+    static int hash(String name, double price, double coffeeWeight, double packagingWeight,
+                    double coffeeVolume, double packagingVolume, int qualityRating) {
+        int h = name.hashCode();
+        h = 31 * h + Double.hashCode(price);
+        h = 31 * h + Double.hashCode(coffeeWeight);
+        h = 31 * h + Double.hashCode(packagingWeight);
+        h = 31 * h + Double.hashCode(coffeeVolume);
+        h = 31 * h + Double.hashCode(packagingVolume);
+        return 31 * h + qualityRating;
     }
 
     /**
      * Returns a string representation of the coffee product, including details about its weight,
-     * volume, quality rating, and price/weight ratio.
+     * volume, quality rating, and price/weight ratio. The text is produced by
+     * {@link CoffeeReportRenderer}.
      *
      * @return a string representation of the coffee product
+     * @throws ArithmeticException if total weight is zero
      */
     @Override
     public String toString() {
-        return String.format(
-            "-------------------------------\n" +
-            "Name: %s\n" +
-            "Price: $%.2f\n" +
-            "Coffee Weight: %.2f kg\n" +
-            "Packaging Weight: %.2f kg\n" +
-            "Total Weight: %.2f kg\n" +
-            "Coffee Volume: %.2f L\n" +
-            "Packaging Volume: %.2f L\n" +
-            "Total Volume: %.2f L\n" +
-            "Quality Rating: %d\n" +
-            "State: %s\n" +
-            "Price/Weight Ratio: $%.2f\n" +
-            "-------------------------------",
-            name, price, coffeeWeight, packagingWeight, getTotalWeight(), coffeeVolume, packagingVolume,
-            getTotalVolume(), qualityRating, getState(), getPriceWeightRatio());
+        return CoffeeReportRenderer.render(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Provides single-pass aggregation operators over collections of {@link Coffee} objects: the
+ * top K elements of an ordering, per-group statistics of a numeric attribute, and approximate
+ * quantiles of the price/weight ratio.
+ * <p>
+ * Each operator is available as a {@link Collector} that can be used on any stream of coffees,
+ * and as a method that runs it over a {@code parallelStream()} of a collection. Every collector
+ * keeps a bounded partial result per partition and merges the partial results, so the
+ * operators run in parallel and never copy or sort the whole collection. With a
+ * {@link CoffeeSet}, the partitions are the batches split off by its spliterator.
+ */
+public final class CoffeeAggregations {
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeAggregations() {
+    }
+
+    /**
+     * Returns the greatest elements of a collection under the specified order, greatest first,
+     * computed in parallel with {@link #topK(int, Comparator)}.
+     *
+     * @param coffees the coffees to rank
+     * @param k the number of elements to return
+     * @param order the order ranking the coffees; the greatest elements are returned
+     * @return a new list of at most {@code k} coffees, greatest first
+     * @throws IllegalArgumentException if {@code k} is negative
+     * @throws NullPointerException if the order is null
+     */
+    public static List<Coffee> topK(Collection<? extends Coffee> coffees, int k, Comparator<? super Coffee> order) {
+        return coffees.parallelStream().collect(topK(k, order));
+    }
+
+    /**
+     * Returns a collector that keeps the greatest elements under the specified order in a
+     * bounded min-heap of {@code k} elements, and finishes with them sorted greatest first.
+     * Each partition costs O(n log k) time and O(k) memory.
+     *
+     * @param k the number of elements to keep
+     * @param order the order ranking the coffees; the greatest elements are kept
+     * @return a collector of the top {@code k} coffees
+     * @throws IllegalArgumentException if {@code k} is negative
+     * @throws NullPointerException if the order is null
+     */
+    public static Collector<Coffee, ?, List<Coffee>> topK(int k, Comparator<? super Coffee> order) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K cannot be negative.");
+        }
+        Objects.requireNonNull(order, "Order cannot be null.");
+        return Collector.of(
+                () -> new PriorityQueue<Coffee>(Math.max(1, k), order),
+                (heap, coffee) -> offer(heap, coffee, k, order),
+                (left, right) -> {
+                    for (Coffee coffee : right) {
+                        offer(left, coffee, k, order);
+                    }
+                    return left;
+                },
+                heap -> {
+                    List<Coffee> top = new ArrayList<>(heap);
+                    top.sort(order.reversed());
+                    return top;
+                });
+    }
+
+    /**
+     * Offers a coffee to a bounded min-heap, evicting the least element if the heap is full and
+     * the coffee ranks above it.
+     *
+     * @param heap the heap of the greatest coffees seen so far
+     * @param coffee the coffee to offer
+     * @param k the capacity of the heap
+     * @param order the order ranking the coffees
+     */
+    private static void offer(PriorityQueue<Coffee> heap, Coffee coffee, int k, Comparator<? super Coffee> order) {
+        if (heap.size() < k) {
+            heap.add(coffee);
+        } else if (k > 0 && order.compare(coffee, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(coffee);
+        }
+    }
+
+    /**
+     * Returns the count, sum, minimum, maximum and mean of a numeric attribute for each group of
+     * a collection, computed in a single parallel pass with
+     * {@link #groupedStatistics(Function, ToDoubleFunction)}.
+     *
+     * @param coffees the coffees to aggregate
+     * @param key the function extracting the group key, e.g. {@code Coffee::getState}
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getPrice}
+     * @param <K> the type of the group keys
+     * @return a new map from each group key to the statistics of its group
+     * @throws NullPointerException if the key or attribute function is null
+     */
+    public static <K> Map<K, DoubleSummaryStatistics> groupedStatistics(
+            Collection<? extends Coffee> coffees, Function<? super Coffee, ? extends K> key,
+            ToDoubleFunction<? super Coffee> attribute) {
+        return coffees.parallelStream().collect(groupedStatistics(key, attribute));
+    }
+
+    /**
+     * Returns a collector of the count, sum, minimum, maximum and mean of a numeric attribute
+     * for each group. Only one statistics object per group and partition is kept.
+     *
+     * @param key the function extracting the group key, e.g. {@code Coffee::getState}
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getPrice}
+     * @param <K> the type of the group keys
+     * @return a collector of the statistics of each group
+     * @throws NullPointerException if the key or attribute function is null
+     */
+    public static <K> Collector<Coffee, ?, Map<K, DoubleSummaryStatistics>> groupedStatistics(
+            Function<? super Coffee, ? extends K> key, ToDoubleFunction<? super Coffee> attribute) {
+        Objects.requireNonNull(key, "Key function cannot be null.");
+        Objects.requireNonNull(attribute, "Attribute function cannot be null.");
+        return Collectors.groupingBy(key, Collectors.summarizingDouble(attribute));
+    }
+
+    /**
+     * Returns the count, sum, minimum, maximum and mean of a numeric attribute for each
+     * {@link CoffeeState} present in a collection, computed in a single parallel pass with
+     * {@link #statisticsByState(ToDoubleFunction)}.
+     *
+     * @param coffees the coffees to aggregate
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getPrice}
+     * @return a new map from each state to the statistics of its coffees
+     * @throws NullPointerException if the attribute function is null
+     */
+    public static Map<CoffeeState, DoubleSummaryStatistics> statisticsByState(
+            Collection<? extends Coffee> coffees, ToDoubleFunction<? super Coffee> attribute) {
+        return coffees.parallelStream().collect(statisticsByState(attribute));
+    }
+
+    /**
+     * Returns a collector of the count, sum, minimum, maximum and mean of a numeric attribute
+     * for each {@link CoffeeState}. Unlike grouping by {@link Coffee#getState()}, the statistics
+     * are kept in an array indexed by the ordinal of the state, so no key is hashed or compared.
+     *
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getPrice}
+     * @return a collector of the statistics of each state
+     * @throws NullPointerException if the attribute function is null
+     */
+    public static Collector<Coffee, ?, Map<CoffeeState, DoubleSummaryStatistics>> statisticsByState(
+            ToDoubleFunction<? super Coffee> attribute) {
+        Objects.requireNonNull(attribute, "Attribute function cannot be null.");
+        int states = CoffeeState.values().length;
+        return Collector.of(
+                () -> new DoubleSummaryStatistics[states],
+                (statistics, coffee) -> {
+                    int i = coffee.getCoffeeState().ordinal();
+                    if (statistics[i] == null) {
+                        statistics[i] = new DoubleSummaryStatistics();
+                    }
+                    statistics[i].accept(attribute.applyAsDouble(coffee));
+                },
+                (left, right) -> {
+                    for (int i = 0; i < states; i++) {
+                        if (left[i] == null) {
+                            left[i] = right[i];
+                        } else if (right[i] != null) {
+                            left[i].combine(right[i]);
+                        }
+                    }
+                    return left;
+                },
+                statistics -> {
+                    Map<CoffeeState, DoubleSummaryStatistics> byState = new EnumMap<>(CoffeeState.class);
+                    for (int i = 0; i < states; i++) {
+                        if (statistics[i] != null) {
+                            byState.put(CoffeeState.ofOrdinal(i), statistics[i]);
+                        }
+                    }
+                    return byState;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a sketch of the price/weight ratios of a collection, built in parallel with
+     * {@link #ratioSketch(double)}.
+     *
+     * @param coffees the coffees to aggregate
+     * @param relativeAccuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     * @return a new sketch of the price/weight ratios
+     * @throws IllegalArgumentException if the relative accuracy is not between 0 and 1 exclusive
+     */
+    public static QuantileSketch ratioSketch(Collection<? extends Coffee> coffees, double relativeAccuracy) {
+        return coffees.parallelStream().collect(ratioSketch(relativeAccuracy));
+    }
+
+    /**
+     * Returns a collector that builds a {@link QuantileSketch} of the price/weight ratios, one
+     * sketch per partition, merged at the end. Coffees with a total weight of zero have no ratio
+     * and are skipped, as are coffees whose ratio is infinite or not a number.
+     *
+     * @param relativeAccuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     * @return a collector of a sketch of the price/weight ratios
+     * @throws IllegalArgumentException if the relative accuracy is not between 0 and 1 exclusive
+     */
+    public static Collector<Coffee, ?, QuantileSketch> ratioSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1 exclusive.");
+        }
+        return Collector.of(
+                () -> new QuantileSketch(relativeAccuracy),
+                (sketch, coffee) -> {
+                    if (coffee.getTotalWeight() != 0) {
+                        double ratio = coffee.getPriceWeightRatio();
+                        if (Double.isFinite(ratio)) {
+                            sketch.add(ratio);
+                        }
+                    }
+                },
+                QuantileSketch::merge,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+}
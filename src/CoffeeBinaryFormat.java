@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes coffee catalogues in a compact, fixed-width binary format.
+ * <p>
+ * A file consists of a header, one fixed-width record per coffee and a string table holding
+ * each distinct name once:
+ * <pre>
+ * header   magic (int), version (short), reserved (short), record count (int), name count (int),
+ *          string table offset (long), CRC-32C of everything after the header (long)
+ * record   price, coffee weight, packaging weight, coffee volume, packaging volume (double each),
+ *          quality rating (short), {@link CoffeeState} ordinal (short), name index (int)
+ * names    byte length (int) followed by the UTF-8 bytes, for each name
+ * </pre>
+ * Version 1 files, written before coffees had a state, store the quality rating as an int in
+ * place of the rating and state; they are still read, as ground coffees.
+ * All values are little-endian. The reader maps the file into memory with
+ * {@link FileChannel#map} and decodes records with absolute reads, so loading costs little more
+ * than creating the coffees themselves.
+ */
+public final class CoffeeBinaryFormat {
+    /** The magic number identifying a coffee catalogue file ("CFEE"). */
+    static final int MAGIC = 0x43464545;
+
+    /** The version of the format written by this class. */
+    static final short VERSION = 2;
+
+    /** The oldest version of the format read by this class. */
+    static final short MIN_VERSION = 1;
+
+    /** The size of the header in bytes. */
+    static final int HEADER_SIZE = 32;
+
+    /** The size of a record in bytes. */
+    static final int RECORD_SIZE = 48;
+
+    /** The size of the buffer used when writing. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeBinaryFormat() {
+    }
+
+    /**
+     * Writes the specified coffees to a file, replacing its contents.
+     *
+     * @param file the file to write
+     * @param coffees the coffees to write, in iteration order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Collection<? extends Coffee> coffees) throws IOException {
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            int count = 0;
+            for (Coffee coffee : coffees) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    flush(channel, buffer, checksum);
+                }
+                Integer nameId = nameIds.get(coffee.getName());
+                if (nameId == null) {
+                    nameId = names.size();
+                    names.add(coffee.getName());
+                    nameIds.put(coffee.getName(), nameId);
+                }
+                buffer.putDouble(coffee.getPrice())
+                        .putDouble(coffee.getCoffeeWeight())
+                        .putDouble(coffee.getPackagingWeight())
+                        .putDouble(coffee.getCoffeeVolume())
+                        .putDouble(coffee.getPackagingVolume())
+                        .putShort((short) coffee.getQualityRating())
+                        .putShort((short) coffee.getCoffeeState().ordinal())
+                        .putInt(nameId);
+                count++;
+            }
+
+            long stringTableOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < Integer.BYTES) {
+                    flush(channel, buffer, checksum);
+                }
+                buffer.putInt(bytes.length);
+                for (int offset = 0; offset < bytes.length; ) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer, checksum);
+                    }
+                    int length = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, length);
+                    offset += length;
+                }
+            }
+            flush(channel, buffer, checksum);
+
+            buffer.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) 0)
+                    .putInt(count)
+                    .putInt(names.size())
+                    .putLong(stringTableOffset)
+                    .putLong(checksum.getValue())
+                    .flip();
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel, adds them to the checksum and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer holding the bytes
+     * @param checksum the running checksum of the file body
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads a file written by {@link #write(Path, Collection)} into a new {@link CoffeeSet}, in
+     * file order.
+     *
+     * @param file the file to read
+     * @return a coffee set holding the coffees of the file
+     * @throws IOException if the file cannot be read, is not a valid coffee catalogue, or holds
+     *                     a record that violates the rules of the {@link Coffee} setters
+     */
+    public static CoffeeSet read(Path file) throws IOException {
+        Catalogue catalogue = map(file);
+        CoffeeSet set = new CoffeeSet(catalogue.count);
+        for (int i = 0; i < catalogue.count; i++) {
+            set.add(catalogue.coffee(i));
+        }
+        return set;
+    }
+
+    /**
+     * Reads a file written by {@link #write(Path, Collection)} into a new {@link CoffeeStore},
+     * without creating any {@link Coffee} objects.
+     *
+     * @param file the file to read
+     * @return a coffee store holding a row for each record of the file
+     * @throws IOException if the file cannot be read, is not a valid coffee catalogue, or holds
+     *                     a record that violates the rules of the {@link Coffee} setters
+     */
+    public static CoffeeStore readStore(Path file) throws IOException {
+        Catalogue catalogue = map(file);
+        CoffeeStore store = new CoffeeStore(catalogue.count);
+        ByteBuffer records = catalogue.data;
+        for (int i = 0; i < catalogue.count; i++) {
+            int at = HEADER_SIZE + i * RECORD_SIZE;
+            String name = catalogue.name(records.getInt(at + 44));
+            try {
+                store.add(catalogue.state(at), name, records.getDouble(at), records.getDouble(at + 8),
+                        records.getDouble(at + 16), records.getDouble(at + 24), records.getDouble(at + 32),
+                        catalogue.qualityRating(at));
+            } catch (RuntimeException e) {
+                throw catalogue.invalidRecord(i, e);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Maps a file into memory and validates its header, checksum and string table.
+     *
+     * @param file the file to map
+     * @return the mapped catalogue
+     * @throws IOException if the file cannot be read or is not a valid coffee catalogue
+     */
+    private static Catalogue map(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported coffee catalogue size " + fileSize + " in " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a coffee catalogue: " + file);
+        }
+        short version = data.getShort(4);
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported coffee catalogue version " + data.getShort(4) + " in " + file);
+        }
+        int count = data.getInt(8);
+        int nameCount = data.getInt(12);
+        long stringTableOffset = data.getLong(16);
+        if (count < 0 || nameCount < 0 || stringTableOffset != HEADER_SIZE + (long) count * RECORD_SIZE
+                || stringTableOffset > data.limit()) {
+            throw new IOException("Corrupt coffee catalogue header in " + file);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(data.duplicate().position(HEADER_SIZE));
+        if (checksum.getValue() != data.getLong(24)) {
+            throw new IOException("Checksum mismatch in coffee catalogue " + file);
+        }
+
+        String[] names = new String[nameCount];
+        int position = (int) stringTableOffset;
+        for (int i = 0; i < nameCount; i++) {
+            int length = position + Integer.BYTES <= data.limit() ? data.getInt(position) : -1;
+            if (length < 0 || length > data.limit() - position - Integer.BYTES) {
+                throw new IOException("Corrupt string table in coffee catalogue " + file);
+            }
+            byte[] bytes = new byte[length];
+            data.get(position + Integer.BYTES, bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += Integer.BYTES + length;
+        }
+        return new Catalogue(file, data, version, count, names);
+    }
+
+    /**
+     * A mapped and validated coffee catalogue file.
+     */
+    private static final class Catalogue {
+        /** The path of the file, used in error messages. */
+        private final Path file;
+
+        /** The mapped contents of the file. */
+        private final ByteBuffer data;
+
+        /** The version of the format of the file. */
+        private final short version;
+
+        /** The number of records in the file. */
+        private final int count;
+
+        /** The decoded string table. */
+        private final String[] names;
+
+        /**
+         * Constructs a new Catalogue.
+         *
+         * @param file the path of the file
+         * @param data the mapped contents of the file
+         * @param version the version of the format of the file
+         * @param count the number of records
+         * @param names the decoded string table
+         */
+        Catalogue(Path file, ByteBuffer data, short version, int count, String[] names) {
+            this.file = file;
+            this.data = data;
+            this.version = version;
+            this.count = count;
+            this.names = names;
+        }
+
+        /**
+         * Returns the name with the specified index in the string table.
+         *
+         * @param nameId the index of the name
+         * @return the name
+         * @throws IOException if the index is out of range
+         */
+        String name(int nameId) throws IOException {
+            if (nameId < 0 || nameId >= names.length) {
+                throw new IOException("Invalid name index " + nameId + " in coffee catalogue " + file);
+            }
+            return names[nameId];
+        }
+
+        /**
+         * Creates the coffee described by the specified record.
+         *
+         * @param record the index of the record
+         * @return a new coffee
+         * @throws IOException if the record violates the rules of the {@link Coffee} setters
+         */
+        Coffee coffee(int record) throws IOException {
+            int at = HEADER_SIZE + record * RECORD_SIZE;
+            String name = name(data.getInt(at + 44));
+            try {
+                return state(at).newCoffee(name, data.getDouble(at), data.getDouble(at + 8),
+                        data.getDouble(at + 16), data.getDouble(at + 24), data.getDouble(at + 32),
+                        qualityRating(at));
+            } catch (RuntimeException e) {
+                throw invalidRecord(record, e);
+            }
+        }
+
+        /**
+         * Returns the quality rating stored in the record at the specified offset.
+         *
+         * @param at the offset of the record
+         * @return the quality rating
+         */
+        int qualityRating(int at) {
+            return version == 1 ? data.getInt(at + 40) : data.getShort(at + 40);
+        }
+
+        /**
+         * Returns the state stored in the record at the specified offset.
+         *
+         * @param at the offset of the record
+         * @return the state, always {@link CoffeeState#GROUND} for version 1 files
+         * @throws IllegalArgumentException if the record holds an unknown state
+         */
+        CoffeeState state(int at) {
+            return version == 1 ? CoffeeState.GROUND : CoffeeState.ofOrdinal(data.getShort(at + 42));
+        }
+
+        /**
+         * Creates the exception reported for a record that violates the rules of the
+         * {@link Coffee} setters.
+         *
+         * @param record the index of the record
+         * @param cause the validation error
+         * @return the exception to throw
+         */
+        IOException invalidRecord(int record, RuntimeException cause) {
+            return new IOException("Invalid coffee record " + record + " in " + file + ": " + cause.getMessage(), cause);
+        }
+    }
+}
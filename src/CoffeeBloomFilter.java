@@ -0,0 +1,230 @@
+/**
+ * A blocked Bloom filter over the hash codes of coffees, answering "definitely absent" or
+ * "possibly present" in constant time with a single memory read.
+ * <p>
+ * The filter is register-blocked: an element selects one 64-bit word from its hash code and
+ * sets six bits within it, so a query loads one word and compares it against a mask, without
+ * branches or loops. Keeping all the bits of an element in one word costs accuracy, which is
+ * made up for by allocating about 40% more bits than a classic Bloom filter with the same
+ * false-positive rate. The filter is sized for an expected number of elements and a target
+ * false-positive rate.
+ * <p>
+ * Elements cannot be removed from a Bloom filter. The owner of the filter reports each removal
+ * with {@link #removed()} and {@linkplain #reset(int) rebuilds} the filter once
+ * {@link #needsRebuild()} says that the removed elements or the growth past the expected size
+ * have made it too inaccurate. The filter also counts the queries it answers.
+ */
+public class CoffeeBloomFilter {
+    /** The extra bits allocated to make up for the accuracy lost to blocking. */
+    private static final double BLOCKING_OVERHEAD = 1.4;
+
+    /** The smallest number of elements a filter is sized for. */
+    private static final int MIN_EXPECTED_ELEMENTS = 1024;
+
+    /** The target false-positive rate. */
+    private final double falsePositiveRate;
+
+    /** The bits, one block per word. */
+    private long[] words;
+
+    /** The number of elements the filter is currently sized for. */
+    private int expectedElements;
+
+    /** The number of elements added since the last reset. */
+    private int added;
+
+    /** The number of elements removed from the owner since the last reset. */
+    private int removed;
+
+    /** The number of queries answered "definitely absent". */
+    private long negativeCount;
+
+    /** The number of queries answered "possibly present". */
+    private long positiveCount;
+
+    /** The number of "possibly present" answers for absent elements. */
+    private long falsePositiveCount;
+
+    /**
+     * Constructs an empty {@code CoffeeBloomFilter} sized for the specified number of elements.
+     *
+     * @param expectedElements the number of elements the filter is expected to hold
+     * @param falsePositiveRate the target false-positive rate, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the expected number of elements is negative, or if
+     *                                  the false-positive rate is not between 0 and 1 exclusive
+     */
+    public CoffeeBloomFilter(int expectedElements, double falsePositiveRate) {
+        if (expectedElements < 0) {
+            throw new IllegalArgumentException("Expected number of elements cannot be negative.");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1 exclusive.");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        reset(expectedElements);
+    }
+
+    /**
+     * Empties the filter and resizes it for the specified number of elements. The query
+     * counters are kept.
+     *
+     * @param expectedElements the number of elements the filter is expected to hold
+     * @throws IllegalArgumentException if the expected number of elements is negative
+     */
+    public void reset(int expectedElements) {
+        if (expectedElements < 0) {
+            throw new IllegalArgumentException("Expected number of elements cannot be negative.");
+        }
+        this.expectedElements = Math.max(MIN_EXPECTED_ELEMENTS, expectedElements);
+        double bitsPerElement = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) * BLOCKING_OVERHEAD;
+        long blocks = (long) Math.ceil(this.expectedElements * bitsPerElement / Long.SIZE);
+        words = new long[(int) Math.min(blocks, Integer.MAX_VALUE - 8)];
+        added = 0;
+        removed = 0;
+    }
+
+    /**
+     * Adds an element to the filter.
+     *
+     * @param o the element to add
+     */
+    public void add(Object o) {
+        long hash = o.hashCode() * 0x9e3779b97f4a7c15L;
+        words[word(hash)] |= mask(hash);
+        added++;
+    }
+
+    /**
+     * Checks whether an element may have been added to the filter, and counts the answer.
+     *
+     * @param o the element to look up
+     * @return {@code false} if the element was definitely not added; {@code true} if it may
+     *         have been
+     */
+    public boolean mightContain(Object o) {
+        long hash = o.hashCode() * 0x9e3779b97f4a7c15L;
+        long mask = mask(hash);
+        if ((words[word(hash)] & mask) != mask) {
+            negativeCount++;
+            return false;
+        }
+        positiveCount++;
+        return true;
+    }
+
+    /**
+     * Returns the index of the word selected by the high bits of a hash.
+     *
+     * @param hash the spread hash code of an element
+     * @return the index of the word in {@link #words}
+     */
+    private int word(long hash) {
+        return (int) (((hash >>> 32) * words.length) >>> 32);
+    }
+
+    /**
+     * Returns the six bits of the word set for a hash, chosen by six 6-bit fields of a second
+     * spread of the hash.
+     *
+     * @param hash the spread hash code of an element
+     * @return the mask of the bits of the element
+     */
+    private static long mask(long hash) {
+        long bits = hash * 0xc2b2ae3d27d4eb4fL;
+        return 1L << bits | 1L << (bits >>> 6) | 1L << (bits >>> 12) | 1L << (bits >>> 18)
+                | 1L << (bits >>> 24) | 1L << (bits >>> 30);
+    }
+
+    /**
+     * Records that an element was removed from the owner of the filter. Its bits stay set, so
+     * it may still be reported as possibly present until the filter is rebuilt.
+     */
+    public void removed() {
+        removed++;
+    }
+
+    /**
+     * Records that a "possibly present" answer turned out to be wrong.
+     */
+    public void falsePositive() {
+        falsePositiveCount++;
+    }
+
+    /**
+     * Checks whether the filter should be rebuilt: once more elements have been added than it
+     * was sized for, or once half of the elements added have been removed again.
+     *
+     * @return {@code true} if the filter should be rebuilt; {@code false} otherwise
+     */
+    public boolean needsRebuild() {
+        return added > expectedElements || removed > Math.max(added / 2, MIN_EXPECTED_ELEMENTS / 2);
+    }
+
+    /**
+     * Returns the target false-positive rate.
+     *
+     * @return the target false-positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Returns the number of queries answered "definitely absent", which needed no exact lookup.
+     *
+     * @return the number of negative answers
+     */
+    public long getNegativeCount() {
+        return negativeCount;
+    }
+
+    /**
+     * Returns the number of queries answered "possibly present", which needed an exact lookup.
+     *
+     * @return the number of positive answers
+     */
+    public long getPositiveCount() {
+        return positiveCount;
+    }
+
+    /**
+     * Returns the number of "possibly present" answers for elements that were absent.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount;
+    }
+
+    /**
+     * Returns the fraction of the queries for absent elements that were answered "possibly
+     * present".
+     *
+     * @return the observed false-positive rate, or 0 if no absent element has been looked up
+     */
+    public double getObservedFalsePositiveRate() {
+        long absent = negativeCount + falsePositiveCount;
+        return absent == 0 ? 0 : (double) falsePositiveCount / absent;
+    }
+
+    /**
+     * Returns the size of the bit array in bytes.
+     *
+     * @return the memory used by the bits of the filter
+     */
+    public long getSizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Returns a string representation of the filter with its size and query counters.
+     *
+     * @return a string describing the filter
+     */
+    @Override
+    public String toString() {
+        return "CoffeeBloomFilter{bytes=" + getSizeInBytes()
+                + ", negatives=" + negativeCount + ", positives=" + positiveCount
+                + ", falsePositives=" + falsePositiveCount + "}";
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * A listener notified before and after a field of a {@link Coffee} changes.
+ *
+ * @see Coffee#addChangeListener(CoffeeChangeListener)
+ */
+public interface CoffeeChangeListener {
+    /**
+     * Called before a field of the coffee changes, while it still holds its old value.
+     *
+     * @param coffee the coffee about to change
+     * @param field the field about to change
+     */
+    void beforeChange(Coffee coffee, CoffeeField field);
+
+    /**
+     * Called after a field of the coffee has changed.
+     *
+     * @param coffee the coffee that changed
+     * @param field the field that changed
+     */
+    void afterChange(Coffee coffee, CoffeeField field);
+}
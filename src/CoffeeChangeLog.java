@@ -0,0 +1,542 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of the changes made to a {@link CoffeeSet}, written to segment files in a
+ * directory so that another set can be brought up to date by replaying only the changes it has
+ * not seen, with {@link CoffeeChangeReplayer}.
+ * <p>
+ * The log is a {@link CoffeeSetListener}: once {@linkplain CoffeeSet#addListener registered}
+ * on a set, it records every addition, removal and clear, and every change made through the
+ * setters of a stored coffee. Each change becomes a record with a sequence number one greater
+ * than the previous one:
+ * <pre>
+ * record   payload length (int), CRC-32C of the payload (int), payload
+ * payload  sequence (long), operation (byte), then
+ *          ADD, REMOVE  coffee
+ *          CLEAR        nothing
+ *          UPDATE       coffee before the change, {@link CoffeeField} ordinal (byte), new value
+ * coffee   {@link CoffeeState} ordinal (byte), quality rating (byte), price, coffee weight,
+ *          packaging weight, coffee volume, packaging volume (double each), name
+ * value    a double, a byte for the quality rating, or a name
+ * name     byte length (int) followed by the UTF-8 bytes
+ * </pre>
+ * All values are little-endian. Segment files are named after the sequence number of their
+ * first record, and a new segment is started once the current one reaches the segment size.
+ * <p>
+ * Records are committed in groups: they are appended to an in-memory batch, and a background
+ * thread writes each batch with a single {@link FileChannel#write} and makes it durable with a
+ * single {@link FileChannel#force}, once per commit interval or as soon as the batch reaches
+ * its size limit. Recording a change therefore never waits for the disk, unless the writer
+ * falls a full batch behind. {@link #flush()} waits until every change recorded so far is
+ * durable. If writing fails, the failure is rethrown by the next change, flush or close.
+ */
+public class CoffeeChangeLog implements CoffeeSetListener, Closeable {
+    /** The operation code of an addition. */
+    static final byte ADD = 1;
+
+    /** The operation code of a removal. */
+    static final byte REMOVE = 2;
+
+    /** The operation code of a clear. */
+    static final byte CLEAR = 3;
+
+    /** The operation code of a field update. */
+    static final byte UPDATE = 4;
+
+    /** The size of the length and checksum preceding each payload, in bytes. */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /** The segment size used when none is specified, in bytes. */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    /** The commit interval used when none is specified, in milliseconds. */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+    /** The size of a batch at which it is committed without waiting for the interval, in bytes. */
+    private static final int BATCH_SIZE = 1 << 20;
+
+    /** The directory holding the segment files. */
+    private final Path directory;
+
+    /** The size at which a segment is closed and a new one started, in bytes. */
+    private final long segmentSize;
+
+    /** The longest time a change waits in the batch before it is committed, in milliseconds. */
+    private final long commitIntervalMillis;
+
+    /** The buffer used to encode one record. */
+    private ByteBuffer record = newBuffer(256);
+
+    /** The batch receiving new records. Guarded by {@code this}. */
+    private ByteBuffer batch = newBuffer(BATCH_SIZE);
+
+    /** The batch being written by the writer thread, swapped with {@link #batch}. Guarded by {@code this}. */
+    private ByteBuffer spare = newBuffer(BATCH_SIZE);
+
+    /** The sequence number of the first record in {@link #batch}. Guarded by {@code this}. */
+    private long batchFirstSequence;
+
+    /** The sequence number of the last record. Guarded by {@code this}. */
+    private long lastSequence;
+
+    /** The sequence number of the last durable record. Guarded by {@code this}. */
+    private long durableSequence;
+
+    /** The failure that stopped the writer thread, or null. Guarded by {@code this}. */
+    private IOException failure;
+
+    /** Whether the log has been closed. Guarded by {@code this}. */
+    private boolean closed;
+
+    /** The channel of the current segment, or null until the next batch is written. Used by the writer thread only. */
+    private FileChannel segment;
+
+    /** The thread committing the batches. */
+    private final Thread writer;
+
+    /**
+     * Opens the change log in the specified directory with the default segment size and commit
+     * interval, creating the directory if needed.
+     *
+     * @param directory the directory holding the segment files
+     * @throws IOException if the directory cannot be created or its segments cannot be read
+     */
+    public CoffeeChangeLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the change log in the specified directory, creating the directory if needed. New
+     * records continue the sequence of the existing segments in a new segment; a torn record
+     * left at the end of the last segment by a crash is truncated.
+     *
+     * @param directory the directory holding the segment files
+     * @param segmentSize the size at which a segment is closed and a new one started, in bytes
+     * @param commitIntervalMillis the longest time a change waits before it is committed, in
+     *                             milliseconds
+     * @throws IllegalArgumentException if the segment size or commit interval is not positive
+     * @throws IOException if the directory cannot be created or its segments cannot be read
+     */
+    public CoffeeChangeLog(Path directory, long segmentSize, long commitIntervalMillis) throws IOException {
+        Objects.requireNonNull(directory, "Directory cannot be null.");
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        if (commitIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Commit interval must be positive.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.commitIntervalMillis = commitIntervalMillis;
+
+        List<Path> segments = CoffeeChangeReplayer.segments(directory);
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            long[] tail = CoffeeChangeReplayer.scan(last);
+            if (tail[0] < Files.size(last)) {
+                try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+                    channel.truncate(tail[0]);
+                }
+            }
+            lastSequence = Math.max(CoffeeChangeReplayer.firstSequence(last) - 1, tail[1]);
+        }
+        durableSequence = lastSequence;
+
+        writer = new Thread(this::commitLoop, "coffee-change-log " + directory.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the directory holding the segment files.
+     *
+     * @return the directory of the log
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the sequence number of the last change recorded, durable or not.
+     *
+     * @return the last sequence number, or 0 if no change has ever been recorded
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the sequence number of the last change known to be on disk.
+     *
+     * @return the last durable sequence number
+     */
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Records the addition of a coffee.
+     *
+     * @param coffee the coffee added
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    @Override
+    public synchronized void added(Coffee coffee) {
+        record = putCoffee(begin(record, ADD), coffee);
+        append(record);
+    }
+
+    /**
+     * Records the removal of a coffee.
+     *
+     * @param coffee the coffee removed
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    @Override
+    public synchronized void removed(Coffee coffee) {
+        record = putCoffee(begin(record, REMOVE), coffee);
+        append(record);
+    }
+
+    /**
+     * Records the removal of all coffees.
+     *
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    @Override
+    public synchronized void cleared() {
+        append(begin(record, CLEAR));
+    }
+
+    /**
+     * Records the change of a field of a coffee, as the old coffee and the new value of the
+     * field only.
+     *
+     * @param before a copy of the coffee as it was before the change
+     * @param after the coffee after the change
+     * @param field the field that changed
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    @Override
+    public synchronized void updated(Coffee before, Coffee after, CoffeeField field) {
+        record = ensureCapacity(putCoffee(begin(record, UPDATE), before), 1 + Double.BYTES);
+        record.put((byte) field.ordinal());
+        switch (field) {
+            case NAME:
+                record = putName(record, after.getName());
+                break;
+            case QUALITY_RATING:
+                record.put((byte) after.getQualityRating());
+                break;
+            default:
+                record.putDouble(((Number) field.get(after)).doubleValue());
+                break;
+        }
+        append(record);
+    }
+
+    /**
+     * Starts encoding a record, leaving room for its header and its sequence number.
+     *
+     * @param buffer the buffer to encode the record into
+     * @param operation the operation code of the record
+     * @return the buffer
+     */
+    static ByteBuffer begin(ByteBuffer buffer, byte operation) {
+        buffer.clear();
+        buffer.position(RECORD_HEADER_SIZE + Long.BYTES);
+        return buffer.put(operation);
+    }
+
+    /**
+     * Encodes a coffee into a record buffer, growing the buffer if needed. Every coffee and
+     * name is followed by room for at least a double.
+     *
+     * @param buffer the buffer holding the record
+     * @param coffee the coffee to encode
+     * @return the buffer, or a larger copy of it
+     */
+    static ByteBuffer putCoffee(ByteBuffer buffer, Coffee coffee) {
+        buffer = ensureCapacity(buffer, 2 + 5 * Double.BYTES);
+        buffer.put((byte) coffee.getCoffeeState().ordinal())
+                .put((byte) coffee.getQualityRating())
+                .putDouble(coffee.getPrice())
+                .putDouble(coffee.getCoffeeWeight())
+                .putDouble(coffee.getPackagingWeight())
+                .putDouble(coffee.getCoffeeVolume())
+                .putDouble(coffee.getPackagingVolume());
+        return putName(buffer, coffee.getName());
+    }
+
+    /**
+     * Encodes a name into a record buffer, growing the buffer if needed.
+     *
+     * @param buffer the buffer holding the record
+     * @param name the name to encode
+     * @return the buffer, or a larger copy of it
+     */
+    static ByteBuffer putName(ByteBuffer buffer, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        buffer = ensureCapacity(buffer, Integer.BYTES + bytes.length + Double.BYTES);
+        return buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Returns a buffer holding the contents of the specified one with at least the specified
+     * number of bytes remaining.
+     *
+     * @param buffer the buffer to grow
+     * @param bytes the number of bytes needed
+     * @return the buffer, or a larger copy of it
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer grown = newBuffer(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        return grown.put(buffer);
+    }
+
+    /**
+     * Completes an encoded record with its sequence number, length and checksum, and flips the
+     * buffer so that the record can be read from it.
+     *
+     * @param buffer the buffer holding the record
+     * @param sequence the sequence number of the record
+     */
+    static void seal(ByteBuffer buffer, long sequence) {
+        int length = buffer.position() - RECORD_HEADER_SIZE;
+        buffer.putLong(RECORD_HEADER_SIZE, sequence);
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.array(), RECORD_HEADER_SIZE, length);
+        buffer.putInt(0, length).putInt(Integer.BYTES, (int) checksum.getValue());
+        buffer.flip();
+    }
+
+    /**
+     * Assigns the next sequence number to the encoded record, completes its header and appends
+     * it to the batch, waiting for the writer thread if the batch is full.
+     *
+     * @param buffer the record buffer
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    private synchronized void append(ByteBuffer buffer) {
+        checkOpen();
+        while (batch.position() >= BATCH_SIZE) {
+            notifyAll();
+            awaitWriter();
+            checkOpen();
+        }
+        long sequence = ++lastSequence;
+        seal(buffer, sequence);
+        if (batch.position() == 0) {
+            batchFirstSequence = sequence;
+        }
+        if (batch.remaining() < buffer.remaining()) {
+            ByteBuffer grown = newBuffer(batch.position() + buffer.remaining());
+            batch.flip();
+            grown.put(batch);
+            batch = grown;
+        }
+        batch.put(buffer);
+        if (batch.position() >= BATCH_SIZE) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every change recorded so far has been written and forced to disk.
+     *
+     * @throws IOException if writing the log has failed or the log is closed
+     */
+    public synchronized void flush() throws IOException {
+        long target = lastSequence;
+        while (durableSequence < target) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Change log is closed.");
+            }
+            notifyAll();
+            awaitWriter();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Commits the pending changes, stops the writer thread and closes the current segment.
+     * Closing a closed log has no effect.
+     *
+     * @throws IOException if writing the log has failed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Throws if the log is closed or writing it has failed.
+     *
+     * @throws IllegalStateException if the log is closed
+     * @throws UncheckedIOException if writing the log has failed
+     */
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Writing the change log failed.", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Change log is closed.");
+        }
+    }
+
+    /**
+     * Waits to be woken up by the writer thread, keeping the interrupt status of the caller.
+     */
+    private void awaitWriter() {
+        try {
+            wait(commitIntervalMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the change log.", e);
+        }
+    }
+
+    /**
+     * The body of the writer thread: swaps the batches once per commit interval, or as soon as
+     * the batch is full or a flush is waiting, then writes and forces the full batch outside the
+     * lock, so new changes are recorded while the previous group is being committed.
+     */
+    private void commitLoop() {
+        try {
+            while (true) {
+                ByteBuffer full;
+                long first;
+                long last;
+                boolean stopping;
+                synchronized (this) {
+                    if (batch.position() == 0 && !closed) {
+                        wait(commitIntervalMillis);
+                    }
+                    stopping = closed;
+                    if (batch.position() == 0) {
+                        if (stopping) {
+                            break;
+                        }
+                        continue;
+                    }
+                    full = batch;
+                    batch = spare;
+                    spare = full;
+                    first = batchFirstSequence;
+                    last = lastSequence;
+                }
+
+                full.flip();
+                write(full, first);
+                full.clear();
+                if (full.capacity() > BATCH_SIZE) {
+                    full = newBuffer(BATCH_SIZE);
+                }
+                synchronized (this) {
+                    spare = full;
+                    durableSequence = last;
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                failure = new IOException("Change log writer was interrupted.", e);
+                notifyAll();
+            }
+        } finally {
+            try {
+                if (segment != null) {
+                    segment.close();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of records to the current segment and forces it to disk, starting a new
+     * segment first if the current one has reached the segment size.
+     *
+     * @param full the batch, ready to be read
+     * @param first the sequence number of the first record of the batch
+     * @throws IOException if the batch cannot be written
+     */
+    private void write(ByteBuffer full, long first) throws IOException {
+        if (segment != null && segment.size() >= segmentSize) {
+            segment.close();
+            segment = null;
+        }
+        if (segment == null) {
+            segment = FileChannel.open(CoffeeChangeReplayer.segmentPath(directory, first),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        while (full.hasRemaining()) {
+            segment.write(full);
+        }
+        segment.force(false);
+    }
+
+    /**
+     * Allocates a little-endian heap buffer.
+     *
+     * @param capacity the capacity of the buffer in bytes
+     * @return a new buffer
+     */
+    static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Applies the changes recorded by a {@link CoffeeChangeLog} to another {@link CoffeeSet}, and
+ * compacts the segments of a log.
+ * <p>
+ * A replica remembers the sequence number returned by its last
+ * {@link #replay(Path, CoffeeSet, long) replay} and passes it to the next one, which skips
+ * whole segments by their names and applies only the newer records, so bringing a replica up to
+ * date costs time proportional to the number of changes rather than to the size of the
+ * catalogue. Reading a segment stops at the first torn or corrupt record, which can only be
+ * the tail left by a crash.
+ * <p>
+ * {@link #compact(Path) Compaction} folds every segment but the last, which may still be
+ * written to, into a single segment holding a clear followed by one addition per coffee. All
+ * its records carry the sequence number of the last folded change, so a replica that had seen
+ * any part of the folded changes rebuilds its contents from the snapshot, and one that had
+ * seen all of them skips it.
+ */
+public final class CoffeeChangeReplayer {
+    /** The suffix of the names of segment files. */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** The number of digits of the sequence number in the names of segment files. */
+    private static final int SEGMENT_NAME_DIGITS = 20;
+
+    /** The name of the file a compacted segment is written to before it is moved into place. */
+    private static final String COMPACTION_FILE = "compaction.tmp";
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeChangeReplayer() {
+    }
+
+    /**
+     * Applies the changes of a log with a sequence number greater than the specified one to a
+     * set. Additions, removals and clears are applied as such; an update replaces the element
+     * equal to the old coffee with a copy holding the new value.
+     *
+     * @param directory the directory of the log
+     * @param target the set to apply the changes to
+     * @param afterSequence the sequence number of the last change already applied to the set,
+     *                      or 0 to apply the whole log to an empty set
+     * @return the sequence number of the last change applied, to pass to the next replay
+     * @throws IOException if a segment cannot be read or holds a record that violates the rules
+     *                     of the {@link Coffee} setters
+     */
+    public static long replay(Path directory, CoffeeSet target, long afterSequence) throws IOException {
+        List<Path> segments = segments(directory);
+        long last = afterSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) - 1 <= afterSequence) {
+                continue;
+            }
+            SegmentReader reader = new SegmentReader(segments.get(i));
+            while (reader.next()) {
+                if (reader.sequence > afterSequence) {
+                    reader.apply(target);
+                    last = Math.max(last, reader.sequence);
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Folds every segment of a log but the last into a single snapshot segment, then deletes
+     * the folded segments. The snapshot is written to a temporary file and moved into place
+     * before anything is deleted, so a crash at any point leaves a log that replays to the same
+     * contents.
+     *
+     * @param directory the directory of the log
+     * @return the number of segments folded, 0 if there was nothing to compact
+     * @throws IOException if a segment cannot be read or written
+     */
+    public static int compact(Path directory) throws IOException {
+        List<Path> segments = segments(directory);
+        if (segments.size() < 2) {
+            return 0;
+        }
+        List<Path> folded = segments.subList(0, segments.size() - 1);
+        CoffeeSet contents = new CoffeeSet();
+        long last = 0;
+        for (Path segment : folded) {
+            SegmentReader reader = new SegmentReader(segment);
+            while (reader.next()) {
+                reader.apply(contents);
+                last = Math.max(last, reader.sequence);
+            }
+        }
+        if (last == 0) {
+            return 0;
+        }
+
+        Path temporary = directory.resolve(COMPACTION_FILE);
+        ByteBuffer record = CoffeeChangeLog.newBuffer(256);
+        ByteBuffer buffer = CoffeeChangeLog.newBuffer(1 << 16);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CoffeeChangeLog.seal(CoffeeChangeLog.begin(record, CoffeeChangeLog.CLEAR), last);
+            buffer.put(record);
+            for (Coffee coffee : contents) {
+                record = CoffeeChangeLog.putCoffee(CoffeeChangeLog.begin(record, CoffeeChangeLog.ADD), coffee);
+                CoffeeChangeLog.seal(record, last);
+                if (buffer.remaining() < record.remaining()) {
+                    write(channel, buffer);
+                    if (buffer.capacity() < record.remaining()) {
+                        buffer = CoffeeChangeLog.newBuffer(record.remaining());
+                    }
+                }
+                buffer.put(record);
+            }
+            write(channel, buffer);
+            channel.force(true);
+        }
+        Path snapshot = segmentPath(directory, last);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (Path segment : folded) {
+            if (!segment.equals(snapshot)) {
+                Files.delete(segment);
+            }
+        }
+        return folded.size();
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer holding the bytes
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the segment files of a log, in order of their first sequence number.
+     *
+     * @param directory the directory of the log
+     * @return a new list of the segment files, empty if the directory does not exist
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.length() == SEGMENT_NAME_DIGITS + SEGMENT_SUFFIX.length()
+                        && name.chars().limit(SEGMENT_NAME_DIGITS).allMatch(Character::isDigit)) {
+                    segments.add(path);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the path of the segment file whose first record has the specified sequence number.
+     *
+     * @param directory the directory of the log
+     * @param firstSequence the sequence number of the first record
+     * @return the path of the segment file
+     */
+    static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%0" + SEGMENT_NAME_DIGITS + "d%s", firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Returns the sequence number of the first record of a segment, from its name.
+     *
+     * @param segment the segment file
+     * @return the sequence number of its first record
+     */
+    static long firstSequence(Path segment) {
+        return Long.parseLong(segment.getFileName().toString().substring(0, SEGMENT_NAME_DIGITS));
+    }
+
+    /**
+     * Reads the valid records of a segment without applying them.
+     *
+     * @param segment the segment file
+     * @return the length of the valid prefix of the segment in bytes, and the sequence number
+     *         of its last valid record, or 0 if it has none
+     * @throws IOException if the segment cannot be read
+     */
+    static long[] scan(Path segment) throws IOException {
+        SegmentReader reader = new SegmentReader(segment);
+        long last = 0;
+        while (reader.next()) {
+            last = reader.sequence;
+        }
+        return new long[] {reader.position, last};
+    }
+
+    /**
+     * Reads the records of a mapped segment one by one, validating their lengths and checksums.
+     */
+    private static final class SegmentReader {
+        /** The path of the segment, used in error messages. */
+        private final Path file;
+
+        /** The mapped contents of the segment. */
+        private final ByteBuffer data;
+
+        /** The offset of the record after the current one. */
+        private int position;
+
+        /** The sequence number of the current record. */
+        private long sequence;
+
+        /** The operation code of the current record. */
+        private byte operation;
+
+        /**
+         * Maps a segment for reading.
+         *
+         * @param file the segment file
+         * @throws IOException if the segment cannot be read or is too large
+         */
+        SegmentReader(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Unsupported change log segment size " + size + " in " + file);
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        /**
+         * Moves to the next record, leaving the buffer positioned after its operation code.
+         *
+         * @return {@code true} if there is a next record; {@code false} at the end of the
+         *         segment or at a torn or corrupt record
+         */
+        boolean next() {
+            int start = position;
+            if (data.limit() - start < CoffeeChangeLog.RECORD_HEADER_SIZE) {
+                return false;
+            }
+            int length = data.getInt(start);
+            int payload = start + CoffeeChangeLog.RECORD_HEADER_SIZE;
+            if (length < Long.BYTES + 1 || length > data.limit() - payload) {
+                return false;
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(data.duplicate().position(payload).limit(payload + length));
+            if ((int) checksum.getValue() != data.getInt(start + Integer.BYTES)) {
+                return false;
+            }
+            sequence = data.getLong(payload);
+            operation = data.get(payload + Long.BYTES);
+            data.position(payload + Long.BYTES + 1);
+            position = payload + length;
+            return true;
+        }
+
+        /**
+         * Applies the current record to a set.
+         *
+         * @param target the set to apply the record to
+         * @throws IOException if the record is malformed or violates the rules of the
+         *                     {@link Coffee} setters
+         */
+        void apply(CoffeeSet target) throws IOException {
+            try {
+                switch (operation) {
+                    case CoffeeChangeLog.ADD:
+                        target.add(coffee());
+                        break;
+                    case CoffeeChangeLog.REMOVE:
+                        target.remove(coffee());
+                        break;
+                    case CoffeeChangeLog.CLEAR:
+                        target.clear();
+                        break;
+                    case CoffeeChangeLog.UPDATE:
+                        Coffee before = coffee();
+                        CoffeeField field = CoffeeField.ofOrdinal(data.get());
+                        Object value;
+                        switch (field) {
+                            case NAME:
+                                value = name();
+                                break;
+                            case QUALITY_RATING:
+                                value = (int) data.get();
+                                break;
+                            default:
+                                value = data.getDouble();
+                                break;
+                        }
+                        Coffee after = before.getCoffeeState().newCoffee(before.getName(), before.getPrice(),
+                                before.getCoffeeWeight(), before.getPackagingWeight(), before.getCoffeeVolume(),
+                                before.getPackagingVolume(), before.getQualityRating());
+                        field.set(after, value);
+                        target.replace(before, after, field);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown operation " + operation + ".");
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid change record " + sequence + " in " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Decodes a coffee at the position of the buffer.
+         *
+         * @return a new coffee
+         */
+        private Coffee coffee() {
+            CoffeeState state = CoffeeState.ofOrdinal(data.get());
+            int qualityRating = data.get();
+            double price = data.getDouble();
+            double coffeeWeight = data.getDouble();
+            double packagingWeight = data.getDouble();
+            double coffeeVolume = data.getDouble();
+            double packagingVolume = data.getDouble();
+            return state.newCoffee(name(), price, coffeeWeight, packagingWeight, coffeeVolume, packagingVolume,
+                    qualityRating);
+        }
+
+        /**
+         * Decodes a name at the position of the buffer.
+         *
+         * @return the name
+         * @throws IllegalArgumentException if the length of the name runs past the record
+         */
+        private String name() {
+            int length = data.getInt();
+            if (length < 0 || length > position - data.position()) {
+                throw new IllegalArgumentException("Invalid name length " + length + ".");
+            }
+            byte[] bytes = new byte[length];
+            data.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
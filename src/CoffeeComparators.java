@@ -0,0 +1,183 @@
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Provides {@link Comparator} implementations for ordering {@link Coffee} objects, for example
+ * in a {@link SortedCoffeeSet}.
+ * <p>
+ * Every comparator returned by this class is consistent with {@link Coffee#equals(Object)}:
+ * coffees that share the same sort key are ordered by {@link #VALUE_ORDER}, so distinct coffees
+ * with the same price are never treated as duplicates by a sorted set.
+ */
+public final class CoffeeComparators {
+    /** Orders coffees by all of their fields, name first. */
+    public static final Comparator<Coffee> VALUE_ORDER = CoffeeComparators::compareValues;
+
+    /** Orders coffees by price, cheapest first. */
+    public static final Comparator<Coffee> BY_PRICE = comparing(Coffee::getPrice);
+
+    /**
+     * Orders coffees by price/weight ratio, cheapest per kilogram first. Coffees with a total
+     * weight of zero have no ratio and sort last, as if their ratio were positive infinity.
+     */
+    public static final Comparator<Coffee> BY_PRICE_WEIGHT_RATIO = comparing(CoffeeComparators::ratioKey);
+
+    /** Orders coffees by quality rating, lowest rating first. */
+    public static final Comparator<Coffee> BY_QUALITY_RATING = comparing(Coffee::getQualityRating);
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeComparators() {
+    }
+
+    /**
+     * Returns a comparator that orders coffees by the specified numeric key and then by
+     * {@link #VALUE_ORDER}. Sets ordered by such a comparator support key range queries such as
+     * {@link SortedCoffeeSet#keyRange(double, boolean, double, boolean)}.
+     *
+     * @param key the function extracting the sort key from a coffee
+     * @return a comparator ordering coffees by the specified key
+     * @throws NullPointerException if the key function is null
+     */
+    public static Comparator<Coffee> comparing(ToDoubleFunction<? super Coffee> key) {
+        return new KeyComparator(Objects.requireNonNull(key, "Key function cannot be null."));
+    }
+
+    /**
+     * Returns a probe coffee that, under a comparator returned by {@link #comparing}, sorts
+     * before or after every coffee with the specified key. Probes are only meant to be used as
+     * bounds of range queries and must never be stored in a collection.
+     *
+     * @param key the key of the probe
+     * @param high {@code true} to sort after every coffee with the key, {@code false} to sort before
+     * @return a probe coffee for the specified key
+     */
+    static Coffee probe(double key, boolean high) {
+        return new KeyProbe(key, high);
+    }
+
+    /**
+     * Returns the sort key of {@link #BY_PRICE_WEIGHT_RATIO}: the price/weight ratio of the
+     * coffee, or positive infinity if its total weight is zero.
+     *
+     * @param coffee the coffee
+     * @return the price/weight ratio, or positive infinity for a weightless coffee
+     */
+    private static double ratioKey(Coffee coffee) {
+        return coffee.getTotalWeight() == 0 ? Double.POSITIVE_INFINITY : coffee.getPriceWeightRatio();
+    }
+
+    /**
+     * Compares two coffees by all of their fields. Coffees in different states with otherwise
+     * equal fields are ordered by state.
+     *
+     * @param a the first coffee
+     * @param b the second coffee
+     * @return a negative integer, zero, or a positive integer as the first coffee is less than,
+     *         equal to, or greater than the second
+     */
+    private static int compareValues(Coffee a, Coffee b) {
+        int cmp = a.getName().compareTo(b.getName());
+        if (cmp == 0) {
+            cmp = Double.compare(a.getPrice(), b.getPrice());
+        }
+        if (cmp == 0) {
+            cmp = Double.compare(a.getCoffeeWeight(), b.getCoffeeWeight());
+        }
+        if (cmp == 0) {
+            cmp = Double.compare(a.getPackagingWeight(), b.getPackagingWeight());
+        }
+        if (cmp == 0) {
+            cmp = Double.compare(a.getCoffeeVolume(), b.getCoffeeVolume());
+        }
+        if (cmp == 0) {
+            cmp = Double.compare(a.getPackagingVolume(), b.getPackagingVolume());
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(a.getQualityRating(), b.getQualityRating());
+        }
+        if (cmp == 0) {
+            cmp = a.getCoffeeState().compareTo(b.getCoffeeState());
+        }
+        return cmp;
+    }
+
+    /**
+     * A comparator ordering coffees by a numeric key, breaking ties by {@link #VALUE_ORDER}.
+     * It also understands {@link KeyProbe} bounds.
+     */
+    static final class KeyComparator implements Comparator<Coffee> {
+        /** The function extracting the sort key from a coffee. */
+        private final ToDoubleFunction<? super Coffee> key;
+
+        /**
+         * Constructs a new KeyComparator with the specified key function.
+         *
+         * @param key the function extracting the sort key from a coffee
+         */
+        KeyComparator(ToDoubleFunction<? super Coffee> key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the sort key of the specified coffee or probe.
+         *
+         * @param coffee the coffee or probe
+         * @return the sort key
+         */
+        private double keyOf(Coffee coffee) {
+            return coffee instanceof KeyProbe ? ((KeyProbe) coffee).key : key.applyAsDouble(coffee);
+        }
+
+        /**
+         * Compares two coffees by key, placing probes before or after the coffees sharing their
+         * key and ordering the remaining ties by {@link #VALUE_ORDER}.
+         *
+         * @param a the first coffee
+         * @param b the second coffee
+         * @return a negative integer, zero, or a positive integer as the first coffee is less than,
+         *         equal to, or greater than the second
+         */
+        @Override
+        public int compare(Coffee a, Coffee b) {
+            int cmp = Double.compare(keyOf(a), keyOf(b));
+            if (cmp != 0) {
+                return cmp;
+            }
+            boolean probeA = a instanceof KeyProbe;
+            boolean probeB = b instanceof KeyProbe;
+            if (probeA || probeB) {
+                int rankA = probeA ? (((KeyProbe) a).high ? 1 : -1) : 0;
+                int rankB = probeB ? (((KeyProbe) b).high ? 1 : -1) : 0;
+                return Integer.compare(rankA, rankB);
+            }
+            return compareValues(a, b);
+        }
+    }
+
+    /**
+     * A placeholder coffee that carries only a sort key and marks the lower or upper end of all
+     * coffees sharing that key.
+     */
+    private static final class KeyProbe extends Coffee {
+        /** The sort key of the probe. */
+        private final double key;
+
+        /** Whether the probe sorts after, rather than before, coffees with the same key. */
+        private final boolean high;
+
+        /**
+         * Constructs a new KeyProbe with the specified key and position.
+         *
+         * @param key the sort key of the probe
+         * @param high {@code true} to sort after coffees with the same key
+         */
+        private KeyProbe(double key, boolean high) {
+            super("probe", 1, 0, 0, 0, 0, 0);
+            this.key = key;
+            this.high = high;
+        }
+    }
+}
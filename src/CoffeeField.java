@@ -0,0 +1,103 @@
+/**
+ * The fields of a {@link Coffee} that can be changed through its setters.
+ */
+public enum CoffeeField {
+    /** The name, changed by {@link Coffee#setName(String)}. */
+    NAME,
+
+    /** The price, changed by {@link Coffee#setPrice(double)}. */
+    PRICE,
+
+    /** The coffee weight, changed by {@link Coffee#setCoffeeWeight(double)}. */
+    COFFEE_WEIGHT,
+
+    /** The packaging weight, changed by {@link Coffee#setPackagingWeight(double)}. */
+    PACKAGING_WEIGHT,
+
+    /** The coffee volume, changed by {@link Coffee#setCoffeeVolume(double)}. */
+    COFFEE_VOLUME,
+
+    /** The packaging volume, changed by {@link Coffee#setPackagingVolume(double)}. */
+    PACKAGING_VOLUME,
+
+    /** The quality rating, changed by {@link Coffee#setQualityRating(int)}. */
+    QUALITY_RATING;
+
+    /** The fields, indexed by ordinal. */
+    private static final CoffeeField[] VALUES = values();
+
+    /**
+     * Returns the field with the specified ordinal.
+     *
+     * @param ordinal the ordinal of the field
+     * @return the field
+     * @throws IllegalArgumentException if there is no field with that ordinal
+     */
+    static CoffeeField ofOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown coffee field " + ordinal + ".");
+        }
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Returns the value of this field in the specified coffee.
+     *
+     * @param coffee the coffee
+     * @return the value of the field, a {@link String}, {@link Double} or {@link Integer}
+     */
+    public Object get(Coffee coffee) {
+        switch (this) {
+            case NAME:
+                return coffee.getName();
+            case PRICE:
+                return coffee.getPrice();
+            case COFFEE_WEIGHT:
+                return coffee.getCoffeeWeight();
+            case PACKAGING_WEIGHT:
+                return coffee.getPackagingWeight();
+            case COFFEE_VOLUME:
+                return coffee.getCoffeeVolume();
+            case PACKAGING_VOLUME:
+                return coffee.getPackagingVolume();
+            default:
+                return coffee.getQualityRating();
+        }
+    }
+
+    /**
+     * Sets this field of the specified coffee through the matching setter.
+     *
+     * @param coffee the coffee to change
+     * @param value the new value, a {@link String} for {@link #NAME}, a {@link Number} otherwise
+     * @throws ClassCastException if the value has the wrong type
+     * @throws NullPointerException if the value is null, or if the name is empty
+     * @throws IllegalArgumentException if the value violates the rules of the setter
+     * @throws IllegalStateException if the coffee is frozen
+     */
+    public void set(Coffee coffee, Object value) {
+        switch (this) {
+            case NAME:
+                coffee.setName((String) value);
+                break;
+            case PRICE:
+                coffee.setPrice(((Number) value).doubleValue());
+                break;
+            case COFFEE_WEIGHT:
+                coffee.setCoffeeWeight(((Number) value).doubleValue());
+                break;
+            case PACKAGING_WEIGHT:
+                coffee.setPackagingWeight(((Number) value).doubleValue());
+                break;
+            case COFFEE_VOLUME:
+                coffee.setCoffeeVolume(((Number) value).doubleValue());
+                break;
+            case PACKAGING_VOLUME:
+                coffee.setPackagingVolume(((Number) value).doubleValue());
+                break;
+            default:
+                coffee.setQualityRating(((Number) value).intValue());
+                break;
+        }
+    }
+}
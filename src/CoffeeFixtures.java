@@ -0,0 +1,62 @@
+import java.util.Random;
+
+/**
+ * Generates reproducible {@link Coffee} objects for stress runs and benchmarks.
+ */
+public final class CoffeeFixtures {
+    /** The coffee names combined with a sequence number to build distinct names. */
+    private static final String[] NAMES = {
+        "Espresso", "Latte", "Cappuccino", "Americano", "Mocha", "Macchiato", "Flat White", "Ristretto"
+    };
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeFixtures() {
+    }
+
+    /**
+     * Creates an array of distinct coffees with random properties. The same count and seed
+     * always produce equal coffees.
+     *
+     * @param count the number of coffees to create
+     * @param seed the seed of the random number generator
+     * @return an array of distinct coffees
+     */
+    public static Coffee[] randomCoffees(int count, long seed) {
+        Random random = new Random(seed);
+        Coffee[] coffees = new Coffee[count];
+        for (int i = 0; i < count; i++) {
+            coffees[i] = randomCoffee(random, i);
+        }
+        return coffees;
+    }
+
+    /**
+     * Creates a coffee with random properties whose name is made unique by the specified id.
+     *
+     * @param random the random number generator
+     * @param id the unique id of the coffee
+     * @return a new coffee
+     */
+    public static Coffee randomCoffee(Random random, int id) {
+        return new Coffee(
+                NAMES[random.nextInt(NAMES.length)] + " #" + id,
+                round(5 + random.nextDouble() * 45),
+                round(0.1 + random.nextDouble() * 0.9),
+                round(0.01 + random.nextDouble() * 0.09),
+                round(0.05 + random.nextDouble() * 0.45),
+                round(0.01 + random.nextDouble() * 0.04),
+                random.nextInt(11));
+    }
+
+    /**
+     * Rounds a value to two decimal places, as prices and weights are usually quoted.
+     *
+     * @param value the value to round
+     * @return the rounded value
+     */
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
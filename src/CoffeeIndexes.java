@@ -0,0 +1,150 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * Secondary indexes over the elements of a {@link CoffeeSet}: a hash index on the name, one
+ * bucket per quality rating, one bucket per {@link CoffeeState} and a sorted index on the price.
+ * The owning set keeps the indexes up to date on every insertion and removal.
+ */
+class CoffeeIndexes {
+    /**
+     * The coffees of each name. The value is the coffee itself for a name held by a single
+     * coffee, which is the common case, and a set of coffees otherwise.
+     */
+    private final Map<String, Object> byName = new HashMap<>();
+
+    /** The coffees of each quality rating, indexed by rating. */
+    private final Set<Coffee>[] byQualityRating;
+
+    /** The coffees of each state, indexed by the ordinal of the state. */
+    private final Set<Coffee>[] byState;
+
+    /** The coffees ordered by price. */
+    private final SortedCoffeeSet byPrice = new SortedCoffeeSet(CoffeeComparators.BY_PRICE);
+
+    /**
+     * Constructs empty indexes.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CoffeeIndexes() {
+        byQualityRating = new Set[11];
+        for (int i = 0; i < byQualityRating.length; i++) {
+            byQualityRating[i] = new LinkedHashSet<>();
+        }
+        byState = new Set[CoffeeState.values().length];
+        for (int i = 0; i < byState.length; i++) {
+            byState[i] = new LinkedHashSet<>();
+        }
+    }
+
+    /**
+     * Adds a coffee to the indexes.
+     *
+     * @param coffee the coffee to add
+     */
+    @SuppressWarnings("unchecked")
+    void add(Coffee coffee) {
+        Object current = byName.putIfAbsent(coffee.getName(), coffee);
+        if (current instanceof Coffee) {
+            Set<Coffee> coffees = new LinkedHashSet<>();
+            coffees.add((Coffee) current);
+            coffees.add(coffee);
+            byName.put(coffee.getName(), coffees);
+        } else if (current != null) {
+            ((Set<Coffee>) current).add(coffee);
+        }
+        byQualityRating[coffee.getQualityRating()].add(coffee);
+        byState[coffee.getCoffeeState().ordinal()].add(coffee);
+        byPrice.add(coffee);
+    }
+
+    /**
+     * Removes a coffee from the indexes.
+     *
+     * @param coffee the coffee to remove
+     */
+    @SuppressWarnings("unchecked")
+    void remove(Coffee coffee) {
+        Object current = byName.get(coffee.getName());
+        if (current instanceof Coffee) {
+            byName.remove(coffee.getName());
+        } else if (current != null) {
+            Set<Coffee> coffees = (Set<Coffee>) current;
+            coffees.remove(coffee);
+            if (coffees.size() == 1) {
+                byName.put(coffee.getName(), coffees.iterator().next());
+            }
+        }
+        byQualityRating[coffee.getQualityRating()].remove(coffee);
+        byState[coffee.getCoffeeState().ordinal()].remove(coffee);
+        byPrice.remove(coffee);
+    }
+
+    /**
+     * Removes all coffees from the indexes.
+     */
+    void clear() {
+        byName.clear();
+        for (Set<Coffee> bucket : byQualityRating) {
+            bucket.clear();
+        }
+        for (Set<Coffee> bucket : byState) {
+            bucket.clear();
+        }
+        byPrice.clear();
+    }
+
+    /**
+     * Returns the coffees with the specified name, in insertion order.
+     *
+     * @param name the name to look up
+     * @return a new list of the coffees with that name
+     */
+    @SuppressWarnings("unchecked")
+    List<Coffee> byName(String name) {
+        Object current = byName.get(name);
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        if (current instanceof Coffee) {
+            return Collections.singletonList((Coffee) current);
+        }
+        return List.copyOf((Set<Coffee>) current);
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the coffees with the specified quality rating.
+     *
+     * @param qualityRating the quality rating, between 0 and 10
+     * @return the coffees with that rating, in insertion order
+     */
+    Set<Coffee> byQualityRating(int qualityRating) {
+        return Collections.unmodifiableSet(byQualityRating[qualityRating]);
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the coffees in the specified state.
+     *
+     * @param state the state
+     * @return the coffees in that state, in insertion order
+     */
+    Set<Coffee> byState(CoffeeState state) {
+        return Collections.unmodifiableSet(byState[state.ordinal()]);
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the coffees whose price lies in the specified range.
+     *
+     * @param minPrice the lowest price, inclusive
+     * @param maxPrice the highest price, inclusive
+     * @return the coffees in the range, cheapest first
+     */
+    NavigableSet<Coffee> byPrice(double minPrice, double maxPrice) {
+        return Collections.unmodifiableNavigableSet(byPrice.keyRange(minPrice, true, maxPrice, true));
+    }
+}
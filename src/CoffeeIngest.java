@@ -0,0 +1,1005 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streams supplier feeds of coffee products from CSV or JSON files into a collection.
+ * <p>
+ * The file is read through a {@link FileChannel} in fixed-size chunks and split into lines,
+ * which are grouped into batches. Batches are parsed and validated on a pool of worker threads,
+ * with numbers decoded straight from the bytes and every record checked by the {@link Coffee}
+ * constructor, so the same rules apply as for the setters. Valid coffees are added to the target
+ * collection in file order; invalid rows are reported with their line numbers. Only a bounded
+ * number of batches is in flight at any time, so memory use does not depend on the file size.
+ * <p>
+ * CSV files hold one coffee per line with the columns name, price, coffee weight, packaging
+ * weight, coffee volume, packaging volume and quality rating. An optional header line starting
+ * with {@code name} is skipped, and names may be quoted. JSON files hold one object per line
+ * with the keys {@code name}, {@code price}, {@code coffeeWeight}, {@code packagingWeight},
+ * {@code coffeeVolume}, {@code packagingVolume} and {@code qualityRating}; the lines may be
+ * wrapped in a top-level array.
+ */
+public class CoffeeIngest {
+    /**
+     * The supported input formats.
+     */
+    public enum Format {
+        /** Comma-separated values, one coffee per line. */
+        CSV,
+
+        /** One JSON object per line, optionally wrapped in a top-level array. */
+        JSON
+    }
+
+    /** The size of the chunks read from the file. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** The maximum length of a line; longer lines are rejected. */
+    private static final int MAX_LINE_LENGTH = 1 << 16;
+
+    /** The number of CSV columns. */
+    private static final int CSV_COLUMNS = 7;
+
+    /** The JSON keys, in the order of the CSV columns. */
+    private static final String[] JSON_KEYS = {
+        "name", "price", "coffeeWeight", "packagingWeight", "coffeeVolume", "packagingVolume", "qualityRating"
+    };
+
+    /** The powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The number of lines per batch. */
+    private final int batchSize;
+
+    /** The number of worker threads. */
+    private final int parallelism;
+
+    /** The maximum number of rejected rows kept in a report. */
+    private final int maxRecordedRejections;
+
+    /**
+     * Constructs a {@code CoffeeIngest} with batches of 4096 lines, one worker per available
+     * processor and up to 1000 recorded rejections.
+     */
+    public CoffeeIngest() {
+        this(4096, Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    /**
+     * Constructs a new {@code CoffeeIngest}.
+     *
+     * @param batchSize the number of lines per batch
+     * @param parallelism the number of worker threads
+     * @param maxRecordedRejections the maximum number of rejected rows kept in a report; further
+     *                              rejections are only counted
+     * @throws IllegalArgumentException if the batch size or parallelism is not positive, or the
+     *                                  maximum number of recorded rejections is negative
+     */
+    public CoffeeIngest(int batchSize, int parallelism, int maxRecordedRejections) {
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Batch size and parallelism must be greater than zero.");
+        }
+        if (maxRecordedRejections < 0) {
+            throw new IllegalArgumentException("Maximum number of recorded rejections cannot be negative.");
+        }
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.maxRecordedRejections = maxRecordedRejections;
+    }
+
+    /**
+     * Reads a feed file and adds every valid coffee to the target collection, in file order.
+     *
+     * @param file the feed file
+     * @param format the format of the file
+     * @param target the collection receiving the coffees, e.g. a {@link CoffeeSet}
+     * @return a report of the accepted, duplicate and rejected rows
+     * @throws IOException if the file cannot be read
+     */
+    public Report ingest(Path file, Format format, Collection<? super Coffee> target) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        Report report = new Report(maxRecordedRejections);
+        ArrayDeque<Future<BatchResult>> inFlight = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            Batch batch = new Batch(batchSize);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            boolean overlong = false;
+            long lineNumber = 1;
+            boolean firstChunk = true;
+
+            while (channel.read(chunk) >= 0) {
+                chunk.flip();
+                byte[] bytes = chunk.array();
+                int start = chunk.position();
+                int limit = chunk.limit();
+                if (firstChunk) {
+                    start = skipByteOrderMark(bytes, start, limit);
+                    firstChunk = false;
+                }
+                for (int i = start; i < limit; i++) {
+                    byte b = bytes[i];
+                    if (b != '\n') {
+                        if (lineLength == MAX_LINE_LENGTH) {
+                            overlong = true;
+                        } else {
+                            if (lineLength == line.length) {
+                                line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+                            }
+                            line[lineLength++] = b;
+                        }
+                        continue;
+                    }
+                    if (overlong) {
+                        batch.addOverlong(lineNumber);
+                    } else {
+                        batch.add(lineNumber, line, lineLength);
+                    }
+                    lineLength = 0;
+                    overlong = false;
+                    lineNumber++;
+                    if (batch.isFull()) {
+                        submit(workers, inFlight, batch, format, target, report);
+                        batch = new Batch(batchSize);
+                    }
+                }
+                chunk.clear();
+            }
+            if (overlong) {
+                batch.addOverlong(lineNumber);
+            } else if (lineLength > 0) {
+                batch.add(lineNumber, line, lineLength);
+            }
+            if (batch.size() > 0) {
+                submit(workers, inFlight, batch, format, target, report);
+            }
+            while (!inFlight.isEmpty()) {
+                collect(inFlight.poll(), target, report);
+            }
+            return report;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the position after a UTF-8 byte order mark at the start of a file, which some
+     * spreadsheet exports write and which would otherwise hide a CSV header.
+     *
+     * @param bytes the first chunk of the file
+     * @param start the start of the chunk
+     * @param limit the end of the chunk
+     * @return the position after the byte order mark, or {@code start} if there is none
+     */
+    private static int skipByteOrderMark(byte[] bytes, int start, int limit) {
+        if (limit - start >= 3 && bytes[start] == (byte) 0xEF && bytes[start + 1] == (byte) 0xBB
+                && bytes[start + 2] == (byte) 0xBF) {
+            return start + 3;
+        }
+        return start;
+    }
+
+    /**
+     * Submits a batch for parsing, first waiting for the oldest batch if too many are in flight.
+     *
+     * @param workers the worker threads
+     * @param inFlight the submitted batches, oldest first
+     * @param batch the batch to submit
+     * @param format the format of the lines
+     * @param target the collection receiving the coffees
+     * @param report the report to update
+     * @throws IOException if a worker fails unexpectedly
+     */
+    private void submit(ExecutorService workers, ArrayDeque<Future<BatchResult>> inFlight, Batch batch,
+                        Format format, Collection<? super Coffee> target, Report report) throws IOException {
+        if (inFlight.size() >= 2 * parallelism) {
+            collect(inFlight.poll(), target, report);
+        }
+        inFlight.add(workers.submit(() -> parse(batch, format)));
+    }
+
+    /**
+     * Waits for a parsed batch and adds its coffees and rejections to the target and report.
+     *
+     * @param result the pending result of the batch
+     * @param target the collection receiving the coffees
+     * @param report the report to update
+     * @throws IOException if the worker failed unexpectedly or the thread was interrupted
+     */
+    private static void collect(Future<BatchResult> result, Collection<? super Coffee> target, Report report)
+            throws IOException {
+        BatchResult batch;
+        try {
+            batch = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while ingesting coffees.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse a batch of coffees.", e.getCause());
+        }
+        for (int i = 0; i < batch.rejectedLines.size(); i++) {
+            report.reject(batch.rejectedLines.get(i), batch.rejectionMessages.get(i));
+        }
+        List<Coffee> coffees = Arrays.asList(batch.coffees).subList(0, batch.count);
+        int before = target.size();
+        target.addAll(coffees);
+        int added = target.size() - before;
+        report.accepted += added;
+        report.duplicates += coffees.size() - added;
+    }
+
+    /**
+     * Parses and validates the lines of a batch.
+     *
+     * @param batch the batch
+     * @param format the format of the lines
+     * @return the valid coffees and the rejected lines of the batch
+     */
+    private static BatchResult parse(Batch batch, Format format) {
+        BatchResult result = new BatchResult(batch.size());
+        Row row = new Row();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.overlong[i]) {
+                result.reject(batch.lineNumbers[i], "Line is longer than " + MAX_LINE_LENGTH + " bytes.");
+                continue;
+            }
+            int from = batch.starts[i];
+            int to = batch.starts[i + 1];
+            while (to > from && isWhitespace(batch.data[to - 1])) {
+                to--;
+            }
+            while (from < to && isWhitespace(batch.data[from])) {
+                from++;
+            }
+            try {
+                boolean record = format == Format.CSV
+                        ? parseCsv(batch.data, from, to, row, batch.lineNumbers[i] == 1)
+                        : parseJson(batch.data, from, to, row);
+                if (record) {
+                    result.add(new Coffee(row.name, row.values[0], row.values[1], row.values[2],
+                            row.values[3], row.values[4], row.qualityRating));
+                }
+            } catch (RuntimeException e) {
+                result.reject(batch.lineNumbers[i], e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a CSV line into the fields of a coffee.
+     *
+     * @param data the bytes of the batch
+     * @param from the start of the line
+     * @param to the end of the line
+     * @param row receives the fields of the coffee
+     * @param firstLine whether this is the first line of the file, which may be a header
+     * @return {@code true} if the line holds a record; {@code false} if it is blank or a header
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    private static boolean parseCsv(byte[] data, int from, int to, Row row, boolean firstLine) {
+        if (from == to) {
+            return false;
+        }
+        int column = 0;
+        int position = from;
+        while (true) {
+            if (column == CSV_COLUMNS) {
+                throw new IllegalArgumentException("Expected " + CSV_COLUMNS + " columns but found more.");
+            }
+            int end;
+            if (column == 0) {
+                StringBuilder name = new StringBuilder();
+                end = parseCsvText(data, position, to, name);
+                row.name = name.toString();
+                if (firstLine && row.name.trim().toLowerCase(Locale.ROOT).equals("name")) {
+                    return false;
+                }
+            } else {
+                end = position;
+                while (end < to && data[end] != ',') {
+                    end++;
+                }
+                row.set(column, data, position, end);
+            }
+            column++;
+            if (end == to) {
+                break;
+            }
+            position = end + 1;
+        }
+        if (column != CSV_COLUMNS) {
+            throw new IllegalArgumentException("Expected " + CSV_COLUMNS + " columns but found " + column + ".");
+        }
+        return true;
+    }
+
+    /**
+     * Parses a possibly quoted CSV text field.
+     *
+     * @param data the bytes of the batch
+     * @param from the start of the field
+     * @param to the end of the line
+     * @param text receives the unquoted text
+     * @return the position of the separator following the field, or {@code to}
+     * @throws IllegalArgumentException if a quoted field is not terminated
+     */
+    private static int parseCsvText(byte[] data, int from, int to, StringBuilder text) {
+        if (from < to && data[from] == '"') {
+            int position = from + 1;
+            int segment = position;
+            while (true) {
+                if (position >= to) {
+                    throw new IllegalArgumentException("Unterminated quoted name.");
+                }
+                if (data[position] == '"') {
+                    text.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                    if (position + 1 < to && data[position + 1] == '"') {
+                        text.append('"');
+                        position += 2;
+                        segment = position;
+                        continue;
+                    }
+                    position++;
+                    if (position < to && data[position] != ',') {
+                        throw new IllegalArgumentException("Unexpected character after quoted name.");
+                    }
+                    return position;
+                }
+                position++;
+            }
+        }
+        int end = from;
+        while (end < to && data[end] != ',') {
+            end++;
+        }
+        text.append(new String(data, from, end - from, StandardCharsets.UTF_8));
+        return end;
+    }
+
+    /**
+     * Parses a JSON object line into the fields of a coffee.
+     *
+     * @param data the bytes of the batch
+     * @param from the start of the line
+     * @param to the end of the line
+     * @param row receives the fields of the coffee
+     * @return {@code true} if the line holds a record; {@code false} if it is blank or an array bracket
+     * @throws IllegalArgumentException if the line is malformed or a key is missing
+     */
+    private static boolean parseJson(byte[] data, int from, int to, Row row) {
+        if (to > from && data[to - 1] == ',') {
+            to--;
+        }
+        if (from < to && data[from] == '[') {
+            from = skipWhitespace(data, from + 1, to);
+        }
+        if (to > from && data[to - 1] == ']') {
+            to = trimWhitespace(data, from, to - 1);
+            if (to > from && data[to - 1] == ',') {
+                to--;
+            }
+        }
+        if (from == to) {
+            return false;
+        }
+        if (data[from] != '{' || data[to - 1] != '}') {
+            throw new IllegalArgumentException("Expected a JSON object.");
+        }
+        row.name = null;
+        boolean[] seen = new boolean[CSV_COLUMNS];
+        int position = skipWhitespace(data, from + 1, to - 1);
+        int end = to - 1;
+        while (position < end) {
+            StringBuilder key = new StringBuilder();
+            position = parseJsonString(data, position, end, key);
+            position = skipWhitespace(data, position, end);
+            if (position >= end || data[position] != ':') {
+                throw new IllegalArgumentException("Expected ':' after key " + key + ".");
+            }
+            position = skipWhitespace(data, position + 1, end);
+            int column = jsonColumn(key);
+            if (column >= 0) {
+                seen[column] = true;
+            }
+            if (position < end && data[position] == '"') {
+                StringBuilder value = new StringBuilder();
+                position = parseJsonString(data, position, end, value);
+                if (column == 0) {
+                    row.name = value.toString();
+                } else if (column > 0) {
+                    throw new IllegalArgumentException("Expected a number for " + key + ".");
+                }
+            } else {
+                int valueEnd = position;
+                while (valueEnd < end && data[valueEnd] != ',' && !isWhitespace(data[valueEnd])) {
+                    valueEnd++;
+                }
+                if (column == 0 && !isNull(data, position, valueEnd)) {
+                    throw new IllegalArgumentException("Expected a string for name.");
+                } else if (column > 0) {
+                    row.set(column, data, position, valueEnd);
+                }
+                position = valueEnd;
+            }
+            position = skipWhitespace(data, position, end);
+            if (position < end) {
+                if (data[position] != ',') {
+                    throw new IllegalArgumentException("Expected ',' between members.");
+                }
+                position = skipWhitespace(data, position + 1, end);
+            }
+        }
+        for (int column = 1; column < CSV_COLUMNS; column++) {
+            if (!seen[column]) {
+                throw new IllegalArgumentException("Missing key " + JSON_KEYS[column] + ".");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the column of a JSON key.
+     *
+     * @param key the key
+     * @return the index of the key in {@link #JSON_KEYS}, or -1 for an unknown key
+     */
+    private static int jsonColumn(CharSequence key) {
+        for (int column = 0; column < JSON_KEYS.length; column++) {
+            if (JSON_KEYS[column].contentEquals(key)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a range of bytes holds the JSON literal {@code null}.
+     *
+     * @param data the bytes
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return {@code true} if the range holds {@code null}; {@code false} otherwise
+     */
+    private static boolean isNull(byte[] data, int from, int to) {
+        return to - from == 4 && data[from] == 'n' && data[from + 1] == 'u' && data[from + 2] == 'l'
+                && data[from + 3] == 'l';
+    }
+
+    /**
+     * Parses a JSON string literal, resolving escape sequences.
+     *
+     * @param data the bytes of the batch
+     * @param from the position of the opening quote
+     * @param to the end of the object
+     * @param text receives the decoded string
+     * @return the position after the closing quote
+     * @throws IllegalArgumentException if the literal is malformed
+     */
+    private static int parseJsonString(byte[] data, int from, int to, StringBuilder text) {
+        if (from >= to || data[from] != '"') {
+            throw new IllegalArgumentException("Expected a JSON string.");
+        }
+        int position = from + 1;
+        int segment = position;
+        while (position < to) {
+            byte b = data[position];
+            if (b == '"') {
+                text.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                return position + 1;
+            }
+            if (b == '\\') {
+                text.append(new String(data, segment, position - segment, StandardCharsets.UTF_8));
+                if (position + 1 >= to) {
+                    break;
+                }
+                byte escape = data[position + 1];
+                position += 2;
+                switch (escape) {
+                    case '"': text.append('"'); break;
+                    case '\\': text.append('\\'); break;
+                    case '/': text.append('/'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u':
+                        if (position + 4 > to) {
+                            throw new IllegalArgumentException("Invalid unicode escape.");
+                        }
+                        text.append((char) Integer.parseInt(new String(data, position, 4, StandardCharsets.US_ASCII), 16));
+                        position += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid escape sequence.");
+                }
+                segment = position;
+                continue;
+            }
+            position++;
+        }
+        throw new IllegalArgumentException("Unterminated JSON string.");
+    }
+
+    /**
+     * Parses a decimal number directly from bytes. Numbers with up to 18 significant digits and
+     * a small decimal exponent are converted exactly without creating a string; other numbers
+     * fall back to {@link Double#parseDouble(String)}.
+     *
+     * @param data the bytes holding the number
+     * @param from the start of the number
+     * @param to the end of the number
+     * @param label the name of the field used in error messages
+     * @return the parsed value
+     * @throws IllegalArgumentException if the bytes do not form a number
+     */
+    static double parseDouble(byte[] data, int from, int to, String label) {
+        while (from < to && isWhitespace(data[from])) {
+            from++;
+        }
+        to = trimWhitespace(data, from, to);
+        int position = from;
+        boolean negative = false;
+        if (position < to && (data[position] == '-' || data[position] == '+')) {
+            negative = data[position] == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; position < to; position++) {
+            byte b = data[position];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || b != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else {
+                    return parseDoubleSlow(data, from, to, label);
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b == 'e' || b == 'E') {
+                return parseDoubleSlow(data, from, to, label);
+            } else {
+                throw new IllegalArgumentException(label + " is not a number.");
+            }
+        }
+        if (!seenDigit) {
+            throw new IllegalArgumentException(label + " is not a number.");
+        }
+        if (-exponent >= POWERS_OF_TEN.length || mantissa >= (1L << 53)) {
+            return parseDoubleSlow(data, from, to, label);
+        }
+        double value = mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a number that the fast path cannot convert exactly.
+     *
+     * @param data the bytes holding the number
+     * @param from the start of the number
+     * @param to the end of the number
+     * @param label the name of the field used in error messages
+     * @return the parsed value
+     * @throws IllegalArgumentException if the bytes do not form a number
+     */
+    private static double parseDoubleSlow(byte[] data, int from, int to, String label) {
+        try {
+            return Double.parseDouble(new String(data, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(label + " is not a number.");
+        }
+    }
+
+    /**
+     * Parses a decimal integer directly from bytes.
+     *
+     * @param data the bytes holding the number
+     * @param from the start of the number
+     * @param to the end of the number
+     * @param label the name of the field used in error messages
+     * @return the parsed value
+     * @throws IllegalArgumentException if the bytes do not form an integer
+     */
+    static int parseInt(byte[] data, int from, int to, String label) {
+        while (from < to && isWhitespace(data[from])) {
+            from++;
+        }
+        to = trimWhitespace(data, from, to);
+        int position = from;
+        boolean negative = false;
+        if (position < to && (data[position] == '-' || data[position] == '+')) {
+            negative = data[position] == '-';
+            position++;
+        }
+        if (position == to || to - position > 9) {
+            throw new IllegalArgumentException(label + " is not an integer.");
+        }
+        int value = 0;
+        for (; position < to; position++) {
+            byte b = data[position];
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException(label + " is not an integer.");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the name of a numeric CSV column for error messages.
+     *
+     * @param column the column index
+     * @return the name of the column
+     */
+    private static String csvLabel(int column) {
+        switch (column) {
+            case 1: return "Price";
+            case 2: return "Coffee weight";
+            case 3: return "Packaging weight";
+            case 4: return "Coffee volume";
+            case 5: return "Packaging volume";
+            default: return "Quality rating";
+        }
+    }
+
+    /**
+     * Checks if a byte is ASCII whitespace.
+     *
+     * @param b the byte
+     * @return {@code true} if the byte is a space, tab, carriage return or line feed
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Returns the position of the first non-whitespace byte in a range.
+     *
+     * @param data the bytes
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the position of the first non-whitespace byte, or {@code to}
+     */
+    private static int skipWhitespace(byte[] data, int from, int to) {
+        while (from < to && isWhitespace(data[from])) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the end of a range without its trailing whitespace.
+     *
+     * @param data the bytes
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the end of the range without trailing whitespace
+     */
+    private static int trimWhitespace(byte[] data, int from, int to) {
+        while (to > from && isWhitespace(data[to - 1])) {
+            to--;
+        }
+        return to;
+    }
+
+    /**
+     * The fields of the coffee on the line being parsed.
+     */
+    private static final class Row {
+        /** The name of the coffee. */
+        private String name;
+
+        /** The price, coffee weight, packaging weight, coffee volume and packaging volume. */
+        private final double[] values = new double[CSV_COLUMNS - 2];
+
+        /** The quality rating of the coffee. */
+        private int qualityRating;
+
+        /**
+         * Parses a numeric field from bytes.
+         *
+         * @param column the column of the field, from 1 (price) to 6 (quality rating)
+         * @param data the bytes holding the number
+         * @param from the start of the number
+         * @param to the end of the number
+         * @throws IllegalArgumentException if the bytes do not form a number
+         */
+        void set(int column, byte[] data, int from, int to) {
+            if (column == CSV_COLUMNS - 1) {
+                qualityRating = parseInt(data, from, to, "Quality rating");
+            } else {
+                values[column - 1] = parseDouble(data, from, to, csvLabel(column));
+            }
+        }
+    }
+
+    /**
+     * The outcome of an ingest run.
+     */
+    public static final class Report {
+        /** The number of coffees added to the target collection. */
+        private long accepted;
+
+        /** The number of valid rows that were already present in the target collection. */
+        private long duplicates;
+
+        /** The number of rejected rows. */
+        private long rejected;
+
+        /** The maximum number of rejections kept. */
+        private final int maxRecordedRejections;
+
+        /** The first rejections, in file order. */
+        private final List<Rejection> rejections = new ArrayList<>();
+
+        /**
+         * Constructs an empty report.
+         *
+         * @param maxRecordedRejections the maximum number of rejections kept
+         */
+        private Report(int maxRecordedRejections) {
+            this.maxRecordedRejections = maxRecordedRejections;
+        }
+
+        /**
+         * Records a rejected row.
+         *
+         * @param lineNumber the line number of the row
+         * @param message the reason of the rejection
+         */
+        private void reject(long lineNumber, String message) {
+            rejected++;
+            if (rejections.size() < maxRecordedRejections) {
+                rejections.add(new Rejection(lineNumber, message));
+            }
+        }
+
+        /**
+         * Returns the number of coffees added to the target collection.
+         *
+         * @return the number of accepted rows
+         */
+        public long getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * Returns the number of valid rows that were already present in the target collection.
+         *
+         * @return the number of duplicate rows
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Returns the number of rejected rows, including those not kept in {@link #getRejections()}.
+         *
+         * @return the number of rejected rows
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the first rejected rows, in file order.
+         *
+         * @return an unmodifiable list of rejections
+         */
+        public List<Rejection> getRejections() {
+            return Collections.unmodifiableList(rejections);
+        }
+
+        /**
+         * Returns a one-line summary of the report.
+         *
+         * @return a summary of the report
+         */
+        @Override
+        public String toString() {
+            return "accepted " + accepted + ", duplicates " + duplicates + ", rejected " + rejected;
+        }
+    }
+
+    /**
+     * A rejected row of a feed file.
+     */
+    public static final class Rejection {
+        /** The line number of the row, starting at 1. */
+        private final long lineNumber;
+
+        /** The reason of the rejection. */
+        private final String message;
+
+        /**
+         * Constructs a new Rejection.
+         *
+         * @param lineNumber the line number of the row
+         * @param message the reason of the rejection
+         */
+        private Rejection(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * Returns the line number of the row, starting at 1.
+         *
+         * @return the line number
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Returns the reason of the rejection.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns a string representation of the rejection.
+         *
+         * @return the line number followed by the message
+         */
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+
+    /**
+     * The raw lines of a batch, stored back to back in a single byte array.
+     */
+    private static final class Batch {
+        /** The bytes of the lines. */
+        private byte[] data = new byte[1 << 12];
+
+        /** The start offset of each line, followed by the end offset of the last line. */
+        private final int[] starts;
+
+        /** The line number of each line. */
+        private final long[] lineNumbers;
+
+        /** Whether each line was too long to keep, in which case it is stored empty. */
+        private final boolean[] overlong;
+
+        /** The number of lines in the batch. */
+        private int size;
+
+        /**
+         * Constructs an empty batch.
+         *
+         * @param capacity the maximum number of lines
+         */
+        Batch(int capacity) {
+            starts = new int[capacity + 1];
+            lineNumbers = new long[capacity];
+            overlong = new boolean[capacity];
+        }
+
+        /**
+         * Appends a line to the batch.
+         *
+         * @param lineNumber the line number
+         * @param line the buffer holding the line
+         * @param length the length of the line
+         */
+        void add(long lineNumber, byte[] line, int length) {
+            int end = starts[size] + length;
+            if (end > data.length) {
+                data = Arrays.copyOf(data, Math.max(end, data.length * 2));
+            }
+            System.arraycopy(line, 0, data, starts[size], length);
+            lineNumbers[size] = lineNumber;
+            starts[++size] = end;
+        }
+
+        /**
+         * Appends a line that was too long to keep, so that it is rejected in line order with
+         * the other lines of the batch.
+         *
+         * @param lineNumber the line number
+         */
+        void addOverlong(long lineNumber) {
+            overlong[size] = true;
+            add(lineNumber, data, 0);
+        }
+
+        /**
+         * Returns the number of lines in the batch.
+         *
+         * @return the number of lines
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Checks if the batch holds its maximum number of lines.
+         *
+         * @return {@code true} if the batch is full; {@code false} otherwise
+         */
+        boolean isFull() {
+            return size == lineNumbers.length;
+        }
+    }
+
+    /**
+     * The parsed coffees and rejected lines of a batch.
+     */
+    private static final class BatchResult {
+        /** The valid coffees, in line order. */
+        private final Coffee[] coffees;
+
+        /** The line numbers of the rejected lines. */
+        private final List<Long> rejectedLines = new ArrayList<>();
+
+        /** The reasons of the rejections. */
+        private final List<String> rejectionMessages = new ArrayList<>();
+
+        /** The number of valid coffees. */
+        private int count;
+
+        /**
+         * Constructs an empty result.
+         *
+         * @param capacity the maximum number of coffees
+         */
+        BatchResult(int capacity) {
+            coffees = new Coffee[capacity];
+        }
+
+        /**
+         * Adds a valid coffee.
+         *
+         * @param coffee the coffee
+         */
+        void add(Coffee coffee) {
+            coffees[count++] = coffee;
+        }
+
+        /**
+         * Records a rejected line.
+         *
+         * @param lineNumber the line number
+         * @param message the reason of the rejection
+         */
+        void reject(long lineNumber, String message) {
+            rejectedLines.add(lineNumber);
+            rejectionMessages.add(message);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small server answering queries about a {@link CoffeeSet} over a local TCP or Unix-domain
+ * socket, one thread per connection.
+ * <p>
+ * Connections are served on virtual threads when the JVM has them, so that thousands of mostly
+ * idle connections cost little more than their buffers; on older JVMs each connection gets a
+ * platform thread with a small stack instead. The set is not thread-safe, so every query runs
+ * under the monitor of the set, and other threads that modify it must synchronize on it too.
+ * <p>
+ * The protocol is line based and UTF-8 encoded. Every request is one line, a command followed by
+ * its arguments separated by spaces, and names run to the end of the line:
+ * <ul>
+ *     <li>{@code CONTAINS <name>} answers {@code 1} or {@code 0}</li>
+ *     <li>{@code GET <name>} answers the coffees with that name</li>
+ *     <li>{@code RANGE <minPrice> <maxPrice> [<limit>]} answers the cheapest coffees in the price
+ *     range, at most 100 unless a limit is given</li>
+ *     <li>{@code TOP <k> [rating|price|ratio]} answers the {@code k} greatest coffees by quality
+ *     rating, price or price/weight ratio; coffees with no weight have no ratio and are skipped</li>
+ *     <li>{@code SIZE} answers the number of coffees</li>
+ *     <li>{@code QUIT} closes the connection</li>
+ * </ul>
+ * Lists of coffees are answered with a line holding their number followed by one line per
+ * coffee with the tab-separated name, price, coffee weight, packaging weight, coffee volume,
+ * packaging volume and quality rating. A malformed request, or one that fails, is answered with
+ * {@code ERR} and a message. Requests may be pipelined: the server reads and answers them in order and only
+ * flushes its answers when no further request is buffered, so a batch of requests costs one
+ * write.
+ */
+public class CoffeeQueryServer implements Closeable {
+    /** The number of coffees answered by a range query without a limit. */
+    static final int DEFAULT_RANGE_LIMIT = 100;
+
+    /** The largest number of coffees answered by a single query. */
+    static final int MAX_RESULTS = 1000;
+
+    /** The number of pending connections the listening socket queues. */
+    private static final int BACKLOG = 16384;
+
+    /** The stack size of the platform threads used when virtual threads are not available. */
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    /** The time the acceptor waits after a failed accept, for example when out of file descriptors. */
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    /** Whether the JVM has virtual threads. */
+    private static final boolean VIRTUAL_THREADS = hasVirtualThreads();
+
+    /** The set the queries are answered from. */
+    private final CoffeeSet set;
+
+    /** The listening socket. */
+    private final ServerSocketChannel server;
+
+    /** The address the server is bound to. */
+    private final SocketAddress address;
+
+    /** Runs the connections, one thread each. */
+    private final ExecutorService connections;
+
+    /** The open connections, closed with the server. */
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+
+    /** The thread accepting connections. */
+    private final Thread acceptor;
+
+    /** The number of connections accepted. */
+    private final LongAdder connectionCount = new LongAdder();
+
+    /** The number of requests answered. */
+    private final LongAdder requestCount = new LongAdder();
+
+    /** The number of connections that could not be accepted. */
+    private final LongAdder acceptFailureCount = new LongAdder();
+
+    /** Whether the server has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a {@code CoffeeQueryServer} bound to the specified address and starts accepting
+     * connections. An {@link InetSocketAddress} binds a TCP socket and a
+     * {@link UnixDomainSocketAddress} binds a Unix-domain socket, whose file must not exist yet.
+     *
+     * @param set the set to answer queries about
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the socket cannot be bound
+     * @throws NullPointerException if the set or the address is null
+     */
+    public CoffeeQueryServer(CoffeeSet set, SocketAddress address) throws IOException {
+        if (set == null) {
+            throw new NullPointerException("Coffee set cannot be null.");
+        }
+        if (address == null) {
+            throw new NullPointerException("Address cannot be null.");
+        }
+        this.set = set;
+        server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        try {
+            server.bind(address, BACKLOG);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        this.address = server.getLocalAddress();
+        connections = newThreadPerTaskExecutor("coffee-query");
+        acceptor = new Thread(this::acceptConnections, "coffee-query-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * The main method where the server starts execution. It serves a set of random coffees until
+     * the process is stopped.
+     * <p>
+     * Options: {@code --port} the TCP port on the loopback interface (default 7878),
+     * {@code --unix} the path of a Unix-domain socket to listen on instead, and {@code --size}
+     * the number of coffees (default 100000).
+     *
+     * @param args the options described above
+     * @throws IOException if the socket cannot be bound
+     * @throws InterruptedException if the main thread is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        int size = Integer.parseInt(options.getOrDefault("size", "100000"));
+        CoffeeSet set = new CoffeeSet(Arrays.asList(CoffeeFixtures.randomCoffees(size, 1)));
+        SocketAddress address = options.containsKey("unix")
+                ? UnixDomainSocketAddress.of(options.get("unix"))
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(options.getOrDefault("port", "7878")));
+        try (CoffeeQueryServer server = new CoffeeQueryServer(set, address)) {
+            System.out.println("Serving " + size + " coffees on " + server.getAddress()
+                    + (VIRTUAL_THREADS ? " with virtual threads" : " with platform threads"));
+            server.acceptor.join();
+        }
+    }
+
+    /**
+     * Parses {@code --name=value} arguments.
+     *
+     * @param args the command-line arguments
+     * @return the options, keyed by name
+     * @throws IllegalArgumentException if an argument is not of the form {@code --name=value}
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Checks whether the JVM has virtual threads, which are only looked up reflectively so that
+     * the project still compiles for Java 17. Preview versions that are not enabled count as
+     * absent.
+     *
+     * @return {@code true} if virtual threads are available; {@code false} otherwise
+     */
+    private static boolean hasVirtualThreads() {
+        try {
+            ((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)).shutdown();
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task if the JVM has them, and a daemon
+     * platform thread with a small stack per task otherwise.
+     *
+     * @param name the prefix of the names of the platform threads
+     * @return a new executor
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        if (VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a virtual thread executor.", e);
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(null, task, name + "-" + threadNumber.incrementAndGet(), PLATFORM_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether connections are served on virtual threads.
+     *
+     * @return {@code true} if virtual threads are used; {@code false} if platform threads are
+     */
+    static boolean usesVirtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * Accepts connections until the server is closed, serving each on its own thread. After a
+     * failed accept, which keeps failing while the process is out of file descriptors, the
+     * acceptor waits a little before trying again instead of spinning.
+     */
+    private void acceptConnections() {
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                acceptFailureCount.increment();
+                try {
+                    Thread.sleep(ACCEPT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            connectionCount.increment();
+            open.add(channel);
+            connections.execute(() -> serve(channel));
+        }
+    }
+
+    /**
+     * Answers the requests of a connection until the client sends {@code QUIT} or closes it.
+     *
+     * @param channel the connection
+     */
+    private void serve(SocketChannel channel) {
+        try (SocketChannel c = channel;
+             BufferedReader in = new BufferedReader(Channels.newReader(c, StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(Channels.newWriter(c, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals("QUIT")) {
+                    break;
+                }
+                answer(line, out);
+                requestCount.increment();
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // The client went away or the server is closing; there is no one left to answer.
+        } finally {
+            open.remove(channel);
+        }
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param request the request line
+     * @param out the writer the answer is written to
+     * @throws IOException if the answer cannot be written
+     */
+    void answer(String request, Writer out) throws IOException {
+        int separator = request.indexOf(' ');
+        String command = separator < 0 ? request : request.substring(0, separator);
+        String argument = separator < 0 ? "" : request.substring(separator + 1);
+        try {
+            switch (command) {
+                case "CONTAINS":
+                    boolean contained;
+                    synchronized (set) {
+                        contained = !set.findByName(argument).isEmpty();
+                    }
+                    out.write(contained ? "1\n" : "0\n");
+                    break;
+                case "GET":
+                    List<Coffee> found;
+                    synchronized (set) {
+                        found = set.findByName(argument);
+                    }
+                    writeCoffees(found, found.size(), out);
+                    break;
+                case "RANGE":
+                    range(argument.split(" "), out);
+                    break;
+                case "TOP":
+                    top(argument.split(" "), out);
+                    break;
+                case "SIZE":
+                    int count;
+                    synchronized (set) {
+                        count = set.size();
+                    }
+                    out.write(count + "\n");
+                    break;
+                default:
+                    out.write("ERR Unknown command " + command + "\n");
+            }
+        } catch (IllegalArgumentException e) {
+            out.write("ERR " + e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            out.write("ERR Internal error: " + e + "\n");
+        }
+    }
+
+    /**
+     * Answers a {@code RANGE} request.
+     *
+     * @param arguments the minimum price, the maximum price and optionally the limit
+     * @param out the writer the answer is written to
+     * @throws IOException if the answer cannot be written
+     * @throws IllegalArgumentException if the arguments are malformed
+     */
+    private void range(String[] arguments, Writer out) throws IOException {
+        if (arguments.length < 2 || arguments.length > 3) {
+            throw new IllegalArgumentException("Expected RANGE <minPrice> <maxPrice> [<limit>]");
+        }
+        double min = Double.parseDouble(arguments[0]);
+        double max = Double.parseDouble(arguments[1]);
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("Minimum price cannot be greater than maximum price.");
+        }
+        int limit = arguments.length == 3 ? parseCount(arguments[2]) : DEFAULT_RANGE_LIMIT;
+        Coffee[] page = new Coffee[limit];
+        int count = 0;
+        synchronized (set) {
+            for (Iterator<Coffee> it = set.findByPriceRange(min, max).iterator(); it.hasNext() && count < limit; ) {
+                page[count++] = it.next();
+            }
+        }
+        writeCoffees(Arrays.asList(page), count, out);
+    }
+
+    /**
+     * Answers a {@code TOP} request. The most expensive and the best rated coffees are read in
+     * order from the price and rating indexes of the set, so only the first {@code k} are
+     * visited; ranking by price/weight ratio scans the whole set and skips the coffees whose
+     * total weight is zero, which have no ratio.
+     *
+     * @param arguments the number of coffees and optionally the attribute to rank by
+     * @param out the writer the answer is written to
+     * @throws IOException if the answer cannot be written
+     * @throws IllegalArgumentException if the arguments are malformed
+     */
+    private void top(String[] arguments, Writer out) throws IOException {
+        if (arguments.length < 1 || arguments.length > 2 || arguments[0].isEmpty()) {
+            throw new IllegalArgumentException("Expected TOP <k> [rating|price|ratio]");
+        }
+        int k = parseCount(arguments[0]);
+        String attribute = arguments.length == 2 ? arguments[1] : "rating";
+        List<Coffee> top = new ArrayList<>(k);
+        synchronized (set) {
+            switch (attribute) {
+                case "rating":
+                    for (int rating = 10; rating >= 0 && top.size() < k; rating--) {
+                        addFirst(set.findByQualityRating(rating).iterator(), k, top);
+                    }
+                    break;
+                case "price":
+                    addFirst(set.findByPriceRange(0, Double.MAX_VALUE).descendingIterator(), k, top);
+                    break;
+                case "ratio":
+                    top = set.stream().filter(coffee -> coffee.getTotalWeight() != 0)
+                            .collect(CoffeeAggregations.topK(k, CoffeeComparators.BY_PRICE_WEIGHT_RATIO));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown attribute " + attribute);
+            }
+        }
+        writeCoffees(top, top.size(), out);
+    }
+
+    /**
+     * Adds coffees from an iterator to a list until the list holds the specified number.
+     *
+     * @param coffees the coffees to add, in order
+     * @param k the number of coffees the list should hold
+     * @param list the list
+     */
+    private static void addFirst(Iterator<Coffee> coffees, int k, List<Coffee> list) {
+        while (list.size() < k && coffees.hasNext()) {
+            list.add(coffees.next());
+        }
+    }
+
+    /**
+     * Parses the number of coffees a query asks for.
+     *
+     * @param text the number
+     * @return the number, between 0 and {@link #MAX_RESULTS}
+     * @throws IllegalArgumentException if the text is not a number in that range
+     */
+    private static int parseCount(String text) {
+        int count = Integer.parseInt(text);
+        if (count < 0 || count > MAX_RESULTS) {
+            throw new IllegalArgumentException("Count must be between 0 and " + MAX_RESULTS);
+        }
+        return count;
+    }
+
+    /**
+     * Writes a list of coffees as their number followed by one tab-separated line per coffee.
+     *
+     * @param coffees the coffees
+     * @param count the number of coffees of the list to write
+     * @param out the writer
+     * @throws IOException if the coffees cannot be written
+     */
+    private static void writeCoffees(List<Coffee> coffees, int count, Writer out) throws IOException {
+        StringBuilder text = new StringBuilder(16 + count * 64).append(count).append('\n');
+        for (int i = 0; i < count; i++) {
+            Coffee coffee = coffees.get(i);
+            text.append(coffee.getName()).append('\t').append(coffee.getPrice())
+                    .append('\t').append(coffee.getCoffeeWeight()).append('\t').append(coffee.getPackagingWeight())
+                    .append('\t').append(coffee.getCoffeeVolume()).append('\t').append(coffee.getPackagingVolume())
+                    .append('\t').append(coffee.getQualityRating()).append('\n');
+        }
+        out.write(text.toString());
+    }
+
+    /**
+     * Returns the address the server is bound to, with the port picked if port 0 was requested.
+     *
+     * @return the local address of the server
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns the number of connections accepted so far.
+     *
+     * @return the number of connections
+     */
+    public long getConnectionCount() {
+        return connectionCount.sum();
+    }
+
+    /**
+     * Returns the number of times accepting a connection failed, as when the process has run out
+     * of file descriptors.
+     *
+     * @return the number of failed accepts
+     */
+    public long getAcceptFailureCount() {
+        return acceptFailureCount.sum();
+    }
+
+    /**
+     * Returns the number of connections currently open.
+     *
+     * @return the number of open connections
+     */
+    public int getOpenConnectionCount() {
+        return open.size();
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and removes the socket file of a
+     * Unix-domain socket.
+     *
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            server.close();
+            for (SocketChannel channel : open) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Closing the other connections matters more than this one.
+                }
+            }
+            connections.shutdown();
+        } finally {
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of the server with its address and counters.
+     *
+     * @return a string describing the server
+     */
+    @Override
+    public String toString() {
+        return "CoffeeQueryServer{address=" + address + ", connections=" + getConnectionCount()
+                + ", open=" + getOpenConnectionCount() + ", acceptFailures=" + getAcceptFailureCount()
+                + ", requests=" + getRequestCount() + "}";
+    }
+}
@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Renders coffee reports in the format of {@link Coffee#toString()} without going through
+ * {@link String#format}.
+ * <p>
+ * Text is appended straight into a caller-supplied {@link StringBuilder}, and numbers are
+ * written with hand-rolled two-decimal formatting that rounds exactly like {@code %.2f}: the
+ * shortest decimal representation of the value is rounded half up. Rendering many coffees into
+ * an {@link Appendable}, such as a buffered writer, reuses a single builder. Like
+ * {@code String.format}, numbers use the decimal separator of the default locale, read once
+ * when the class is loaded; locales whose digits are not ASCII fall back to
+ * {@code String.format}.
+ */
+public final class CoffeeReportRenderer {
+    /** The line framing each coffee in the report. */
+    private static final String SEPARATOR = "-------------------------------";
+
+    /** The number of buffered characters after which {@link #renderAll} flushes its builder. */
+    private static final int FLUSH_THRESHOLD = 1 << 13;
+
+    /** The largest magnitude formatted on the fast path. */
+    private static final double FAST_PATH_LIMIT = 1e9;
+
+    /** How close to a rounding tie the scaled value may be before the exact path is used. */
+    private static final double TIE_MARGIN = 1e-3;
+
+    /** The decimal separator of the default locale. */
+    private static final char DECIMAL_SEPARATOR = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+
+    /** Whether the default locale writes digits as ASCII, so they can be formatted by hand. */
+    private static final boolean ASCII_DIGITS = DecimalFormatSymbols.getInstance().getZeroDigit() == '0';
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private CoffeeReportRenderer() {
+    }
+
+    /**
+     * Appends the report of a coffee to a builder.
+     *
+     * @param coffee the coffee to render
+     * @param out the builder to append to
+     * @return the builder
+     * @throws ArithmeticException if the total weight of the coffee is zero
+     */
+    public static StringBuilder render(Coffee coffee, StringBuilder out) {
+        double priceWeightRatio = coffee.getPriceWeightRatio();
+        out.append(SEPARATOR).append('\n');
+        out.append("Name: ").append(coffee.getName()).append('\n');
+        appendFixed2(out.append("Price: $"), coffee.getPrice()).append('\n');
+        appendFixed2(out.append("Coffee Weight: "), coffee.getCoffeeWeight()).append(" kg\n");
+        appendFixed2(out.append("Packaging Weight: "), coffee.getPackagingWeight()).append(" kg\n");
+        appendFixed2(out.append("Total Weight: "), coffee.getTotalWeight()).append(" kg\n");
+        appendFixed2(out.append("Coffee Volume: "), coffee.getCoffeeVolume()).append(" L\n");
+        appendFixed2(out.append("Packaging Volume: "), coffee.getPackagingVolume()).append(" L\n");
+        appendFixed2(out.append("Total Volume: "), coffee.getTotalVolume()).append(" L\n");
+        out.append("Quality Rating: ");
+        if (ASCII_DIGITS) {
+            out.append(coffee.getQualityRating());
+        } else {
+            out.append(String.format("%d", coffee.getQualityRating()));
+        }
+        out.append('\n');
+        out.append("State: ").append(coffee.getState()).append('\n');
+        appendFixed2(out.append("Price/Weight Ratio: $"), priceWeightRatio).append('\n');
+        return out.append(SEPARATOR);
+    }
+
+    /**
+     * Returns the report of a coffee as a string.
+     *
+     * @param coffee the coffee to render
+     * @return the report of the coffee
+     * @throws ArithmeticException if the total weight of the coffee is zero
+     */
+    public static String render(Coffee coffee) {
+        return render(coffee, new StringBuilder(384)).toString();
+    }
+
+    /**
+     * Writes the reports of several coffees to an {@link Appendable}, each followed by a line
+     * break, as printing them one by one with {@code println} would.
+     *
+     * @param coffees the coffees to render
+     * @param out the destination, e.g. a buffered writer
+     * @throws IOException if the destination cannot be written
+     * @throws ArithmeticException if the total weight of a coffee is zero
+     */
+    public static void renderAll(Iterable<? extends Coffee> coffees, Appendable out) throws IOException {
+        StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 512);
+        for (Coffee coffee : coffees) {
+            render(coffee, buffer).append(System.lineSeparator());
+            if (buffer.length() >= FLUSH_THRESHOLD) {
+                out.append(buffer);
+                buffer.setLength(0);
+            }
+        }
+        out.append(buffer);
+    }
+
+    /**
+     * Appends a value rounded to two decimal places, producing the same text as
+     * {@code String.format("%.2f", value)} in the default locale.
+     *
+     * @param out the builder to append to
+     * @param value the value to format
+     * @return the builder
+     */
+    static StringBuilder appendFixed2(StringBuilder out, double value) {
+        if (Double.isNaN(value)) {
+            return out.append("NaN");
+        }
+        if (!ASCII_DIGITS) {
+            return out.append(String.format("%.2f", value));
+        }
+        if (Double.doubleToRawLongBits(value) < 0) {
+            out.append('-');
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            return out.append("Infinity");
+        }
+        if (value >= FAST_PATH_LIMIT) {
+            return appendFixed2Exact(out, value);
+        }
+        double scaled = value * 100;
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            return appendFixed2Exact(out, value);
+        }
+        long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+        out.append(cents / 100).append(DECIMAL_SEPARATOR);
+        int remainder = (int) (cents % 100);
+        if (remainder < 10) {
+            out.append('0');
+        }
+        return out.append(remainder);
+    }
+
+    /**
+     * Appends a non-negative value rounded half up from its shortest decimal representation,
+     * the way {@code %.2f} does. Used near rounding ties and for large values.
+     *
+     * @param out the builder to append to
+     * @param value the non-negative, finite value to format
+     * @return the builder
+     */
+    private static StringBuilder appendFixed2Exact(StringBuilder out, double value) {
+        String text = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        return out.append(text, 0, text.length() - 3).append(DECIMAL_SEPARATOR).append(text, text.length() - 2, text.length());
+    }
+}
@@ -1,13 +1,45 @@
+import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 
 /**
  * A custom implementation of a {@link Set} interface for {@link Coffee} objects using
  * a doubly linked list as the internal structure.
+ * <p>
+ * The list keeps the elements in insertion order, while a hash index mapping each element
+ * to its node gives expected constant time {@code add}, {@code contains} and {@code remove}.
+ * Iterators are fail-fast: once the set is modified other than through the iterator's own
+ * {@code remove} method, they throw a {@link ConcurrentModificationException}.
+ * <p>
+ * The set registers a change listener on every unfrozen element and re-keys a coffee whose
+ * fields change through its setters, so stored coffees can be updated in place; a coffee that
+ * becomes equal to another element is removed. {@linkplain #addListener(CoffeeSetListener) Set
+ * listeners} are told of every addition, removal and clear, and of every such change.
  */
 public class CoffeeSet implements Set<Coffee> {
+    /** The largest collection argument of a bulk operation that is scanned rather than indexed. */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
     /** The head (first) node of the list. */
     private Node<Coffee> head;
 
@@ -17,6 +49,27 @@ public class CoffeeSet implements Set<Coffee> {
     /** The number of elements in the set. */
     private int size;
 
+    /** The hash index mapping each element to the node that holds it. */
+    private final Map<Coffee, Node<Coffee>> index;
+
+    /** The secondary indexes, or null until the first query that needs them. */
+    private CoffeeIndexes secondaryIndexes;
+
+    /** The number of structural modifications, used to make iterators fail-fast. */
+    private int modCount;
+
+    /** The set listeners, or null if there are none. */
+    private CoffeeSetListener[] listeners;
+
+    /** The listener registered on every unfrozen element, which re-keys it when it changes. */
+    private final MemberTracker tracker = new MemberTracker();
+
+    /** The membership filter consulted before the hash index, or null if it is disabled. */
+    private CoffeeBloomFilter filter;
+
+    /** The metrics recording the operations, or null if they are disabled. */
+    private CoffeeSetMetrics metrics;
+
     /**
      * Constructs an empty {@code CoffeeSet}.
      */
@@ -24,6 +77,24 @@ public class CoffeeSet implements Set<Coffee> {
         head = null;
         tail = null;
         size = 0;
+        index = new HashMap<>();
+    }
+
+    /**
+     * Constructs an empty {@code CoffeeSet} whose index is sized to hold the specified number
+     * of elements without rehashing.
+     *
+     * @param expectedSize the number of elements the set is expected to hold
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public CoffeeSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative.");
+        }
+        head = null;
+        tail = null;
+        size = 0;
+        index = new HashMap<>(Math.max((int) (expectedSize / .75f) + 1, 16));
     }
 
     /**
@@ -42,7 +113,7 @@ public class CoffeeSet implements Set<Coffee> {
      * @param coffees the collection of coffee elements to add
      */
     public CoffeeSet(Collection<? extends Coffee> coffees) {
-        this();
+        this(coffees.size());
         addAll(coffees);
     }
 
@@ -51,14 +122,37 @@ public class CoffeeSet implements Set<Coffee> {
      *
      * @param coffee the coffee element to be added
      * @return {@code true} if the element was added successfully; {@code false} if the element already exists
+     * @throws NullPointerException if the coffee is null
      */
     @Override
     public boolean add(Coffee coffee) {
-        if (contains(coffee)) {
+        if (metrics != null) {
+            long start = System.nanoTime();
+            boolean added = insert(coffee);
+            metrics.record(CoffeeSetMetrics.Operation.ADD, start, 1, size);
+            return added;
+        }
+        return insert(coffee);
+    }
+
+    /**
+     * Adds a {@code Coffee} element to the set, without recording metrics.
+     *
+     * @param coffee the coffee element to be added
+     * @return {@code true} if the element was added; {@code false} if it already exists
+     * @throws NullPointerException if the coffee is null
+     */
+    private boolean insert(Coffee coffee) {
+        Objects.requireNonNull(coffee, "Coffee cannot be null.");
+        if (index.containsKey(coffee)) {
             return false;
         }
 
         Node<Coffee> newNode = new Node<>(coffee);
+        index.put(coffee, newNode);
+        if (secondaryIndexes != null) {
+            secondaryIndexes.add(coffee);
+        }
         if (head == null) {
             head = tail = newNode;
         } else {
@@ -67,6 +161,17 @@ public class CoffeeSet implements Set<Coffee> {
             tail = newNode;
         }
         size++;
+        modCount++;
+        if (filter != null) {
+            filter.add(coffee);
+            rebuildFilterIfNeeded();
+        }
+        track(coffee);
+        if (listeners != null) {
+            for (CoffeeSetListener listener : listeners) {
+                listener.added(coffee);
+            }
+        }
         return true;
     }
 
@@ -78,47 +183,172 @@ public class CoffeeSet implements Set<Coffee> {
      */
     @Override
     public boolean remove(Object o) {
-        Node<Coffee> current = head;
-        while (current != null) {
-            if (current.getValue().equals(o)) {
-                if (current == head) {
-                    head = current.getNext();
-                }
-                if (current == tail) {
-                    tail = current.getPrev();
-                }
-                if (current.getPrev() != null) {
-                    current.getPrev().setNext(current.getNext());
-                }
-                if (current.getNext() != null) {
-                    current.getNext().setPrev(current.getPrev());
-                }
-                size--;
-                return true;
-            }
-            current = current.getNext();
+        if (metrics != null) {
+            long start = System.nanoTime();
+            boolean removed = delete(o);
+            metrics.record(CoffeeSetMetrics.Operation.REMOVE, start, 1, size);
+            return removed;
         }
-        return false;
+        return delete(o);
+    }
+
+    /**
+     * Removes the specified object from the set if it is present, without recording metrics.
+     *
+     * @param o the object to be removed
+     * @return {@code true} if the object was removed; {@code false} otherwise
+     */
+    private boolean delete(Object o) {
+        Node<Coffee> node = index.remove(o);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Unlinks the specified node from the list, updating the neighboring nodes, the secondary
+     * indexes, the size and the modification count, and notifies the listeners. The caller is
+     * responsible for removing the node's value from the hash index.
+     *
+     * @param node the node to unlink
+     */
+    private void unlink(Node<Coffee> node) {
+        Coffee coffee = node.getValue();
+        if (secondaryIndexes != null) {
+            secondaryIndexes.remove(coffee);
+        }
+        detach(node);
+        if (filter != null) {
+            filter.removed();
+            rebuildFilterIfNeeded();
+        }
+        coffee.removeChangeListener(tracker);
+        if (listeners != null) {
+            fireRemoved(coffee);
+        }
+    }
+
+    /**
+     * Unlinks the specified node from the list, updating the neighboring nodes, the size and the
+     * modification count, but neither the indexes nor the listeners.
+     *
+     * @param node the node to unlink
+     */
+    private void detach(Node<Coffee> node) {
+        if (node == head) {
+            head = node.getNext();
+        }
+        if (node == tail) {
+            tail = node.getPrev();
+        }
+        if (node.getPrev() != null) {
+            node.getPrev().setNext(node.getNext());
+        }
+        if (node.getNext() != null) {
+            node.getNext().setPrev(node.getPrev());
+        }
+        size--;
+        modCount++;
     }
 
     /**
-     * Checks if the set contains the specified object.
+     * Checks if the set contains the specified object. If the membership filter is enabled, it
+     * is consulted first, and the hash index is only probed if the filter cannot rule the
+     * object out.
      *
      * @param o the object to check for
      * @return {@code true} if the object is present; {@code false} otherwise
      */
     @Override
     public boolean contains(Object o) {
-        Node<Coffee> current = head;
-        while (current != null) {
-            if (current.getValue().equals(o)) {
-                return true;
-            }
-            current = current.getNext();
+        if (metrics != null) {
+            long start = System.nanoTime();
+            long rejected = filter == null ? 0 : filter.getNegativeCount();
+            boolean found = lookup(o);
+            int probes = filter != null && filter.getNegativeCount() != rejected ? 0 : 1;
+            metrics.record(CoffeeSetMetrics.Operation.CONTAINS, start, probes, size);
+            return found;
+        }
+        return lookup(o);
+    }
+
+    /**
+     * Checks if the set contains the specified object, without recording metrics.
+     *
+     * @param o the object to check for
+     * @return {@code true} if the object is present; {@code false} otherwise
+     */
+    private boolean lookup(Object o) {
+        if (filter == null || !(o instanceof Coffee)) {
+            return index.containsKey(o);
         }
+        if (!filter.mightContain(o)) {
+            return false;
+        }
+        if (index.containsKey(o)) {
+            return true;
+        }
+        filter.falsePositive();
         return false;
     }
 
+    /**
+     * Enables a Bloom filter that lets {@link #contains(Object)} reject most absent coffees
+     * without probing the hash index, which pays off when most lookups miss. The filter is
+     * updated by every insertion, and the insertion or removal that makes it grow past its size
+     * or leaves too many removed elements in it rebuilds it, so lookups never modify it beyond its
+     * counters. Enabling the filter again rebuilds it with the new rate.
+     *
+     * @param falsePositiveRate the target fraction of absent coffees that the filter lets
+     *                          through to the hash index, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the false-positive rate is not between 0 and 1 exclusive
+     */
+    public void enableMembershipFilter(double falsePositiveRate) {
+        filter = new CoffeeBloomFilter(size + size / 2, falsePositiveRate);
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            filter.add(current.getValue());
+        }
+    }
+
+    /**
+     * Disables the membership filter and releases its memory.
+     */
+    public void disableMembershipFilter() {
+        filter = null;
+    }
+
+    /**
+     * Returns the membership filter, whose counters tell how many lookups it answered and how
+     * many of its answers were false positives.
+     *
+     * @return the membership filter, or null if it is disabled
+     */
+    public CoffeeBloomFilter getMembershipFilter() {
+        return filter;
+    }
+
+    /**
+     * Rebuilds the membership filter if it has become too inaccurate. The caller has checked
+     * that the filter is enabled.
+     */
+    private void rebuildFilterIfNeeded() {
+        if (filter.needsRebuild()) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Rebuilds the membership filter from the elements, sized for half as many more.
+     */
+    private void rebuildFilter() {
+        filter.reset(size + size / 2);
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            filter.add(current.getValue());
+        }
+    }
+
     /**
      * Returns the number of elements in the set.
      *
@@ -140,30 +370,455 @@ public class CoffeeSet implements Set<Coffee> {
     }
 
     /**
-     * Returns an iterator over the elements in the set.
+     * Returns a fail-fast iterator over the elements in the set, in insertion order. The
+     * iterator's {@code remove} method unlinks the current node in constant time.
      *
      * @return an iterator over the elements in the set
      */
     @Override
     public Iterator<Coffee> iterator() {
-        return new Iterator<>() {
-            private Node<Coffee> current = head;
+        return new NodeIterator();
+    }
 
-            @Override
-            public boolean hasNext() {
-                return current != null;
+    /**
+     * Removes all elements of the set that satisfy the specified predicate, in a single pass
+     * over the list that unlinks each matching node in place.
+     *
+     * @param filter the predicate returning {@code true} for the elements to remove
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     * @throws NullPointerException if the predicate is null
+     * @throws ConcurrentModificationException if the predicate modifies the set
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Coffee> filter) {
+        Objects.requireNonNull(filter);
+        if (metrics != null) {
+            return metered(CoffeeSetMetrics.Operation.REMOVE_IF, size, () -> unlinkMatching(filter));
+        }
+        return unlinkMatching(filter);
+    }
+
+    /**
+     * Removes the elements matching a predicate in a single pass, without recording metrics.
+     *
+     * @param filter the predicate selecting the elements to remove
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    private boolean unlinkMatching(Predicate<? super Coffee> filter) {
+        boolean changed = false;
+        int expectedModCount = modCount;
+        Node<Coffee> current = head;
+        while (current != null) {
+            Node<Coffee> next = current.getNext();
+            boolean matches = filter.test(current.getValue());
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+            if (matches) {
+                index.remove(current.getValue());
+                unlink(current);
+                expectedModCount = modCount;
+                changed = true;
+            }
+            current = next;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the coffees with the specified name, in insertion order.
+     * <p>
+     * This and the other query methods use secondary indexes on the name, quality rating and
+     * price. The indexes are built on the first query and then kept up to date by every
+     * insertion and removal, so sets that are never queried do not pay for them.
+     *
+     * @param name the name to look up
+     * @return a new list of the coffees with that name, empty if there are none
+     */
+    public List<Coffee> findByName(String name) {
+        return secondaryIndexes().byName(name);
+    }
+
+    /**
+     * Returns the coffees with the specified quality rating, in insertion order.
+     *
+     * @param qualityRating the quality rating, between 0 and 10
+     * @return a live, unmodifiable view of the coffees with that rating
+     * @throws IllegalArgumentException if the quality rating is not between 0 and 10
+     */
+    public Set<Coffee> findByQualityRating(int qualityRating) {
+        return secondaryIndexes().byQualityRating(Coffee.checkQualityRating(qualityRating));
+    }
+
+    /**
+     * Returns the coffees in the specified state, in insertion order.
+     *
+     * @param state the state
+     * @return a live, unmodifiable view of the coffees in that state
+     * @throws NullPointerException if the state is null
+     */
+    public Set<Coffee> findByState(CoffeeState state) {
+        return secondaryIndexes().byState(Objects.requireNonNull(state, "State cannot be null."));
+    }
+
+    /**
+     * Returns the coffees whose price lies between the specified bounds, inclusive.
+     *
+     * @param minPrice the lowest price
+     * @param maxPrice the highest price
+     * @return a live, unmodifiable view of the coffees in the range, cheapest first
+     * @throws IllegalArgumentException if {@code minPrice} is greater than {@code maxPrice}
+     */
+    public NavigableSet<Coffee> findByPriceRange(double minPrice, double maxPrice) {
+        return secondaryIndexes().byPrice(minPrice, maxPrice);
+    }
+
+    /**
+     * Returns the secondary indexes, building them from the current elements if needed.
+     *
+     * @return the secondary indexes
+     */
+    private CoffeeIndexes secondaryIndexes() {
+        if (secondaryIndexes == null) {
+            CoffeeIndexes indexes = new CoffeeIndexes();
+            for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+                indexes.add(current.getValue());
+            }
+            secondaryIndexes = indexes;
+        }
+        return secondaryIndexes;
+    }
 
-            @Override
-            public Coffee next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
+    /**
+     * Performs the specified action for each element of the set, in insertion order. Unlike
+     * iterating with {@link #iterator()}, no iterator object is allocated.
+     *
+     * @param action the action to perform for each element
+     * @throws NullPointerException if the action is null
+     * @throws ConcurrentModificationException if the action modifies the set
+     */
+    @Override
+    public void forEach(Consumer<? super Coffee> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            action.accept(current.getValue());
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Passes a numeric attribute of each element of the set to the specified action, in
+     * insertion order, without boxing the values.
+     *
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getPrice}
+     * @param action the action to perform for each attribute value
+     * @throws NullPointerException if the attribute function or the action is null
+     */
+    public void forEachDouble(ToDoubleFunction<? super Coffee> attribute, DoubleConsumer action) {
+        Objects.requireNonNull(attribute);
+        Objects.requireNonNull(action);
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            action.accept(attribute.applyAsDouble(current.getValue()));
+        }
+    }
+
+    /**
+     * Returns the sum of a numeric attribute over all elements of the set. The list is walked
+     * directly, so the aggregation allocates nothing.
+     *
+     * @param attribute the function extracting the attribute, e.g. {@code Coffee::getTotalWeight}
+     * @return the sum of the attribute, or 0 if the set is empty
+     * @throws NullPointerException if the attribute function is null
+     */
+    public double sum(ToDoubleFunction<? super Coffee> attribute) {
+        Objects.requireNonNull(attribute);
+        double sum = 0;
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            sum += attribute.applyAsDouble(current.getValue());
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a sequential {@link DoubleStream} of a numeric attribute of the elements, in
+     * insertion order. The values are read directly from the elements without boxing; call
+     * {@code parallel()} on the result to aggregate across cores.
+     *
+     * @param attribute the function extracting the attribute
+     * @return a stream of the attribute values
+     * @throws NullPointerException if the attribute function is null
+     */
+    public DoubleStream mapToDouble(ToDoubleFunction<? super Coffee> attribute) {
+        return stream().mapToDouble(attribute);
+    }
+
+    /**
+     * Returns a sequential {@link IntStream} of an integer attribute of the elements, in
+     * insertion order. The values are read directly from the elements without boxing; call
+     * {@code parallel()} on the result to aggregate across cores.
+     *
+     * @param attribute the function extracting the attribute
+     * @return a stream of the attribute values
+     * @throws NullPointerException if the attribute function is null
+     */
+    public IntStream mapToInt(ToIntFunction<? super Coffee> attribute) {
+        return stream().mapToInt(attribute);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements in the set, in insertion order.
+     * <p>
+     * The spliterator reports {@link Spliterator#SIZED}, {@link Spliterator#DISTINCT},
+     * {@link Spliterator#ORDERED} and {@link Spliterator#NONNULL}. Since a linked list cannot be
+     * split in the middle, each {@code trySplit} copies an arithmetically growing batch of
+     * elements from the front into an array, which splits further in constant time. This lets
+     * {@code parallelStream()} hand work to several threads. The spliterator is fail-fast: it
+     * throws a {@link ConcurrentModificationException} if the set is modified after it was
+     * created.
+     *
+     * @return a spliterator over the elements in the set
+     */
+    @Override
+    public Spliterator<Coffee> spliterator() {
+        return new NodeSpliterator(this);
+    }
+
+    /**
+     * Returns a stream of the prices of the elements.
+     *
+     * @return a stream of the prices
+     */
+    public DoubleStream prices() {
+        return mapToDouble(Coffee::getPrice);
+    }
+
+    /**
+     * Returns a stream of the coffee weights of the elements.
+     *
+     * @return a stream of the coffee weights
+     */
+    public DoubleStream coffeeWeights() {
+        return mapToDouble(Coffee::getCoffeeWeight);
+    }
+
+    /**
+     * Returns a stream of the packaging weights of the elements.
+     *
+     * @return a stream of the packaging weights
+     */
+    public DoubleStream packagingWeights() {
+        return mapToDouble(Coffee::getPackagingWeight);
+    }
+
+    /**
+     * Returns a stream of the total weights of the elements.
+     *
+     * @return a stream of the total weights
+     */
+    public DoubleStream totalWeights() {
+        return mapToDouble(Coffee::getTotalWeight);
+    }
+
+    /**
+     * Returns a stream of the coffee volumes of the elements.
+     *
+     * @return a stream of the coffee volumes
+     */
+    public DoubleStream coffeeVolumes() {
+        return mapToDouble(Coffee::getCoffeeVolume);
+    }
+
+    /**
+     * Returns a stream of the packaging volumes of the elements.
+     *
+     * @return a stream of the packaging volumes
+     */
+    public DoubleStream packagingVolumes() {
+        return mapToDouble(Coffee::getPackagingVolume);
+    }
+
+    /**
+     * Returns a stream of the total volumes of the elements.
+     *
+     * @return a stream of the total volumes
+     */
+    public DoubleStream totalVolumes() {
+        return mapToDouble(Coffee::getTotalVolume);
+    }
+
+    /**
+     * Returns a stream of the quality ratings of the elements.
+     *
+     * @return a stream of the quality ratings
+     */
+    public IntStream qualityRatings() {
+        return mapToInt(Coffee::getQualityRating);
+    }
+
+    /**
+     * Enables the recording of operation counters, latency histograms, probe and scan lengths
+     * and size history. Until then, each operation only pays a null check.
+     *
+     * @return the metrics of the set, new unless they were already enabled
+     */
+    public CoffeeSetMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new CoffeeSetMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops recording metrics. Metrics already returned keep their values, and stay registered
+     * with JMX until {@linkplain CoffeeSetMetrics#unregister() unregistered}.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * Returns the metrics of the set.
+     *
+     * @return the metrics, or null if they are disabled
+     */
+    public CoffeeSetMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers a listener to be notified of every change to the contents of the set, on the
+     * thread making the change.
+     *
+     * @param listener the listener to register
+     * @throws NullPointerException if the listener is null
+     */
+    public void addListener(CoffeeSetListener listener) {
+        Objects.requireNonNull(listener, "Listener cannot be null.");
+        if (listeners == null) {
+            listeners = new CoffeeSetListener[] {listener};
+        } else {
+            CoffeeSetListener[] extended = Arrays.copyOf(listeners, listeners.length + 1);
+            extended[listeners.length] = listener;
+            listeners = extended;
+        }
+    }
+
+    /**
+     * Unregisters a listener registered with {@link #addListener(CoffeeSetListener)}. Nothing
+     * happens if the listener is not registered.
+     *
+     * @param listener the listener to unregister
+     */
+    public void removeListener(CoffeeSetListener listener) {
+        if (listeners == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length > 1) {
+                    CoffeeSetListener[] reduced = new CoffeeSetListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, reduced, 0, i);
+                    System.arraycopy(listeners, i + 1, reduced, i, reduced.length - i);
+                    listeners = reduced;
+                    return;
                 }
-                Coffee coffee = current.getValue();
-                current = current.getNext();
-                return coffee;
+                listeners = null;
+                return;
             }
-        };
+        }
+    }
+
+    /**
+     * Replaces an element with a coffee that differs from it in one field, keeping its position
+     * in insertion order. This is how an update recorded by a {@link CoffeeChangeLog} is applied
+     * to another set: the stored coffee is not modified, only swapped for the replacement.
+     * If the replacement equals another element, the element is removed instead.
+     *
+     * @param coffee a coffee equal to the element to replace
+     * @param replacement the coffee to store in its place
+     * @param field the field in which the replacement differs
+     * @return {@code true} if the element was present; {@code false} otherwise
+     */
+    boolean replace(Coffee coffee, Coffee replacement, CoffeeField field) {
+        Objects.requireNonNull(replacement, "Coffee cannot be null.");
+        Node<Coffee> node = index.remove(coffee);
+        if (node == null) {
+            return false;
+        }
+        Coffee before = node.getValue();
+        if (secondaryIndexes != null) {
+            secondaryIndexes.remove(before);
+        }
+        before.removeChangeListener(tracker);
+        track(replacement);
+        node.setValue(replacement);
+        rekey(node, before, field);
+        return true;
+    }
+
+    /**
+     * Puts the changed value of a node back into the indexes and notifies the listeners of the
+     * update, or removes the node if its value now equals another element.
+     *
+     * @param node the node whose value changed, no longer in any index
+     * @param before the value of the node before the change, or null if it was not copied
+     * @param field the field that changed
+     */
+    private void rekey(Node<Coffee> node, Coffee before, CoffeeField field) {
+        Coffee after = node.getValue();
+        if (filter != null) {
+            filter.removed();
+        }
+        if (index.containsKey(after)) {
+            after.removeChangeListener(tracker);
+            detach(node);
+            if (filter != null) {
+                rebuildFilterIfNeeded();
+            }
+            if (listeners != null) {
+                fireRemoved(before);
+            }
+            return;
+        }
+        index.put(after, node);
+        if (filter != null) {
+            filter.add(after);
+            rebuildFilterIfNeeded();
+        }
+        if (secondaryIndexes != null) {
+            secondaryIndexes.add(after);
+        }
+        if (listeners != null) {
+            for (CoffeeSetListener listener : listeners) {
+                listener.updated(before, after, field);
+            }
+        }
+    }
+
+    /**
+     * Registers the tracker on a coffee entering the set, unless the coffee is frozen and so
+     * cannot change.
+     *
+     * @param coffee the coffee entering the set
+     */
+    private void track(Coffee coffee) {
+        if (!coffee.isFrozen()) {
+            coffee.addChangeListener(tracker);
+        }
+    }
+
+    /**
+     * Notifies the listeners that a coffee has been removed.
+     *
+     * @param coffee the coffee removed
+     */
+    private void fireRemoved(Coffee coffee) {
+        for (CoffeeSetListener listener : listeners) {
+            listener.removed(coffee);
+        }
     }
 
     /**
@@ -171,9 +826,38 @@ public class CoffeeSet implements Set<Coffee> {
      */
     @Override
     public void clear() {
+        if (metrics != null) {
+            CoffeeSetMetrics.BulkOperation measurement = metrics.begin(CoffeeSetMetrics.Operation.CLEAR, size, 0);
+            removeAllNodes();
+            measurement.end(size);
+            return;
+        }
+        removeAllNodes();
+    }
+
+    /**
+     * Removes all elements from the set, without recording metrics.
+     */
+    private void removeAllNodes() {
+        for (Node<Coffee> current = head; current != null; current = current.getNext()) {
+            current.getValue().removeChangeListener(tracker);
+        }
         head = null;
         tail = null;
         size = 0;
+        modCount++;
+        index.clear();
+        if (secondaryIndexes != null) {
+            secondaryIndexes.clear();
+        }
+        if (filter != null) {
+            filter.reset(0);
+        }
+        if (listeners != null) {
+            for (CoffeeSetListener listener : listeners) {
+                listener.cleared();
+            }
+        }
     }
 
     /**
@@ -200,9 +884,22 @@ public class CoffeeSet implements Set<Coffee> {
      */
     @Override
     public boolean addAll(Collection<? extends Coffee> c) {
+        if (metrics != null) {
+            return metered(CoffeeSetMetrics.Operation.ADD_ALL, 0, () -> insertAll(c));
+        }
+        return insertAll(c);
+    }
+
+    /**
+     * Adds all elements of a collection to the set, without recording metrics.
+     *
+     * @param c the collection of elements to add
+     * @return {@code true} if any elements were added; {@code false} otherwise
+     */
+    private boolean insertAll(Collection<? extends Coffee> c) {
         boolean changed = false;
         for (Coffee coffee : c) {
-            if (add(coffee)) {
+            if (insert(coffee)) {
                 changed = true;
             }
         }
@@ -211,44 +908,111 @@ public class CoffeeSet implements Set<Coffee> {
 
     /**
      * Removes all elements from the specified collection from the set.
+     * <p>
+     * If the collection is smaller than the set, each of its elements is removed through the
+     * index; otherwise the set is traversed once and matching nodes are unlinked in place.
      *
      * @param c the collection of elements to remove
      * @return {@code true} if any elements were removed; {@code false} otherwise
      */
     @Override
     public boolean removeAll(Collection<?> c) {
-        boolean changed = false;
-        for (Object o : c) {
-            if (remove(o)) {
-                changed = true;
+        if (metrics != null) {
+            return metered(CoffeeSetMetrics.Operation.REMOVE_ALL, c.size() < size ? 0 : size, () -> deleteAll(c));
+        }
+        return deleteAll(c);
+    }
+
+    /**
+     * Removes all elements of a collection from the set, through the index or in a single
+     * pass, whichever is cheaper.
+     *
+     * @param c the collection of elements to remove
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    private boolean deleteAll(Collection<?> c) {
+        if (c.size() < size) {
+            boolean changed = false;
+            for (Object o : c) {
+                if (delete(o)) {
+                    changed = true;
+                }
             }
+            return changed;
         }
-        return changed;
+        return unlinkIf(indexed(c), true);
     }
 
     /**
      * Retains only the elements in the set that are contained in the specified collection.
+     * <p>
+     * The set is traversed once and nodes to drop are unlinked in place.
      *
      * @param c the collection of elements to retain
      * @return {@code true} if any elements were removed; {@code false} otherwise
      */
     @Override
     public boolean retainAll(Collection<?> c) {
+        if (metrics != null) {
+            return metered(CoffeeSetMetrics.Operation.RETAIN_ALL, size, () -> unlinkIf(indexed(c), false));
+        }
+        return unlinkIf(indexed(c), false);
+    }
+
+    /**
+     * Runs a bulk operation and records it in the metrics.
+     *
+     * @param operation the operation
+     * @param scanned the number of nodes the operation traverses
+     * @param body the operation
+     * @return the result of the operation
+     */
+    private boolean metered(CoffeeSetMetrics.Operation operation, int scanned, BooleanSupplier body) {
+        CoffeeSetMetrics.BulkOperation measurement = metrics.begin(operation, size, scanned);
+        boolean changed = body.getAsBoolean();
+        measurement.end(size);
+        return changed;
+    }
+
+    /**
+     * Traverses the set once and unlinks every node whose membership in the specified
+     * collection matches the given flag.
+     *
+     * @param c the collection to test the elements against
+     * @param contained {@code true} to unlink elements contained in the collection,
+     *                  {@code false} to unlink elements not contained in it
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    private boolean unlinkIf(Collection<?> c, boolean contained) {
         boolean changed = false;
         Node<Coffee> current = head;
         while (current != null) {
-            if (!c.contains(current.getValue())) {
-                Node<Coffee> next = current.getNext();
-                remove(current.getValue());
-                current = next;
+            Node<Coffee> next = current.getNext();
+            if (c.contains(current.getValue()) == contained) {
+                index.remove(current.getValue());
+                unlink(current);
                 changed = true;
-            } else {
-                current = current.getNext();
             }
+            current = next;
         }
         return changed;
     }
 
+    /**
+     * Returns a collection with the same elements as the specified one that supports fast
+     * {@code contains}. Sets are returned as is; larger collections of other kinds are copied
+     * into a hash set once, so that testing every element of this set against them stays linear.
+     *
+     * @param c the collection to index
+     * @return the collection itself, or a hash set holding its elements
+     */
+    private static Collection<?> indexed(Collection<?> c) {
+        if (c instanceof Set || c.size() <= LINEAR_SCAN_LIMIT) {
+            return c;
+        }
+        return new HashSet<>(c);
+    }
+
     /**
      * Returns an array containing all elements in the set.
      *
@@ -268,7 +1032,9 @@ public class CoffeeSet implements Set<Coffee> {
 
     /**
      * Returns an array containing all elements in the set, using the specified array
-     * if it is large enough, or allocating a new array otherwise.
+     * if it is large enough, or allocating a new array of the same runtime type otherwise.
+     * If the specified array is larger than the set, the element following the last one is
+     * set to {@code null}.
      *
      * @param a the array into which the elements will be stored
      * @param <T> the type of the array elements
@@ -278,7 +1044,7 @@ public class CoffeeSet implements Set<Coffee> {
     @Override
     public <T> T[] toArray(T[] a) {
         if (a.length < size) {
-            a = (T[]) new Object[size];
+            a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
         }
         int index = 0;
         Node<Coffee> current = head;
@@ -286,6 +1052,235 @@ public class CoffeeSet implements Set<Coffee> {
             a[index++] = (T) current.getValue();
             current = current.getNext();
         }
+        if (a.length > size) {
+            a[size] = null;
+        }
         return a;
     }
-}
\ No newline at end of file
+
+    /**
+     * The change listener registered on every unfrozen element. Before a field changes, it takes
+     * the element out of the indexes, whose keys depend on the field, and copies its old value for
+     * the set listeners if there are any; afterwards it puts the element back under its new value.
+     */
+    private final class MemberTracker implements CoffeeChangeListener {
+        /** The node of the element being changed, or null between changes. */
+        private Node<Coffee> pending;
+
+        /** A frozen copy of the element being changed, taken before the change, or null. */
+        private Coffee before;
+
+        @Override
+        public void beforeChange(Coffee coffee, CoffeeField field) {
+            Node<Coffee> node = index.get(coffee);
+            if (node == null || node.getValue() != coffee) {
+                return;
+            }
+            index.remove(coffee);
+            if (secondaryIndexes != null) {
+                secondaryIndexes.remove(coffee);
+            }
+            pending = node;
+            if (listeners != null) {
+                Coffee copy = coffee.getCoffeeState().newCoffee(coffee.getName(), coffee.getPrice(),
+                        coffee.getCoffeeWeight(), coffee.getPackagingWeight(), coffee.getCoffeeVolume(),
+                        coffee.getPackagingVolume(), coffee.getQualityRating());
+                copy.freeze();
+                before = copy;
+            }
+        }
+
+        @Override
+        public void afterChange(Coffee coffee, CoffeeField field) {
+            Node<Coffee> node = pending;
+            if (node == null || node.getValue() != coffee) {
+                return;
+            }
+            Coffee copy = before;
+            pending = null;
+            before = null;
+            rekey(node, copy, field);
+        }
+    }
+
+    /**
+     * A fail-fast iterator over the nodes of the list that can unlink the last returned node.
+     */
+    private final class NodeIterator implements Iterator<Coffee> {
+        /** The next node to return, or null at the end of the list. */
+        private Node<Coffee> next = head;
+
+        /** The last returned node, or null if there is none or it was removed. */
+        private Node<Coffee> lastReturned;
+
+        /** The modification count the set is expected to have. */
+        private int expectedModCount = modCount;
+
+        /**
+         * Checks if there are more elements to return.
+         *
+         * @return {@code true} if there are more elements; {@code false} otherwise
+         */
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the next element in the set.
+         *
+         * @return the next element in the set
+         * @throws NoSuchElementException if there are no more elements
+         * @throws ConcurrentModificationException if the set was modified outside the iterator
+         */
+        @Override
+        public Coffee next() {
+            checkForComodification();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.getNext();
+            return lastReturned.getValue();
+        }
+
+        /**
+         * Removes the last element returned by this iterator from the set in constant time.
+         *
+         * @throws IllegalStateException if {@link #next()} has not been called, or the element
+         *         was already removed
+         * @throws ConcurrentModificationException if the set was modified outside the iterator
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            index.remove(lastReturned.getValue());
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Checks that the set has not been modified outside this iterator.
+         *
+         * @throws ConcurrentModificationException if the set was modified
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * A spliterator over a chain of nodes that splits off array-backed batches of growing size,
+     * in the manner of the JDK's linked collections.
+     */
+    private static final class NodeSpliterator implements Spliterator<Coffee> {
+        /** The increment of the batch size on each split. */
+        private static final int BATCH_UNIT = 1 << 10;
+
+        /** The maximum batch size. */
+        private static final int MAX_BATCH = 1 << 25;
+
+        /** The characteristics of this spliterator and of the batches it splits off. */
+        private static final int CHARACTERISTICS =
+                Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL;
+
+        /** The next node to traverse, or null if the traversal is complete. */
+        private Node<Coffee> current;
+
+        /** The number of nodes left to traverse. */
+        private int remaining;
+
+        /** The size of the last batch split off. */
+        private int batch;
+
+        /** The set being traversed. */
+        private final CoffeeSet set;
+
+        /** The modification count the set is expected to have. */
+        private final int expectedModCount;
+
+        /**
+         * Constructs a new NodeSpliterator over all elements of the specified set.
+         *
+         * @param set the set to traverse
+         */
+        NodeSpliterator(CoffeeSet set) {
+            this.set = set;
+            this.current = set.head;
+            this.remaining = set.size;
+            this.expectedModCount = set.modCount;
+        }
+
+        /**
+         * Checks that the set has not been modified since this spliterator was created.
+         *
+         * @throws ConcurrentModificationException if the set was modified
+         */
+        private void checkForComodification() {
+            if (set.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<Coffee> trySplit() {
+            if (remaining <= 1 || current == null) {
+                return null;
+            }
+            checkForComodification();
+            int n = Math.min(Math.min(batch + BATCH_UNIT, remaining), MAX_BATCH);
+            Object[] elements = new Object[n];
+            int count = 0;
+            do {
+                elements[count++] = current.getValue();
+                current = current.getNext();
+            } while (current != null && count < n);
+            batch = count;
+            remaining -= count;
+            return Spliterators.spliterator(elements, 0, count, CHARACTERISTICS);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Coffee> action) {
+            Objects.requireNonNull(action);
+            if (current == null) {
+                return false;
+            }
+            Coffee coffee = current.getValue();
+            current = current.getNext();
+            remaining--;
+            action.accept(coffee);
+            checkForComodification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Coffee> action) {
+            Objects.requireNonNull(action);
+            Node<Coffee> node = current;
+            int n = remaining;
+            current = null;
+            remaining = 0;
+            for (; node != null && n > 0; node = node.getNext(), n--) {
+                action.accept(node.getValue());
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
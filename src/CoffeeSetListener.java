@@ -0,0 +1,35 @@
+/**
+ * A listener notified of every change to the contents of a {@link CoffeeSet}, in the order the
+ * changes are made.
+ *
+ * @see CoffeeSet#addListener(CoffeeSetListener)
+ */
+public interface CoffeeSetListener {
+    /**
+     * Called after a coffee has been added to the set.
+     *
+     * @param coffee the coffee added
+     */
+    void added(Coffee coffee);
+
+    /**
+     * Called after a coffee has been removed from the set.
+     *
+     * @param coffee the coffee removed
+     */
+    void removed(Coffee coffee);
+
+    /**
+     * Called after all coffees have been removed from the set by {@link CoffeeSet#clear()}.
+     */
+    void cleared();
+
+    /**
+     * Called after a field of a coffee stored in the set has changed.
+     *
+     * @param before a copy of the coffee as it was before the change
+     * @param after the coffee stored in the set, after the change
+     * @param field the field that changed
+     */
+    void updated(Coffee before, Coffee after, CoffeeField field);
+}
@@ -0,0 +1,542 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Operation counters, latency histograms and size history of a {@link CoffeeSet}, recorded
+ * while the set has metrics {@linkplain CoffeeSet#enableMetrics() enabled}. A set without
+ * metrics pays a single null check per operation.
+ * <p>
+ * For every {@link Operation} the metrics count the calls and record their latency in a
+ * {@link ConcurrentHistogram}. Lookups also record their probe length, the number of hash index
+ * probes they made, and bulk operations their scan length, the number of nodes they traversed,
+ * and the bytes the calling thread allocated. The size of the set is sampled at most once per
+ * sampling interval. Recording is lock-free apart from taking that sample, so one metrics
+ * object may be shared by several sets.
+ * <p>
+ * The metrics can be {@linkplain #register(String) registered} as a JMX MBean, which also
+ * emits a periodic {@code coffee.CoffeeSetStatistics} JFR event. Every bulk operation emits a
+ * {@code coffee.CoffeeSetOperation} JFR event while a recording has it enabled, so slow bulk
+ * operations can be lined up with GC pauses and CPU samples in the same recording.
+ */
+public class CoffeeSetMetrics implements CoffeeSetMetricsMBean {
+    /**
+     * The operations of a {@link CoffeeSet} that are measured.
+     */
+    public enum Operation {
+        /** {@link CoffeeSet#add(Coffee)}. */
+        ADD,
+
+        /** {@link CoffeeSet#contains(Object)}. */
+        CONTAINS,
+
+        /** {@link CoffeeSet#remove(Object)}. */
+        REMOVE,
+
+        /** {@link CoffeeSet#addAll(java.util.Collection)}. */
+        ADD_ALL,
+
+        /** {@link CoffeeSet#removeAll(java.util.Collection)}. */
+        REMOVE_ALL,
+
+        /** {@link CoffeeSet#retainAll(java.util.Collection)}. */
+        RETAIN_ALL,
+
+        /** {@link CoffeeSet#removeIf(java.util.function.Predicate)}. */
+        REMOVE_IF,
+
+        /** {@link CoffeeSet#clear()}. */
+        CLEAR;
+
+        /**
+         * Checks whether this is a bulk operation, measured with its scan length and allocation.
+         *
+         * @return {@code true} for bulk operations; {@code false} for single lookups
+         */
+        boolean isBulk() {
+            return ordinal() > REMOVE.ordinal();
+        }
+    }
+
+    /** The sampling interval used when none is specified, in milliseconds. */
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 1000;
+
+    /** The number of size samples kept. */
+    private static final int SIZE_HISTORY_LENGTH = 1024;
+
+    /** The bean measuring the bytes allocated by a thread, or null if the JVM cannot. */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    /** The latency of each operation in nanoseconds, indexed by ordinal. */
+    private final ConcurrentHistogram[] latencies = new ConcurrentHistogram[Operation.values().length];
+
+    /** The number of index probes of each lookup. */
+    private final ConcurrentHistogram probeLengths = new ConcurrentHistogram();
+
+    /** The number of nodes traversed by each bulk operation. */
+    private final ConcurrentHistogram scanLengths = new ConcurrentHistogram();
+
+    /** The bytes allocated during bulk operations. */
+    private final LongAdder bulkAllocatedBytes = new LongAdder();
+
+    /** The shortest time between two size samples, in nanoseconds. */
+    private final long sampleIntervalNanos;
+
+    /** The time of the last size sample, from {@link System#nanoTime()}. */
+    private volatile long lastSampleNanos;
+
+    /** The size of the set at the last operation; read racily by monitoring threads. */
+    private int lastSize;
+
+    /** The sampling times of the size samples in milliseconds since the epoch, a ring buffer. Guarded by {@code this}. */
+    private final long[] sampleTimes = new long[SIZE_HISTORY_LENGTH];
+
+    /** The sampled sizes, parallel to {@link #sampleTimes}. Guarded by {@code this}. */
+    private final int[] sampleSizes = new int[SIZE_HISTORY_LENGTH];
+
+    /** The number of size samples taken. Guarded by {@code this}. */
+    private long sampleCount;
+
+    /** The name the metrics are registered under, or null. Guarded by {@code this}. */
+    private ObjectName objectName;
+
+    /** The hook emitting the periodic statistics event while registered, or null. Guarded by {@code this}. */
+    private Runnable statisticsHook;
+
+    /**
+     * Constructs empty {@code CoffeeSetMetrics} that sample the size once per second.
+     */
+    public CoffeeSetMetrics() {
+        this(DEFAULT_SAMPLE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructs empty {@code CoffeeSetMetrics} with the specified sampling interval.
+     *
+     * @param sampleIntervalMillis the shortest time between two size samples, in milliseconds
+     * @throws IllegalArgumentException if the sampling interval is negative
+     */
+    public CoffeeSetMetrics(long sampleIntervalMillis) {
+        if (sampleIntervalMillis < 0) {
+            throw new IllegalArgumentException("Sampling interval cannot be negative.");
+        }
+        this.sampleIntervalNanos = sampleIntervalMillis * 1_000_000;
+        this.lastSampleNanos = System.nanoTime() - sampleIntervalNanos;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new ConcurrentHistogram();
+        }
+    }
+
+    /**
+     * Records a single lookup.
+     *
+     * @param operation the operation
+     * @param startNanos the start of the operation, from {@link System#nanoTime()}
+     * @param probes the number of hash index probes made
+     * @param size the size of the set after the operation
+     */
+    void record(Operation operation, long startNanos, int probes, int size) {
+        long now = System.nanoTime();
+        latencies[operation.ordinal()].record(now - startNanos);
+        probeLengths.record(probes);
+        observe(now, size);
+    }
+
+    /**
+     * Starts measuring a bulk operation.
+     *
+     * @param operation the operation
+     * @param size the size of the set before the operation
+     * @param scanned the number of nodes the operation traverses
+     * @return the measurement to {@linkplain BulkOperation#end(int) end} after the operation
+     */
+    BulkOperation begin(Operation operation, int size, int scanned) {
+        return new BulkOperation(operation, size, scanned);
+    }
+
+    /**
+     * Updates the last observed size and takes a size sample if the sampling interval has
+     * passed since the last one.
+     *
+     * @param now the current time, from {@link System#nanoTime()}
+     * @param size the size of the set
+     */
+    private void observe(long now, int size) {
+        lastSize = size;
+        if (now - lastSampleNanos >= sampleIntervalNanos) {
+            synchronized (this) {
+                if (now - lastSampleNanos >= sampleIntervalNanos) {
+                    int slot = (int) (sampleCount++ % SIZE_HISTORY_LENGTH);
+                    sampleTimes[slot] = System.currentTimeMillis();
+                    sampleSizes[slot] = size;
+                    lastSampleNanos = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the histogram of its latencies in nanoseconds
+     */
+    public ConcurrentHistogram getLatencies(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Returns the histogram of the number of hash index probes per lookup.
+     *
+     * @return the probe length histogram
+     */
+    public ConcurrentHistogram getProbeLengths() {
+        return probeLengths;
+    }
+
+    /**
+     * Returns the histogram of the number of nodes traversed per bulk operation.
+     *
+     * @return the scan length histogram
+     */
+    public ConcurrentHistogram getScanLengths() {
+        return scanLengths;
+    }
+
+    /**
+     * Returns the number of calls of an operation.
+     *
+     * @param operation the operation
+     * @return the number of calls
+     */
+    public long getCount(Operation operation) {
+        return latencies[operation.ordinal()].getCount();
+    }
+
+    @Override
+    public int getSize() {
+        return lastSize;
+    }
+
+    @Override
+    public long getAddCount() {
+        return getCount(Operation.ADD);
+    }
+
+    @Override
+    public long getContainsCount() {
+        return getCount(Operation.CONTAINS);
+    }
+
+    @Override
+    public long getRemoveCount() {
+        return getCount(Operation.REMOVE);
+    }
+
+    @Override
+    public long getBulkOperationCount() {
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            if (operation.isBulk()) {
+                total += getCount(operation);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public double getMeanProbeLength() {
+        return probeLengths.getMean();
+    }
+
+    @Override
+    public double getMeanScanLength() {
+        return scanLengths.getMean();
+    }
+
+    @Override
+    public long getBulkAllocatedBytes() {
+        return bulkAllocatedBytes.sum();
+    }
+
+    @Override
+    public long getCount(String operation) {
+        return getCount(Operation.valueOf(operation));
+    }
+
+    @Override
+    public double getMeanLatency(String operation) {
+        return getLatencies(Operation.valueOf(operation)).getMean();
+    }
+
+    @Override
+    public long getLatencyPercentile(String operation, double percentile) {
+        return getLatencies(Operation.valueOf(operation)).getPercentile(percentile);
+    }
+
+    @Override
+    public synchronized String[] getSizeHistory() {
+        int n = (int) Math.min(sampleCount, SIZE_HISTORY_LENGTH);
+        String[] history = new String[n];
+        for (int i = 0; i < n; i++) {
+            int slot = (int) ((sampleCount - n + i) % SIZE_HISTORY_LENGTH);
+            history[i] = sampleTimes[slot] + "=" + sampleSizes[slot];
+        }
+        return history;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under
+     * {@code CoffeeSet:type=CoffeeSetMetrics,name=<name>}, and starts emitting the periodic
+     * statistics JFR event. Registering registered metrics again first unregisters them.
+     *
+     * @param name the name distinguishing this set from others
+     * @return the object name the metrics are registered under
+     * @throws NullPointerException if the name is null
+     * @throws IllegalArgumentException if the name is empty
+     * @throws IllegalStateException if the MBean cannot be registered, e.g. because the name
+     *                               is taken
+     */
+    public synchronized ObjectName register(String name) {
+        Objects.requireNonNull(name, "Name cannot be null.");
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be empty.");
+        }
+        unregister();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName registered = new ObjectName("CoffeeSet:type=CoffeeSetMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, registered);
+            objectName = registered;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics of " + name + ".", e);
+        }
+        Runnable hook = () -> {
+            StatisticsEvent event = new StatisticsEvent();
+            event.setName = name;
+            event.size = getSize();
+            event.adds = getAddCount();
+            event.lookups = getContainsCount();
+            event.removes = getRemoveCount();
+            event.bulkOperations = getBulkOperationCount();
+            event.containsP99 = getLatencies(Operation.CONTAINS).getPercentile(99);
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, hook);
+        statisticsHook = hook;
+        return objectName;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server and stops the periodic statistics
+     * event. Nothing happens if the metrics are not registered.
+     */
+    public synchronized void unregister() {
+        if (statisticsHook != null) {
+            FlightRecorder.removePeriodicEvent(statisticsHook);
+            statisticsHook = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered by someone else; nothing left to release.
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Returns a string representation of the metrics with the count and latency of each
+     * operation that was called.
+     *
+     * @return a string describing the metrics
+     */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            long n = getCount(operation);
+            if (n > 0) {
+                ConcurrentHistogram histogram = getLatencies(operation);
+                parts.add(String.format("%s=%d (p50 %d ns, p99 %d ns)", operation, n,
+                        histogram.getPercentile(50), histogram.getPercentile(99)));
+            }
+        }
+        return "CoffeeSetMetrics{size=" + lastSize + ", " + String.join(", ", parts)
+                + ", meanProbeLength=" + String.format("%.2f", getMeanProbeLength())
+                + ", meanScanLength=" + String.format("%.1f", getMeanScanLength()) + "}";
+    }
+
+    /**
+     * Returns the bean measuring the bytes allocated by a thread, enabling the measurement.
+     *
+     * @return the bean, or null if the JVM cannot measure allocation
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the bytes allocated so far by the calling thread.
+     *
+     * @return the allocated bytes, or 0 if they cannot be measured
+     */
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The measurement of one bulk operation, from {@link #begin(Operation, int, int)} to
+     * {@link #end(int)}.
+     */
+    final class BulkOperation {
+        /** The operation measured. */
+        private final Operation operation;
+
+        /** The size of the set before the operation. */
+        private final int sizeBefore;
+
+        /** The number of nodes the operation traverses. */
+        private final int scanned;
+
+        /** The JFR event of the operation. */
+        private final OperationEvent event = new OperationEvent();
+
+        /** The bytes allocated by the thread before the operation. */
+        private final long startAllocated = allocatedBytes();
+
+        /** The start of the operation, from {@link System#nanoTime()}. */
+        private final long startNanos;
+
+        /**
+         * Starts measuring a bulk operation.
+         *
+         * @param operation the operation
+         * @param sizeBefore the size of the set before the operation
+         * @param scanned the number of nodes the operation traverses
+         */
+        BulkOperation(Operation operation, int sizeBefore, int scanned) {
+            this.operation = operation;
+            this.sizeBefore = sizeBefore;
+            this.scanned = scanned;
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Ends the measurement and records it.
+         *
+         * @param sizeAfter the size of the set after the operation
+         */
+        void end(int sizeAfter) {
+            long now = System.nanoTime();
+            long allocated = allocatedBytes() - startAllocated;
+            event.end();
+            latencies[operation.ordinal()].record(now - startNanos);
+            scanLengths.record(scanned);
+            bulkAllocatedBytes.add(allocated);
+            observe(now, sizeAfter);
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.sizeBefore = sizeBefore;
+                event.sizeAfter = sizeAfter;
+                event.scanned = scanned;
+                event.allocated = allocated;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * The JFR event emitted for each bulk operation of a set with metrics.
+     */
+    @Name("coffee.CoffeeSetOperation")
+    @Label("CoffeeSet Bulk Operation")
+    @Category("Coffee")
+    @Description("A bulk operation of a CoffeeSet with metrics enabled")
+    static final class OperationEvent extends Event {
+        /** The name of the operation. */
+        @Label("Operation")
+        String operation;
+
+        /** The size of the set before the operation. */
+        @Label("Size Before")
+        int sizeBefore;
+
+        /** The size of the set after the operation. */
+        @Label("Size After")
+        int sizeAfter;
+
+        /** The number of nodes traversed. */
+        @Label("Nodes Scanned")
+        int scanned;
+
+        /** The bytes allocated by the thread during the operation. */
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /**
+     * The JFR event emitted periodically for registered metrics.
+     */
+    @Name("coffee.CoffeeSetStatistics")
+    @Label("CoffeeSet Statistics")
+    @Category("Coffee")
+    @Description("The counters of a registered CoffeeSetMetrics")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StatisticsEvent extends Event {
+        /** The name the metrics are registered under. */
+        @Label("Set")
+        String setName;
+
+        /** The size of the set. */
+        @Label("Size")
+        int size;
+
+        /** The number of additions. */
+        @Label("Adds")
+        long adds;
+
+        /** The number of membership checks. */
+        @Label("Lookups")
+        long lookups;
+
+        /** The number of single removals. */
+        @Label("Removes")
+        long removes;
+
+        /** The number of bulk operations. */
+        @Label("Bulk Operations")
+        long bulkOperations;
+
+        /** The 99th percentile of the latency of {@code contains}, in nanoseconds. */
+        @Label("Contains p99")
+        @Timespan
+        long containsP99;
+    }
+}
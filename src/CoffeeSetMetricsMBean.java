@@ -0,0 +1,102 @@
+/**
+ * The management interface of {@link CoffeeSetMetrics}, exposed through JMX once the metrics
+ * are {@linkplain CoffeeSetMetrics#register(String) registered}. Operation names are those of
+ * {@link CoffeeSetMetrics.Operation}, e.g. {@code "CONTAINS"}; latencies are in nanoseconds.
+ */
+public interface CoffeeSetMetricsMBean {
+    /**
+     * Returns the size of the set at the last operation.
+     *
+     * @return the last observed size
+     */
+    int getSize();
+
+    /**
+     * Returns the number of elements added.
+     *
+     * @return the number of {@code add} calls
+     */
+    long getAddCount();
+
+    /**
+     * Returns the number of membership checks.
+     *
+     * @return the number of {@code contains} calls
+     */
+    long getContainsCount();
+
+    /**
+     * Returns the number of single removals.
+     *
+     * @return the number of {@code remove} calls
+     */
+    long getRemoveCount();
+
+    /**
+     * Returns the number of bulk operations: {@code addAll}, {@code removeAll},
+     * {@code retainAll}, {@code removeIf} and {@code clear}.
+     *
+     * @return the number of bulk operations
+     */
+    long getBulkOperationCount();
+
+    /**
+     * Returns the mean number of index probes per {@code contains}, {@code add} and
+     * {@code remove}; a lookup rejected by the membership filter makes no probe.
+     *
+     * @return the mean probe length
+     */
+    double getMeanProbeLength();
+
+    /**
+     * Returns the mean number of nodes traversed per bulk operation.
+     *
+     * @return the mean scan length
+     */
+    double getMeanScanLength();
+
+    /**
+     * Returns the bytes allocated by the calling threads during bulk operations, if the JVM can
+     * measure them.
+     *
+     * @return the allocated bytes, or 0 if they cannot be measured
+     */
+    long getBulkAllocatedBytes();
+
+    /**
+     * Returns the number of calls of an operation.
+     *
+     * @param operation the name of the operation
+     * @return the number of calls
+     * @throws IllegalArgumentException if there is no operation with that name
+     */
+    long getCount(String operation);
+
+    /**
+     * Returns the mean latency of an operation.
+     *
+     * @param operation the name of the operation
+     * @return the mean latency in nanoseconds
+     * @throws IllegalArgumentException if there is no operation with that name
+     */
+    double getMeanLatency(String operation);
+
+    /**
+     * Returns a percentile of the latency of an operation.
+     *
+     * @param operation the name of the operation
+     * @param percentile the percentile, between 0 and 100 inclusive
+     * @return the percentile of the latency in nanoseconds
+     * @throws IllegalArgumentException if there is no operation with that name, or if the
+     *                                  percentile is not between 0 and 100
+     */
+    long getLatencyPercentile(String operation, double percentile);
+
+    /**
+     * Returns the sampled sizes of the set, oldest first, each as the sampling time in
+     * milliseconds since the epoch followed by the size.
+     *
+     * @return the size samples, e.g. {@code "1700000000000=1024"}
+     */
+    String[] getSizeHistory();
+}
@@ -0,0 +1,87 @@
+/**
+ * The physical states a {@link Coffee} product can be sold in.
+ * <p>
+ * The state is stored in every coffee as a field rather than expressed by overriding a method,
+ * so code that depends on it, such as {@link CoffeeReportRenderer}, the per-state index of
+ * {@link CoffeeSet} and {@link CoffeeAggregations#statisticsByState}, switches on the constant
+ * or indexes an array by its ordinal instead of making a virtual call whose targets multiply
+ * with every subclass.
+ */
+public enum CoffeeState {
+    /** Ground coffee, the state of a plain {@link Coffee} and of {@link GroundCoffee}. */
+    GROUND("Ground"),
+
+    /** Whole coffee beans, the state of {@link WholeBeanCoffee}. */
+    WHOLE_BEAN("Whole Bean"),
+
+    /** Instant coffee, the state of {@link InstantCoffee}. */
+    INSTANT("Instant");
+
+    /** The states, indexed by ordinal. */
+    private static final CoffeeState[] VALUES = values();
+
+    /** The human-readable label of the state. */
+    private final String label;
+
+    /**
+     * Constructs a state with the specified label.
+     *
+     * @param label the human-readable label
+     */
+    CoffeeState(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the human-readable label of the state, as returned by {@link Coffee#getState()}.
+     *
+     * @return the label of the state
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the state with the specified ordinal.
+     *
+     * @param ordinal the ordinal of the state
+     * @return the state
+     * @throws IllegalArgumentException if there is no state with that ordinal
+     */
+    static CoffeeState ofOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown coffee state " + ordinal + ".");
+        }
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Creates a coffee of the class matching this state with the specified properties.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @return a new coffee in this state
+     * @throws NullPointerException if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public Coffee newCoffee(String name, double price, double coffeeWeight, double packagingWeight,
+                            double coffeeVolume, double packagingVolume, int qualityRating) {
+        switch (this) {
+            case WHOLE_BEAN:
+                return new WholeBeanCoffee(name, price, coffeeWeight, packagingWeight, coffeeVolume,
+                        packagingVolume, qualityRating);
+            case INSTANT:
+                return new InstantCoffee(name, price, coffeeWeight, packagingWeight, coffeeVolume,
+                        packagingVolume, qualityRating);
+            default:
+                return new GroundCoffee(name, price, coffeeWeight, packagingWeight, coffeeVolume,
+                        packagingVolume, qualityRating);
+        }
+    }
+}
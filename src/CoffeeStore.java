@@ -0,0 +1,512 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A columnar store of coffee products. Instead of one {@link Coffee} object per product, the
+ * store keeps every numeric attribute in its own primitive array and the names in a separate
+ * dictionary, so each product is identified by its row index.
+ * <p>
+ * Scanning a single attribute reads one contiguous array, which makes aggregates such as
+ * {@link #sumTotalWeights()} much faster than walking a {@link CoffeeSet}, and a row takes a
+ * fraction of the memory of a {@code Coffee} plus its {@link Node} and index entry. Rows are
+ * validated with the same rules as the {@code Coffee} setters. Coffees can be imported with
+ * {@link #add(Coffee)} or {@link #addAll(Collection)} and exported with {@link #toCoffee(int)}
+ * or {@link #toCoffeeSet()}.
+ */
+public class CoffeeStore {
+    /** The initial capacity of the columns. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** The prices of the coffee products. */
+    private double[] prices;
+
+    /** The weights of the coffee contents. */
+    private double[] coffeeWeights;
+
+    /** The weights of the packagings. */
+    private double[] packagingWeights;
+
+    /** The volumes of the coffee contents. */
+    private double[] coffeeVolumes;
+
+    /** The volumes of the packagings. */
+    private double[] packagingVolumes;
+
+    /** The quality ratings of the coffee products. */
+    private int[] qualityRatings;
+
+    /** The ordinals of the {@link CoffeeState states} of the coffee products. */
+    private byte[] states;
+
+    /** The dictionary ids of the names of the coffee products. */
+    private int[] nameIds;
+
+    /** The number of rows in the store. */
+    private int size;
+
+    /** The distinct names, indexed by dictionary id. */
+    private final List<String> names;
+
+    /** The dictionary id of each distinct name. */
+    private final Map<String, Integer> nameDictionary;
+
+    /**
+     * Constructs an empty {@code CoffeeStore}.
+     */
+    public CoffeeStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty {@code CoffeeStore} able to hold the specified number of rows without
+     * growing its columns.
+     *
+     * @param capacity the initial number of rows
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public CoffeeStore(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative.");
+        }
+        prices = new double[capacity];
+        coffeeWeights = new double[capacity];
+        packagingWeights = new double[capacity];
+        coffeeVolumes = new double[capacity];
+        packagingVolumes = new double[capacity];
+        qualityRatings = new int[capacity];
+        states = new byte[capacity];
+        nameIds = new int[capacity];
+        names = new ArrayList<>();
+        nameDictionary = new HashMap<>();
+    }
+
+    /**
+     * Constructs a {@code CoffeeStore} holding a row for each coffee of the specified collection,
+     * in iteration order.
+     *
+     * @param coffees the coffees to import
+     */
+    public CoffeeStore(Collection<? extends Coffee> coffees) {
+        this(coffees.size());
+        addAll(coffees);
+    }
+
+    /**
+     * Appends a row with the properties of the specified coffee.
+     *
+     * @param coffee the coffee to import
+     * @return the index of the new row
+     */
+    public int add(Coffee coffee) {
+        return append(coffee.getCoffeeState(), coffee.getName(), coffee.getPrice(), coffee.getCoffeeWeight(),
+                coffee.getPackagingWeight(), coffee.getCoffeeVolume(), coffee.getPackagingVolume(),
+                coffee.getQualityRating());
+    }
+
+    /**
+     * Appends a row for a ground coffee with the specified properties, validated with the rules
+     * of the {@link Coffee} setters.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @return the index of the new row
+     * @throws NullPointerException if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public int add(String name, double price, double coffeeWeight, double packagingWeight,
+                   double coffeeVolume, double packagingVolume, int qualityRating) {
+        return add(CoffeeState.GROUND, name, price, coffeeWeight, packagingWeight, coffeeVolume,
+                packagingVolume, qualityRating);
+    }
+
+    /**
+     * Appends a row with the specified state and properties, validated with the rules of the
+     * {@link Coffee} setters.
+     *
+     * @param state the state the coffee product is sold in
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @return the index of the new row
+     * @throws NullPointerException if the state is null, or if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public int add(CoffeeState state, String name, double price, double coffeeWeight, double packagingWeight,
+                   double coffeeVolume, double packagingVolume, int qualityRating) {
+        return append(Objects.requireNonNull(state, "State cannot be null."), Coffee.checkName(name),
+                Coffee.checkPrice(price),
+                Coffee.checkNonNegative(coffeeWeight, "Coffee weight"),
+                Coffee.checkNonNegative(packagingWeight, "Packaging weight"),
+                Coffee.checkNonNegative(coffeeVolume, "Coffee volume"),
+                Coffee.checkNonNegative(packagingVolume, "Packaging volume"),
+                Coffee.checkQualityRating(qualityRating));
+    }
+
+    /**
+     * Appends a row for each coffee of the specified collection, in iteration order.
+     *
+     * @param coffees the coffees to import
+     */
+    public void addAll(Collection<? extends Coffee> coffees) {
+        ensureCapacity(size + coffees.size());
+        for (Coffee coffee : coffees) {
+            add(coffee);
+        }
+    }
+
+    /**
+     * Appends a row with already validated properties.
+     *
+     * @param state the state of the coffee product
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product
+     * @return the index of the new row
+     */
+    private int append(CoffeeState state, String name, double price, double coffeeWeight,
+                       double packagingWeight, double coffeeVolume, double packagingVolume,
+                       int qualityRating) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        prices[row] = price;
+        coffeeWeights[row] = coffeeWeight;
+        packagingWeights[row] = packagingWeight;
+        coffeeVolumes[row] = coffeeVolume;
+        packagingVolumes[row] = packagingVolume;
+        qualityRatings[row] = qualityRating;
+        states[row] = (byte) state.ordinal();
+        nameIds[row] = internName(name);
+        return row;
+    }
+
+    /**
+     * Returns the dictionary id of the specified name, adding it to the dictionary if needed.
+     *
+     * @param name the name to intern
+     * @return the dictionary id of the name
+     */
+    private int internName(String name) {
+        Integer id = nameDictionary.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameDictionary.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Grows the columns so that they can hold at least the specified number of rows.
+     *
+     * @param capacity the required number of rows
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= prices.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, prices.length + (prices.length >> 1)));
+        prices = Arrays.copyOf(prices, newCapacity);
+        coffeeWeights = Arrays.copyOf(coffeeWeights, newCapacity);
+        packagingWeights = Arrays.copyOf(packagingWeights, newCapacity);
+        coffeeVolumes = Arrays.copyOf(coffeeVolumes, newCapacity);
+        packagingVolumes = Arrays.copyOf(packagingVolumes, newCapacity);
+        qualityRatings = Arrays.copyOf(qualityRatings, newCapacity);
+        states = Arrays.copyOf(states, newCapacity);
+        nameIds = Arrays.copyOf(nameIds, newCapacity);
+    }
+
+    /**
+     * Returns the number of rows in the store.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the store is empty.
+     *
+     * @return {@code true} if the store has no rows; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all rows and names from the store. The columns keep their capacity.
+     */
+    public void clear() {
+        size = 0;
+        names.clear();
+        nameDictionary.clear();
+    }
+
+    /**
+     * Returns the number of distinct names in the store.
+     *
+     * @return the number of distinct names
+     */
+    public int distinctNames() {
+        return names.size();
+    }
+
+    /**
+     * Returns the name of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the name of the coffee product
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public String getName(int row) {
+        return names.get(nameIds[checkRow(row)]);
+    }
+
+    /**
+     * Returns the price of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the price of the coffee product
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getPrice(int row) {
+        return prices[checkRow(row)];
+    }
+
+    /**
+     * Returns the weight of the coffee content in the specified row.
+     *
+     * @param row the row index
+     * @return the coffee weight
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getCoffeeWeight(int row) {
+        return coffeeWeights[checkRow(row)];
+    }
+
+    /**
+     * Returns the weight of the packaging in the specified row.
+     *
+     * @param row the row index
+     * @return the packaging weight
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getPackagingWeight(int row) {
+        return packagingWeights[checkRow(row)];
+    }
+
+    /**
+     * Returns the volume of the coffee content in the specified row.
+     *
+     * @param row the row index
+     * @return the coffee volume
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getCoffeeVolume(int row) {
+        return coffeeVolumes[checkRow(row)];
+    }
+
+    /**
+     * Returns the volume of the packaging in the specified row.
+     *
+     * @param row the row index
+     * @return the packaging volume
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getPackagingVolume(int row) {
+        return packagingVolumes[checkRow(row)];
+    }
+
+    /**
+     * Returns the quality rating of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the quality rating, between 0 and 10
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public int getQualityRating(int row) {
+        return qualityRatings[checkRow(row)];
+    }
+
+    /**
+     * Returns the state of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the state of the coffee product
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public CoffeeState getCoffeeState(int row) {
+        return CoffeeState.ofOrdinal(states[checkRow(row)]);
+    }
+
+    /**
+     * Returns the total weight (coffee + packaging) of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the total weight of the coffee product
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getTotalWeight(int row) {
+        checkRow(row);
+        return coffeeWeights[row] + packagingWeights[row];
+    }
+
+    /**
+     * Returns the total volume (coffee + packaging) of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the total volume of the coffee product
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public double getTotalVolume(int row) {
+        checkRow(row);
+        return coffeeVolumes[row] + packagingVolumes[row];
+    }
+
+    /**
+     * Returns the price-to-weight ratio of the coffee product in the specified row.
+     *
+     * @param row the row index
+     * @return the price-to-weight ratio
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     * @throws ArithmeticException if total weight is zero
+     */
+    public double getPriceWeightRatio(int row) {
+        double totalWeight = getTotalWeight(row);
+        if (totalWeight == 0) {
+            throw new ArithmeticException("Total weight cannot be zero when calculating price/weight ratio.");
+        }
+        return prices[row] / totalWeight;
+    }
+
+    /**
+     * Returns the sum of the prices of all rows.
+     *
+     * @return the total price
+     */
+    public double sumPrices() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += prices[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the total weights of all rows.
+     *
+     * @return the total weight of the store
+     */
+    public double sumTotalWeights() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += coffeeWeights[i] + packagingWeights[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the total volumes of all rows.
+     *
+     * @return the total volume of the store
+     */
+    public double sumTotalVolumes() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += coffeeVolumes[i] + packagingVolumes[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the average quality rating of all rows.
+     *
+     * @return the average quality rating, or {@code NaN} if the store is empty
+     */
+    public double averageQualityRating() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += qualityRatings[i];
+        }
+        return size == 0 ? Double.NaN : (double) sum / size;
+    }
+
+    /**
+     * Returns the number of rows with the specified quality rating.
+     *
+     * @param qualityRating the quality rating to count
+     * @return the number of rows with that rating
+     */
+    public int countByQualityRating(int qualityRating) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (qualityRatings[i] == qualityRating) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates a new {@link Coffee} with the state and properties of the specified row, of the
+     * class matching its state.
+     *
+     * @param row the row index
+     * @return a new coffee
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public Coffee toCoffee(int row) {
+        checkRow(row);
+        return CoffeeState.ofOrdinal(states[row]).newCoffee(names.get(nameIds[row]), prices[row],
+                coffeeWeights[row], packagingWeights[row], coffeeVolumes[row], packagingVolumes[row],
+                qualityRatings[row]);
+    }
+
+    /**
+     * Creates a {@link CoffeeSet} holding a coffee for each row, in row order. Rows with equal
+     * properties collapse into a single element.
+     *
+     * @return a new coffee set
+     */
+    public CoffeeSet toCoffeeSet() {
+        CoffeeSet set = new CoffeeSet(size);
+        for (int i = 0; i < size; i++) {
+            set.add(toCoffee(i));
+        }
+        return set;
+    }
+
+    /**
+     * Checks that the specified row index is in range.
+     *
+     * @param row the row index
+     * @return the row index
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range for size " + size + ".");
+        }
+        return row;
+    }
+}
@@ -0,0 +1,568 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded read-through cache of rendered coffees, keyed by name, over a {@link CoffeeSet}.
+ * <p>
+ * A {@link View} holds the coffee found by {@link CoffeeSet#findByName(String)} together with
+ * its rendered text and derived values, so that popular coffees are rendered once rather than on
+ * every request. The cache registers itself as a {@link CoffeeSetListener} of the set and drops
+ * the view of a name whenever a coffee with that name is added, removed or changed through its
+ * setters, and every view when the set is cleared.
+ * <p>
+ * Eviction follows W-TinyLFU. The cache is split into segments by the hash of the name, each
+ * with its own lock and its own share of the capacity. New views enter a small LRU window
+ * holding 1% of a segment; a view leaving the window is only admitted into the main area if a
+ * {@link FrequencySketch} says its name has been requested more often recently than the name
+ * it would evict, so a burst of one-off requests cannot flush the popular coffees. The main
+ * area is a segmented LRU in which views requested again move from a probation part to a
+ * protected part of 80% of the area.
+ * <p>
+ * Hits are served from a {@link ConcurrentHashMap} without locking; the access is then recorded
+ * in the segment only if its lock is free, and otherwise dropped, as a cache may lose some of its
+ * recency information under contention. Misses load under the monitor of the set, because a
+ * {@code CoffeeSet} is not thread-safe: threads that modify the set concurrently with the cache
+ * must synchronize on it too.
+ */
+public class CoffeeViewCache implements CoffeeSetListener, AutoCloseable {
+    /** The fraction of a segment given to the admission window. */
+    private static final double WINDOW_FRACTION = 0.01;
+
+    /** The fraction of the main area of a segment given to its protected part. */
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    /** The smallest capacity of a segment worth a lock of its own. */
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    /** The set the views are loaded from. */
+    private final CoffeeSet source;
+
+    /** The largest number of views held. */
+    private final int maximumSize;
+
+    /** The views held, keyed by name, for lock-free hits. */
+    private final ConcurrentHashMap<String, View> views;
+
+    /** The segments, each holding the eviction state of the names that hash to it. */
+    private final Segment[] segments;
+
+    /** The number of requests answered from the cache. */
+    private final LongAdder hitCount = new LongAdder();
+
+    /** The number of requests that had to look up the set. */
+    private final LongAdder missCount = new LongAdder();
+
+    /** The number of views evicted to make room, including candidates refused admission. */
+    private final LongAdder evictionCount = new LongAdder();
+
+    /** The number of views leaving the window that were refused admission into the main area. */
+    private final LongAdder rejectionCount = new LongAdder();
+
+    /** The number of views dropped because their coffee was changed or removed. */
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * Constructs an empty {@code CoffeeViewCache} over a set and registers it as a listener of
+     * the set.
+     *
+     * @param source the set the views are loaded from
+     * @param maximumSize the largest number of views held
+     * @throws NullPointerException if the set is null
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    public CoffeeViewCache(CoffeeSet source, int maximumSize) {
+        this.source = Objects.requireNonNull(source, "Source set cannot be null.");
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive.");
+        }
+        this.maximumSize = maximumSize;
+        int wanted = Math.max(1, Math.min(4 * Runtime.getRuntime().availableProcessors(),
+                maximumSize / MIN_SEGMENT_CAPACITY));
+        int segmentCount = Integer.highestOneBit(wanted);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int capacity = maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+        views = new ConcurrentHashMap<>(maximumSize * 4 / 3 + 1);
+        synchronized (source) {
+            source.addListener(this);
+        }
+    }
+
+    /**
+     * Returns the view of the first coffee with the specified name, rendering it if it is not
+     * cached. Names with no coffee are not cached.
+     *
+     * @param name the name of the coffee
+     * @return the view of the coffee, or null if the set has no coffee with that name
+     * @throws NullPointerException if the name is null
+     */
+    public View get(String name) {
+        Objects.requireNonNull(name, "Name cannot be null.");
+        int hash = spread(name.hashCode());
+        Segment segment = segments[hash & (segments.length - 1)];
+        View view = views.get(name);
+        if (view != null) {
+            hitCount.increment();
+            if (segment.lock.tryLock()) {
+                try {
+                    segment.recordHit(name, hash);
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            return view;
+        }
+        missCount.increment();
+        long generation = segment.generation;
+        View loaded;
+        synchronized (source) {
+            List<Coffee> coffees = source.findByName(name);
+            if (coffees.isEmpty()) {
+                return null;
+            }
+            loaded = new View(coffees.get(0));
+        }
+        segment.lock.lock();
+        try {
+            return segment.install(name, hash, loaded, generation);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the view of the specified name, if it is cached.
+     *
+     * @param name the name whose view to drop
+     * @throws NullPointerException if the name is null
+     */
+    public void invalidate(String name) {
+        Objects.requireNonNull(name, "Name cannot be null.");
+        int hash = spread(name.hashCode());
+        Segment segment = segments[hash & (segments.length - 1)];
+        segment.lock.lock();
+        try {
+            segment.generation++;
+            if (segment.remove(name)) {
+                invalidationCount.increment();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached view. The frequencies of the names are kept.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.generation++;
+                invalidationCount.add(segment.clear());
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops listening to the set. The cached views are dropped and no view is cached after this.
+     */
+    @Override
+    public void close() {
+        synchronized (source) {
+            source.removeListener(this);
+        }
+        invalidateAll();
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.closed = true;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void added(Coffee coffee) {
+        invalidate(coffee.getName());
+    }
+
+    @Override
+    public void removed(Coffee coffee) {
+        invalidate(coffee.getName());
+    }
+
+    @Override
+    public void cleared() {
+        invalidateAll();
+    }
+
+    @Override
+    public void updated(Coffee before, Coffee after, CoffeeField field) {
+        invalidate(before.getName());
+        if (field == CoffeeField.NAME) {
+            invalidate(after.getName());
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code so that the low bits select segments evenly.
+     *
+     * @param hashCode the hash code of a name
+     * @return the spread hash
+     */
+    private static int spread(int hashCode) {
+        int hash = hashCode * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the number of cached views.
+     *
+     * @return the number of views
+     */
+    public int size() {
+        return views.size();
+    }
+
+    /**
+     * Returns the largest number of views held.
+     *
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of requests that had to look up the set, including those for names
+     * with no coffee.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the fraction of the requests answered from the cache.
+     *
+     * @return the hit ratio, or 0 if nothing has been requested
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long requests = hits + missCount.sum();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the number of views evicted to make room for others, including the views refused
+     * admission into the main area.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the number of views leaving the admission window that were evicted because their
+     * names were requested less often than the views they would have replaced.
+     *
+     * @return the number of rejected admissions
+     */
+    public long getRejectionCount() {
+        return rejectionCount.sum();
+    }
+
+    /**
+     * Returns the number of views dropped because their coffee was added, changed or removed,
+     * or because the set was cleared.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    /**
+     * Returns a string representation of the cache with its size and statistics.
+     *
+     * @return a string describing the cache
+     */
+    @Override
+    public String toString() {
+        return String.format("CoffeeViewCache{size=%d/%d, hitRatio=%.3f, hits=%d, misses=%d, evictions=%d, "
+                        + "rejections=%d, invalidations=%d}", size(), maximumSize, getHitRatio(), getHitCount(),
+                getMissCount(), getEvictionCount(), getRejectionCount(), getInvalidationCount());
+    }
+
+    /**
+     * A coffee together with its rendered text and derived values, computed once when it is
+     * loaded into the cache.
+     */
+    public static final class View {
+        /** The coffee. */
+        private final Coffee coffee;
+
+        /** The rendered text of the coffee. */
+        private final String text;
+
+        /** The total weight of the coffee. */
+        private final double totalWeight;
+
+        /** The price-to-weight ratio of the coffee, or NaN if its total weight is zero. */
+        private final double priceWeightRatio;
+
+        /**
+         * Renders a coffee.
+         *
+         * @param coffee the coffee
+         */
+        private View(Coffee coffee) {
+            this.coffee = coffee;
+            this.totalWeight = coffee.getTotalWeight();
+            this.priceWeightRatio = totalWeight == 0 ? Double.NaN : coffee.getPriceWeightRatio();
+            this.text = totalWeight == 0 ? coffee.getName() : coffee.toString();
+        }
+
+        /**
+         * Returns the coffee of the view, as stored in the set.
+         *
+         * @return the coffee
+         */
+        public Coffee getCoffee() {
+            return coffee;
+        }
+
+        /**
+         * Returns the text of {@link Coffee#toString()} for the coffee, or its name if its total
+         * weight is zero and it cannot be rendered.
+         *
+         * @return the rendered text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the total weight of the coffee.
+         *
+         * @return the total weight
+         */
+        public double getTotalWeight() {
+            return totalWeight;
+        }
+
+        /**
+         * Returns the price-to-weight ratio of the coffee.
+         *
+         * @return the price-to-weight ratio, or NaN if the total weight is zero
+         */
+        public double getPriceWeightRatio() {
+            return priceWeightRatio;
+        }
+
+        /**
+         * Returns the rendered text of the coffee.
+         *
+         * @return the rendered text
+         */
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * The eviction state of the names hashing to one segment, guarded by its lock. Each part is
+     * an access-ordered map whose first entry is the least recently used.
+     */
+    private final class Segment {
+        /** The lock guarding the segment and the entries of {@link #views} it holds. */
+        final ReentrantLock lock = new ReentrantLock();
+
+        /** The recent frequencies of the names requested from the segment. */
+        final FrequencySketch sketch;
+
+        /** The views admitted most recently, in LRU order. */
+        final LinkedHashMap<String, View> window = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** The views of the main area requested once since their admission, in LRU order. */
+        final LinkedHashMap<String, View> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** The views of the main area requested again since their admission, in LRU order. */
+        final LinkedHashMap<String, View> protectedViews = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** The largest number of views in the window. */
+        final int windowCapacity;
+
+        /** The largest number of views in the main area. */
+        final int mainCapacity;
+
+        /** The largest number of views in the protected part of the main area. */
+        final int protectedCapacity;
+
+        /** Incremented by every invalidation, so that a load racing with one is not installed. */
+        volatile long generation;
+
+        /** Whether the cache has been closed. */
+        boolean closed;
+
+        /**
+         * Constructs an empty segment.
+         *
+         * @param capacity the largest number of views in the segment
+         */
+        Segment(int capacity) {
+            windowCapacity = Math.max(1, (int) (capacity * WINDOW_FRACTION));
+            mainCapacity = Math.max(0, capacity - windowCapacity);
+            protectedCapacity = (int) (mainCapacity * PROTECTED_FRACTION);
+            sketch = new FrequencySketch(capacity);
+        }
+
+        /**
+         * Records a request for a cached view, promoting it from probation to the protected part.
+         *
+         * @param name the name requested
+         * @param hash the spread hash of the name
+         */
+        void recordHit(String name, int hash) {
+            sketch.increment(hash);
+            if (window.get(name) != null || protectedViews.get(name) != null) {
+                return;
+            }
+            View view = probation.remove(name);
+            if (view != null) {
+                protectedViews.put(name, view);
+                if (protectedViews.size() > protectedCapacity) {
+                    Map.Entry<String, View> demoted = eldest(protectedViews);
+                    protectedViews.remove(demoted.getKey());
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+        }
+
+        /**
+         * Installs a loaded view in the window unless the name was invalidated since the load
+         * started, and evicts views if the segment is over its capacity.
+         *
+         * @param name the name loaded
+         * @param hash the spread hash of the name
+         * @param view the loaded view
+         * @param startGeneration the generation read before the load
+         * @return the view cached for the name, which may have been installed by another thread
+         */
+        View install(String name, int hash, View view, long startGeneration) {
+            sketch.increment(hash);
+            View current = views.get(name);
+            if (current != null) {
+                return current;
+            }
+            if (closed || generation != startGeneration) {
+                return view;
+            }
+            views.put(name, view);
+            window.put(name, view);
+            if (window.size() > windowCapacity) {
+                Map.Entry<String, View> candidate = eldest(window);
+                window.remove(candidate.getKey());
+                admit(candidate.getKey(), candidate.getValue());
+            }
+            return view;
+        }
+
+        /**
+         * Moves a view leaving the window into the probation part of the main area if there is
+         * room, or if its name is more frequent than the name it would evict.
+         *
+         * @param name the name of the candidate
+         * @param view the view of the candidate
+         */
+        private void admit(String name, View view) {
+            if (probation.size() + protectedViews.size() < mainCapacity) {
+                probation.put(name, view);
+                return;
+            }
+            Map<String, View> victims = probation.isEmpty() ? protectedViews : probation;
+            if (victims.isEmpty()) {
+                views.remove(name);
+                evictionCount.increment();
+                rejectionCount.increment();
+                return;
+            }
+            Map.Entry<String, View> victim = eldest(victims);
+            if (sketch.frequency(spread(name.hashCode())) > sketch.frequency(spread(victim.getKey().hashCode()))) {
+                victims.remove(victim.getKey());
+                views.remove(victim.getKey());
+                probation.put(name, view);
+            } else {
+                views.remove(name);
+                rejectionCount.increment();
+            }
+            evictionCount.increment();
+        }
+
+        /**
+         * Removes the view of a name from the segment.
+         *
+         * @param name the name
+         * @return {@code true} if a view was removed; {@code false} otherwise
+         */
+        boolean remove(String name) {
+            if (window.remove(name) == null && probation.remove(name) == null
+                    && protectedViews.remove(name) == null) {
+                return false;
+            }
+            views.remove(name);
+            return true;
+        }
+
+        /**
+         * Removes every view of the segment.
+         *
+         * @return the number of views removed
+         */
+        int clear() {
+            int removed = 0;
+            for (Map<String, View> part : List.of(window, probation, protectedViews)) {
+                for (Iterator<String> it = part.keySet().iterator(); it.hasNext(); ) {
+                    views.remove(it.next());
+                    it.remove();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Returns the least recently used entry of a part.
+         *
+         * @param part a non-empty part of the segment
+         * @return its first entry
+         */
+        private Map.Entry<String, View> eldest(Map<String, View> part) {
+            return part.entrySet().iterator().next();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe implementation of a {@link Set} interface for {@link Coffee} objects.
+ * <p>
+ * The set is backed by a {@link ConcurrentHashMap}: {@code contains} never blocks, and
+ * {@code add} and {@code remove} only lock the hash bin they touch, so concurrent callers scale
+ * across cores instead of serializing on a global lock. Iterators are weakly consistent: they
+ * never throw {@link java.util.ConcurrentModificationException}, traverse each element at most
+ * once, and may or may not reflect modifications made after they were created. Unlike
+ * {@link CoffeeSet}, the iteration order is unspecified. Null elements are not permitted.
+ * <p>
+ * The set does not track its elements either: coffees must not be modified while they are in
+ * the set, or they can no longer be found; {@link Coffee#freeze()} can be used to enforce this.
+ */
+public class ConcurrentCoffeeSet implements Set<Coffee> {
+    /** The concurrent set holding the elements. */
+    private final Set<Coffee> elements;
+
+    /**
+     * Constructs an empty {@code ConcurrentCoffeeSet}.
+     */
+    public ConcurrentCoffeeSet() {
+        elements = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Constructs an empty {@code ConcurrentCoffeeSet} sized to hold the specified number of
+     * elements without resizing.
+     *
+     * @param expectedSize the number of elements the set is expected to hold
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public ConcurrentCoffeeSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative.");
+        }
+        elements = ConcurrentHashMap.newKeySet(expectedSize);
+    }
+
+    /**
+     * Constructs a {@code ConcurrentCoffeeSet} and adds all elements from the specified collection.
+     *
+     * @param coffees the collection of coffee elements to add
+     */
+    public ConcurrentCoffeeSet(Collection<? extends Coffee> coffees) {
+        this(coffees.size());
+        addAll(coffees);
+    }
+
+    /**
+     * Adds a {@code Coffee} element to the set.
+     *
+     * @param coffee the coffee element to be added
+     * @return {@code true} if the element was added successfully; {@code false} if the element already exists
+     * @throws NullPointerException if the coffee is null
+     */
+    @Override
+    public boolean add(Coffee coffee) {
+        return elements.add(Objects.requireNonNull(coffee, "Coffee cannot be null."));
+    }
+
+    /**
+     * Removes the specified object from the set if it is present.
+     *
+     * @param o the object to be removed
+     * @return {@code true} if the object was removed; {@code false} otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        return o != null && elements.remove(o);
+    }
+
+    /**
+     * Checks if the set contains the specified object.
+     *
+     * @param o the object to check for
+     * @return {@code true} if the object is present; {@code false} otherwise
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o != null && elements.contains(o);
+    }
+
+    /**
+     * Returns the number of elements in the set. The result is only an estimate while other
+     * threads are modifying the set.
+     *
+     * @return the size of the set
+     */
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return {@code true} if the set is empty; {@code false} otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in the set.
+     *
+     * @return an iterator over the elements in the set
+     */
+    @Override
+    public Iterator<Coffee> iterator() {
+        return elements.iterator();
+    }
+
+    /**
+     * Removes all elements from the set.
+     */
+    @Override
+    public void clear() {
+        elements.clear();
+    }
+
+    /**
+     * Checks if the set contains all elements from the specified collection.
+     *
+     * @param c the collection to check
+     * @return {@code true} if all elements are present; {@code false} otherwise
+     */
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all elements from the specified collection to the set.
+     *
+     * @param c the collection of elements to add
+     * @return {@code true} if any elements were added; {@code false} otherwise
+     */
+    @Override
+    public boolean addAll(Collection<? extends Coffee> c) {
+        boolean changed = false;
+        for (Coffee coffee : c) {
+            if (add(coffee)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes all elements from the specified collection from the set.
+     *
+     * @param c the collection of elements to remove
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Retains only the elements in the set that are contained in the specified collection.
+     *
+     * @param c the collection of elements to retain
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return elements.retainAll(c);
+    }
+
+    /**
+     * Returns an array containing all elements in the set.
+     *
+     * @return an array containing all elements in the set
+     */
+    @Override
+    public Object[] toArray() {
+        return elements.toArray();
+    }
+
+    /**
+     * Returns an array containing all elements in the set, using the specified array
+     * if it is large enough, or allocating a new array otherwise.
+     *
+     * @param a the array into which the elements will be stored
+     * @param <T> the type of the array elements
+     * @return an array containing all elements in the set
+     */
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return elements.toArray(a);
+    }
+
+    /**
+     * Compares the specified object with this set for equality.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the object is a set with the same elements; {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || elements.equals(o);
+    }
+
+    /**
+     * Returns the hash code of the set, the sum of the hash codes of its elements.
+     *
+     * @return the hash code of the set
+     */
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+    /**
+     * Returns a string representation of the set.
+     *
+     * @return a string representation of the set
+     */
+    @Override
+    public String toString() {
+        return elements.toString();
+    }
+}
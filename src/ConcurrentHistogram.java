@@ -0,0 +1,157 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values, such as latencies in nanoseconds or numbers of
+ * nodes, that many threads can record into without locking, in the manner of HdrHistogram.
+ * <p>
+ * Values below 64 are counted exactly. Larger values are counted in log-linear buckets: each
+ * power of two is split into 32 buckets of equal width, so every percentile is returned within
+ * about 3% of a recorded value while the whole range of {@code long} fits in under 2,000
+ * buckets. Recording a value costs one atomic increment of its bucket and one adder update;
+ * the count is summed from the buckets when it is read.
+ * Reads are not atomic with respect to concurrent recording, but never lose a value once the
+ * recording threads have finished.
+ */
+public class ConcurrentHistogram {
+    /** The number of bits of a value kept exactly within its power of two. */
+    private static final int SUB_BUCKET_BITS = 6;
+
+    /** The number of values counted exactly, and the number of buckets below the first octave. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The number of buckets per power of two above {@link #SUB_BUCKET_COUNT}. */
+    private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    /** The number of buckets, enough for every non-negative long. */
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF_COUNT;
+
+    /** The number of values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** The sum of the values recorded. */
+    private final LongAdder sum = new LongAdder();
+
+    /** The largest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the index of the bucket counting a value.
+     *
+     * @param value the non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    /**
+     * Returns the largest value counted by a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the largest value of the bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKET_COUNT) / HALF_COUNT + 1;
+        long lowest = (long) ((bucket - SUB_BUCKET_COUNT) % HALF_COUNT + HALF_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return the mean, or 0 if no value has been recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the largest value, or 0 if no value has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the specified percentile of the values recorded, within the
+     * precision of the buckets.
+     *
+     * @param percentile the percentile, between 0 and 100 inclusive; 50 is the median
+     * @return the percentile, or 0 if no value has been recorded
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100
+     */
+    public long getPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a string representation of the histogram with its count, mean and percentiles.
+     *
+     * @return a string describing the histogram
+     */
+    @Override
+    public String toString() {
+        return String.format("ConcurrentHistogram{count=%d, mean=%.1f, p50=%d, p99=%d, p99.9=%d, max=%d}",
+                getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9), getMax());
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * A count-min sketch estimating how often each key has been seen recently, in the manner of the
+ * TinyLFU admission filter of Caffeine.
+ * <p>
+ * Each key increments four 4-bit counters chosen by four hashes of its hash code, and its
+ * frequency is the smallest of them, so collisions can only overestimate a frequency. Counters
+ * saturate at 15, which is enough to compare a popular key against an unpopular one. To keep
+ * the estimates recent, every counter is halved once ten times as many increments as the
+ * sketch is sized for have been made. The sketch uses one 64-bit word of counters per expected
+ * key, rounded up to a power of two, and is not thread-safe.
+ */
+public class FrequencySketch {
+    /** The seeds of the four hashes, one per row of counters. */
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /** The mask keeping the low three bits of every 4-bit counter of a word after a shift. */
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    /** The largest value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** The counters, sixteen per word. */
+    private final long[] table;
+
+    /** The number of increments after which every counter is halved. */
+    private final int sampleSize;
+
+    /** The number of increments since the counters were last halved. */
+    private int size;
+
+    /**
+     * Constructs an empty {@code FrequencySketch} sized for the specified number of keys.
+     *
+     * @param expectedKeys the number of distinct keys whose frequencies should be told apart
+     * @throws IllegalArgumentException if the expected number of keys is negative
+     */
+    public FrequencySketch(int expectedKeys) {
+        if (expectedKeys < 0) {
+            throw new IllegalArgumentException("Expected number of keys cannot be negative.");
+        }
+        int length = Integer.highestOneBit(Math.max(4, Math.min(expectedKeys, 1 << 26)) - 1) << 1;
+        table = new long[length];
+        sampleSize = (int) Math.min(10L * Math.max(expectedKeys, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records an occurrence of a key.
+     *
+     * @param hashCode the hash code of the key
+     */
+    public void increment(int hashCode) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = counterIndex(hashCode, i);
+            int shift = (index & 15) << 2;
+            int word = index >>> 4;
+            if (((table[word] >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                table[word] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++size >= sampleSize) {
+            halve();
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of a key.
+     *
+     * @param hashCode the hash code of the key
+     * @return the estimated frequency, between 0 and 15
+     */
+    public int frequency(int hashCode) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = counterIndex(hashCode, i);
+            int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & MAX_COUNT);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Returns the index of the counter of a key in the specified row.
+     *
+     * @param hashCode the hash code of the key
+     * @param row the row, between 0 and 3
+     * @return the index of the counter among all the counters of the table
+     */
+    private int counterIndex(int hashCode, int row) {
+        long hash = (hashCode + SEEDS[row]) * SEEDS[row];
+        hash += hash >>> 32;
+        return (int) hash & ((table.length << 4) - 1);
+    }
+
+    /**
+     * Halves every counter, so that keys which are no longer seen lose their frequency.
+     */
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        size /= 2;
+    }
+
+    /**
+     * Clears every counter.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+}
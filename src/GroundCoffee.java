@@ -0,0 +1,25 @@
+/**
+ * Represents a ground coffee product. A plain {@link Coffee} is ground as well, so a
+ * {@code GroundCoffee} is equal to a plain coffee with the same properties.
+ */
+public final class GroundCoffee extends Coffee {
+    /**
+     * Constructs a new GroundCoffee object with the specified properties.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @throws NullPointerException if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public GroundCoffee(String name, double price, double coffeeWeight, double packagingWeight,
+                        double coffeeVolume, double packagingVolume, int qualityRating) {
+        super(CoffeeState.GROUND, name, price, coffeeWeight, packagingWeight, coffeeVolume, packagingVolume,
+                qualityRating);
+    }
+}
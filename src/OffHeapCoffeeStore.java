@@ -0,0 +1,704 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A store of coffee products kept outside the Java heap, for catalogues too large to hold as
+ * {@link Coffee} objects without long garbage collection pauses.
+ * <p>
+ * Every product is a fixed-size row in a chunk of direct memory, and its UTF-8 name is appended
+ * to separate name chunks, located through an off-heap name offset table. Membership is answered
+ * by an off-heap open-addressing hash index of row numbers, so the store holds no duplicate
+ * rows, like a set. The heap only holds one small buffer object per chunk, so heap use stays
+ * flat however many rows are added; the direct memory is released when the store becomes
+ * unreachable. Rows are read through a reusable {@link Cursor} that exposes the getters of
+ * {@code Coffee} without creating objects. Rows are validated with the same rules as the
+ * {@code Coffee} setters. The store is not thread-safe.
+ */
+public class OffHeapCoffeeStore {
+    /** The size of a row in bytes. */
+    private static final int ROW_SIZE = 48;
+
+    /** The offset of the price within a row. */
+    private static final int PRICE = 0;
+
+    /** The offset of the coffee weight within a row. */
+    private static final int COFFEE_WEIGHT = 8;
+
+    /** The offset of the packaging weight within a row. */
+    private static final int PACKAGING_WEIGHT = 16;
+
+    /** The offset of the coffee volume within a row. */
+    private static final int COFFEE_VOLUME = 24;
+
+    /** The offset of the packaging volume within a row. */
+    private static final int PACKAGING_VOLUME = 32;
+
+    /** The offset of the quality rating, a short, within a row. */
+    private static final int QUALITY_RATING = 40;
+
+    /** The offset of the ordinal of the {@link CoffeeState}, a short, within a row. */
+    private static final int STATE = 42;
+
+    /** The offset of the length of the UTF-8 name within a row. */
+    private static final int NAME_LENGTH = 44;
+
+    /** The base two logarithm of the number of rows, name offsets or index slots in a chunk. */
+    private static final int CHUNK_SHIFT = 16;
+
+    /** The number of rows, name offsets or index slots in a chunk. */
+    private static final int CHUNK_ENTRIES = 1 << CHUNK_SHIFT;
+
+    /** The mask extracting the position of an entry within its chunk. */
+    private static final int CHUNK_MASK = CHUNK_ENTRIES - 1;
+
+    /** The size of a name chunk in bytes, and so the largest encoded name. */
+    private static final int NAME_CHUNK_SIZE = 1 << 22;
+
+    /** The size of an index slot in bytes: the hash code followed by the row number plus one. */
+    private static final int SLOT_SIZE = 8;
+
+    /** The fraction of the index slots that may be occupied before the index grows. */
+    private static final double INDEX_LOAD_FACTOR = 0.7;
+
+    /** The largest number of rows, bounded by the largest index of 2<sup>30</sup> slots. */
+    private static final int MAX_ROWS = (int) ((1 << 30) * INDEX_LOAD_FACTOR);
+
+    /** The chunks of rows. */
+    private ByteBuffer[] rowChunks;
+
+    /** The chunks of the name offset table, holding the offset of each row's name as a long. */
+    private ByteBuffer[] nameOffsetChunks;
+
+    /** The chunks of UTF-8 name bytes. */
+    private ByteBuffer[] nameChunks;
+
+    /** The number of name chunks in use. */
+    private int nameChunkCount;
+
+    /** The number of bytes used in the last name chunk. */
+    private int nameChunkUsed;
+
+    /** The chunks of index slots. */
+    private ByteBuffer[] indexChunks;
+
+    /** The number of index slots minus one; the number of slots is a power of two. */
+    private int indexMask;
+
+    /** The number of rows in the store. */
+    private int size;
+
+    /**
+     * Constructs an empty {@code OffHeapCoffeeStore}.
+     */
+    public OffHeapCoffeeStore() {
+        rowChunks = new ByteBuffer[1];
+        nameOffsetChunks = new ByteBuffer[1];
+        nameChunks = new ByteBuffer[1];
+        indexChunks = allocateIndex(CHUNK_ENTRIES);
+        indexMask = CHUNK_ENTRIES - 1;
+    }
+
+    /**
+     * Constructs an {@code OffHeapCoffeeStore} holding a row for each distinct coffee of the
+     * specified collection, in iteration order.
+     *
+     * @param coffees the coffees to import
+     */
+    public OffHeapCoffeeStore(Collection<? extends Coffee> coffees) {
+        this();
+        addAll(coffees);
+    }
+
+    /**
+     * Allocates a direct buffer in the native byte order.
+     *
+     * @param capacity the capacity in bytes
+     * @return the new buffer
+     */
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Allocates the zeroed chunks of an index with the specified number of slots.
+     *
+     * @param slots the number of slots, a power of two no smaller than a chunk
+     * @return the chunks
+     */
+    private static ByteBuffer[] allocateIndex(int slots) {
+        ByteBuffer[] chunks = new ByteBuffer[slots >>> CHUNK_SHIFT];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = allocate(CHUNK_ENTRIES * SLOT_SIZE);
+        }
+        return chunks;
+    }
+
+    /**
+     * Appends a row with the properties of the specified coffee, unless an equal row is already
+     * stored.
+     *
+     * @param coffee the coffee to import
+     * @return the index of the new row, or -1 if an equal row is already stored
+     */
+    public int add(Coffee coffee) {
+        return append(coffee.getCoffeeState(), coffee.getName(), coffee.getPrice(), coffee.getCoffeeWeight(),
+                coffee.getPackagingWeight(), coffee.getCoffeeVolume(), coffee.getPackagingVolume(),
+                coffee.getQualityRating());
+    }
+
+    /**
+     * Appends a row for a ground coffee with the specified properties, validated with the rules
+     * of the {@link Coffee} setters, unless an equal row is already stored.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @return the index of the new row, or -1 if an equal row is already stored
+     * @throws NullPointerException if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public int add(String name, double price, double coffeeWeight, double packagingWeight,
+                   double coffeeVolume, double packagingVolume, int qualityRating) {
+        return append(CoffeeState.GROUND, Coffee.checkName(name), Coffee.checkPrice(price),
+                Coffee.checkNonNegative(coffeeWeight, "Coffee weight"),
+                Coffee.checkNonNegative(packagingWeight, "Packaging weight"),
+                Coffee.checkNonNegative(coffeeVolume, "Coffee volume"),
+                Coffee.checkNonNegative(packagingVolume, "Packaging volume"),
+                Coffee.checkQualityRating(qualityRating));
+    }
+
+    /**
+     * Appends a row for each coffee of the specified collection that is not already stored, in
+     * iteration order.
+     *
+     * @param coffees the coffees to import
+     */
+    public void addAll(Collection<? extends Coffee> coffees) {
+        for (Coffee coffee : coffees) {
+            add(coffee);
+        }
+    }
+
+    /**
+     * Appends a row with already validated properties, unless an equal row is already stored.
+     *
+     * @param state the state of the coffee product
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product
+     * @return the index of the new row, or -1 if an equal row is already stored
+     * @throws IllegalArgumentException if the encoded name is longer than a name chunk
+     * @throws IllegalStateException if the store is full
+     */
+    private int append(CoffeeState state, String name, double price, double coffeeWeight,
+                       double packagingWeight, double coffeeVolume, double packagingVolume,
+                       int qualityRating) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = Coffee.hash(name, price, coffeeWeight, packagingWeight, coffeeVolume, packagingVolume,
+                qualityRating);
+        long slot = findSlot(hash, state, nameBytes, price, coffeeWeight, packagingWeight, coffeeVolume,
+                packagingVolume, qualityRating);
+        if (slotRow(slot) >= 0) {
+            return -1;
+        }
+        if (nameBytes.length > NAME_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Name is too long to be stored off-heap.");
+        }
+        if (size == MAX_ROWS) {
+            throw new IllegalStateException("OffHeapCoffeeStore cannot hold more rows.");
+        }
+
+        int row = size;
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk == rowChunks.length) {
+            rowChunks = Arrays.copyOf(rowChunks, chunk * 2);
+            nameOffsetChunks = Arrays.copyOf(nameOffsetChunks, chunk * 2);
+        }
+        if (rowChunks[chunk] == null) {
+            rowChunks[chunk] = allocate(CHUNK_ENTRIES * ROW_SIZE);
+            nameOffsetChunks[chunk] = allocate(CHUNK_ENTRIES * Long.BYTES);
+        }
+        ByteBuffer rows = rowChunks[chunk];
+        int base = (row & CHUNK_MASK) * ROW_SIZE;
+        rows.putDouble(base + PRICE, price);
+        rows.putDouble(base + COFFEE_WEIGHT, coffeeWeight);
+        rows.putDouble(base + PACKAGING_WEIGHT, packagingWeight);
+        rows.putDouble(base + COFFEE_VOLUME, coffeeVolume);
+        rows.putDouble(base + PACKAGING_VOLUME, packagingVolume);
+        rows.putShort(base + QUALITY_RATING, (short) qualityRating);
+        rows.putShort(base + STATE, (short) state.ordinal());
+        rows.putInt(base + NAME_LENGTH, nameBytes.length);
+        nameOffsetChunks[chunk].putLong((row & CHUNK_MASK) * Long.BYTES, appendName(nameBytes));
+
+        size++;
+        setSlot(slot, hash, row);
+        if (size > (indexMask + 1) * INDEX_LOAD_FACTOR) {
+            growIndex();
+        }
+        return row;
+    }
+
+    /**
+     * Appends an encoded name to the name chunks. A name never spans two chunks.
+     *
+     * @param nameBytes the UTF-8 bytes of the name
+     * @return the offset of the name
+     */
+    private long appendName(byte[] nameBytes) {
+        if (nameChunkCount == 0 || nameChunkUsed + nameBytes.length > NAME_CHUNK_SIZE) {
+            if (nameChunkCount == nameChunks.length) {
+                nameChunks = Arrays.copyOf(nameChunks, nameChunkCount * 2);
+            }
+            nameChunks[nameChunkCount++] = allocate(NAME_CHUNK_SIZE);
+            nameChunkUsed = 0;
+        }
+        ByteBuffer chunk = nameChunks[nameChunkCount - 1];
+        chunk.put(nameChunkUsed, nameBytes);
+        long offset = (long) (nameChunkCount - 1) * NAME_CHUNK_SIZE + nameChunkUsed;
+        nameChunkUsed += nameBytes.length;
+        return offset;
+    }
+
+    /**
+     * Returns the index slot holding the row with the specified properties, or the empty slot
+     * where it would be inserted.
+     *
+     * @param hash the hash code of the properties, as computed by {@link Coffee#hash}
+     * @param state the state
+     * @param nameBytes the UTF-8 bytes of the name
+     * @param price the price
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating
+     * @return the slot number
+     */
+    private long findSlot(int hash, CoffeeState state, byte[] nameBytes, double price, double coffeeWeight,
+                          double packagingWeight, double coffeeVolume, double packagingVolume,
+                          int qualityRating) {
+        for (int slot = home(hash); ; slot = (slot + 1) & indexMask) {
+            int row = slotRow(slot);
+            if (row < 0) {
+                return slot;
+            }
+            if (slotHash(slot) == hash
+                    && rowEquals(row, state, nameBytes, price, coffeeWeight, packagingWeight, coffeeVolume,
+                    packagingVolume, qualityRating)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the home slot of a hash code.
+     *
+     * @param hash the hash code
+     * @return the first slot to probe
+     */
+    private int home(int hash) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & indexMask;
+    }
+
+    /**
+     * Returns the hash code stored in an index slot.
+     *
+     * @param slot the slot number
+     * @return the hash code
+     */
+    private int slotHash(long slot) {
+        return indexChunks[(int) (slot >>> CHUNK_SHIFT)].getInt((int) (slot & CHUNK_MASK) * SLOT_SIZE);
+    }
+
+    /**
+     * Returns the row referenced by an index slot.
+     *
+     * @param slot the slot number
+     * @return the row index, or -1 if the slot is empty
+     */
+    private int slotRow(long slot) {
+        return indexChunks[(int) (slot >>> CHUNK_SHIFT)].getInt((int) (slot & CHUNK_MASK) * SLOT_SIZE + 4) - 1;
+    }
+
+    /**
+     * Stores a row reference in an index slot.
+     *
+     * @param slot the slot number
+     * @param hash the hash code of the row
+     * @param row the row index
+     */
+    private void setSlot(long slot, int hash, int row) {
+        ByteBuffer chunk = indexChunks[(int) (slot >>> CHUNK_SHIFT)];
+        int offset = (int) (slot & CHUNK_MASK) * SLOT_SIZE;
+        chunk.putInt(offset, hash);
+        chunk.putInt(offset + 4, row + 1);
+    }
+
+    /**
+     * Doubles the index and reinserts every row reference using its stored hash code.
+     */
+    private void growIndex() {
+        ByteBuffer[] oldChunks = indexChunks;
+        int oldSlots = indexMask + 1;
+        indexChunks = allocateIndex(oldSlots << 1);
+        indexMask = (oldSlots << 1) - 1;
+        for (ByteBuffer chunk : oldChunks) {
+            for (int offset = 0; offset < CHUNK_ENTRIES * SLOT_SIZE; offset += SLOT_SIZE) {
+                int row = chunk.getInt(offset + 4) - 1;
+                if (row >= 0) {
+                    int hash = chunk.getInt(offset);
+                    int slot = home(hash);
+                    while (slotRow(slot) >= 0) {
+                        slot = (slot + 1) & indexMask;
+                    }
+                    setSlot(slot, hash, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the specified row has the specified properties.
+     *
+     * @param row the row index
+     * @param state the state
+     * @param nameBytes the UTF-8 bytes of the name
+     * @param price the price
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating
+     * @return {@code true} if every property is equal; {@code false} otherwise
+     */
+    private boolean rowEquals(int row, CoffeeState state, byte[] nameBytes, double price, double coffeeWeight,
+                              double packagingWeight, double coffeeVolume, double packagingVolume,
+                              int qualityRating) {
+        ByteBuffer rows = rowChunks[row >>> CHUNK_SHIFT];
+        int base = (row & CHUNK_MASK) * ROW_SIZE;
+        if (rows.getShort(base + QUALITY_RATING) != qualityRating
+                || rows.getShort(base + STATE) != state.ordinal()
+                || rows.getInt(base + NAME_LENGTH) != nameBytes.length
+                || Double.compare(rows.getDouble(base + PRICE), price) != 0
+                || Double.compare(rows.getDouble(base + COFFEE_WEIGHT), coffeeWeight) != 0
+                || Double.compare(rows.getDouble(base + PACKAGING_WEIGHT), packagingWeight) != 0
+                || Double.compare(rows.getDouble(base + COFFEE_VOLUME), coffeeVolume) != 0
+                || Double.compare(rows.getDouble(base + PACKAGING_VOLUME), packagingVolume) != 0) {
+            return false;
+        }
+        long offset = nameOffset(row);
+        ByteBuffer names = nameChunks[(int) (offset / NAME_CHUNK_SIZE)];
+        int position = (int) (offset % NAME_CHUNK_SIZE);
+        for (int i = 0; i < nameBytes.length; i++) {
+            if (names.get(position + i) != nameBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the name of the specified row from the name offset table.
+     *
+     * @param row the row index
+     * @return the offset of the name
+     */
+    private long nameOffset(int row) {
+        return nameOffsetChunks[row >>> CHUNK_SHIFT].getLong((row & CHUNK_MASK) * Long.BYTES);
+    }
+
+    /**
+     * Returns the row holding a coffee equal to the specified one.
+     *
+     * @param coffee the coffee to look for
+     * @return the row index, or -1 if no such row is stored
+     */
+    public int indexOf(Coffee coffee) {
+        if (coffee == null) {
+            return -1;
+        }
+        long slot = findSlot(coffee.hashCode(), coffee.getCoffeeState(),
+                coffee.getName().getBytes(StandardCharsets.UTF_8), coffee.getPrice(),
+                coffee.getCoffeeWeight(), coffee.getPackagingWeight(), coffee.getCoffeeVolume(),
+                coffee.getPackagingVolume(), coffee.getQualityRating());
+        return slotRow(slot);
+    }
+
+    /**
+     * Checks if the store holds a row equal to the specified coffee.
+     *
+     * @param coffee the coffee to look for
+     * @return {@code true} if such a row is stored; {@code false} otherwise
+     */
+    public boolean contains(Coffee coffee) {
+        return indexOf(coffee) >= 0;
+    }
+
+    /**
+     * Returns the number of rows in the store.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the store is empty.
+     *
+     * @return {@code true} if the store has no rows; {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new cursor. It must be positioned with {@link Cursor#moveTo(int)} before its
+     * getters are called.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Performs the given action for each row, in row order. The action receives the same
+     * cursor every time, moved to the current row, so it must not keep it.
+     *
+     * @param action the action to be performed for each row
+     */
+    public void forEach(Consumer<? super Cursor> action) {
+        Objects.requireNonNull(action);
+        Cursor cursor = new Cursor();
+        for (int row = 0; row < size; row++) {
+            action.accept(cursor.moveTo(row));
+        }
+    }
+
+    /**
+     * Returns the sum of the total weights of all rows.
+     *
+     * @return the total weight of the catalogue
+     */
+    public double sumTotalWeights() {
+        double sum = 0;
+        for (int row = 0; row < size; row++) {
+            ByteBuffer rows = rowChunks[row >>> CHUNK_SHIFT];
+            int base = (row & CHUNK_MASK) * ROW_SIZE;
+            sum += rows.getDouble(base + COFFEE_WEIGHT) + rows.getDouble(base + PACKAGING_WEIGHT);
+        }
+        return sum;
+    }
+
+    /**
+     * Creates a new {@link Coffee} with the state and properties of the specified row, of the
+     * class matching its state.
+     *
+     * @param row the row index
+     * @return a new coffee
+     * @throws IndexOutOfBoundsException if the row index is out of range
+     */
+    public Coffee toCoffee(int row) {
+        Cursor cursor = new Cursor().moveTo(row);
+        return cursor.getCoffeeState().newCoffee(cursor.getName(), cursor.getPrice(),
+                cursor.getCoffeeWeight(), cursor.getPackagingWeight(), cursor.getCoffeeVolume(),
+                cursor.getPackagingVolume(), cursor.getQualityRating());
+    }
+
+    /**
+     * Removes all rows. The direct memory is released once the garbage collector reclaims the
+     * dropped chunks.
+     */
+    public void clear() {
+        rowChunks = new ByteBuffer[1];
+        nameOffsetChunks = new ByteBuffer[1];
+        nameChunks = new ByteBuffer[1];
+        nameChunkCount = 0;
+        nameChunkUsed = 0;
+        indexChunks = allocateIndex(CHUNK_ENTRIES);
+        indexMask = CHUNK_ENTRIES - 1;
+        size = 0;
+    }
+
+    /**
+     * A reusable flyweight view of one row, exposing the getters of {@link Coffee}. Moving the
+     * cursor to another row creates no objects, and every getter reads straight from off-heap
+     * memory, so a single cursor can scan any number of rows.
+     */
+    public final class Cursor {
+        /** The row the cursor is positioned at. */
+        private int row;
+
+        /** The chunk holding the row. */
+        private ByteBuffer rows;
+
+        /** The offset of the row within its chunk. */
+        private int base;
+
+        /**
+         * Constructs a cursor that is not positioned at any row yet.
+         */
+        private Cursor() {
+        }
+
+        /**
+         * Positions the cursor at the specified row.
+         *
+         * @param row the row index
+         * @return this cursor
+         * @throws IndexOutOfBoundsException if the row index is out of range
+         */
+        public Cursor moveTo(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " is out of range for size " + size + ".");
+            }
+            this.row = row;
+            rows = rowChunks[row >>> CHUNK_SHIFT];
+            base = (row & CHUNK_MASK) * ROW_SIZE;
+            return this;
+        }
+
+        /**
+         * Returns the row the cursor is positioned at.
+         *
+         * @return the row index
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Returns the name of the coffee product. The name is decoded into a new string on every
+         * call.
+         *
+         * @return the name of the coffee product
+         */
+        public String getName() {
+            long offset = nameOffset(row);
+            ByteBuffer names = nameChunks[(int) (offset / NAME_CHUNK_SIZE)];
+            byte[] bytes = new byte[rows.getInt(base + NAME_LENGTH)];
+            names.get((int) (offset % NAME_CHUNK_SIZE), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the price of the coffee product.
+         *
+         * @return the price of the coffee product
+         */
+        public double getPrice() {
+            return rows.getDouble(base + PRICE);
+        }
+
+        /**
+         * Returns the weight of the coffee content.
+         *
+         * @return the weight of the coffee content
+         */
+        public double getCoffeeWeight() {
+            return rows.getDouble(base + COFFEE_WEIGHT);
+        }
+
+        /**
+         * Returns the weight of the packaging.
+         *
+         * @return the weight of the packaging
+         */
+        public double getPackagingWeight() {
+            return rows.getDouble(base + PACKAGING_WEIGHT);
+        }
+
+        /**
+         * Returns the volume of the coffee content.
+         *
+         * @return the volume of the coffee content
+         */
+        public double getCoffeeVolume() {
+            return rows.getDouble(base + COFFEE_VOLUME);
+        }
+
+        /**
+         * Returns the volume of the packaging.
+         *
+         * @return the volume of the packaging
+         */
+        public double getPackagingVolume() {
+            return rows.getDouble(base + PACKAGING_VOLUME);
+        }
+
+        /**
+         * Returns the quality rating of the coffee product.
+         *
+         * @return the quality rating of the coffee product
+         */
+        public int getQualityRating() {
+            return rows.getShort(base + QUALITY_RATING);
+        }
+
+        /**
+         * Returns the state of the coffee (e.g., "Ground", "Whole Bean").
+         *
+         * @return the label of the state of the coffee
+         */
+        public String getState() {
+            return getCoffeeState().getLabel();
+        }
+
+        /**
+         * Returns the state of the coffee as a {@link CoffeeState} constant.
+         *
+         * @return the state of the coffee
+         */
+        public CoffeeState getCoffeeState() {
+            return CoffeeState.ofOrdinal(rows.getShort(base + STATE));
+        }
+
+        /**
+         * Returns the total weight (coffee + packaging) of the coffee product.
+         *
+         * @return the total weight of the coffee product
+         */
+        public double getTotalWeight() {
+            return getCoffeeWeight() + getPackagingWeight();
+        }
+
+        /**
+         * Returns the total volume (coffee + packaging) of the coffee product.
+         *
+         * @return the total volume of the coffee product
+         */
+        public double getTotalVolume() {
+            return getCoffeeVolume() + getPackagingVolume();
+        }
+
+        /**
+         * Returns the price-to-weight ratio of the coffee product.
+         *
+         * @return the price-to-weight ratio
+         * @throws ArithmeticException if total weight is zero
+         */
+        public double getPriceWeightRatio() {
+            double totalWeight = getTotalWeight();
+            if (totalWeight == 0) {
+                throw new ArithmeticException("Total weight cannot be zero when calculating price/weight ratio.");
+            }
+            return getPrice() / totalWeight;
+        }
+    }
+}
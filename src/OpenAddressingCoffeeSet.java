@@ -0,0 +1,612 @@
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A compact implementation of a {@link Set} interface for {@link Coffee} objects using open
+ * addressing with linear probing.
+ * <p>
+ * The elements are stored directly in a flat array, next to a parallel array of their cached
+ * hash codes, so the set allocates no per-element objects: each element costs one reference and
+ * one {@code int} per table slot. Probes compare the cached hash before calling
+ * {@link Coffee#equals(Object)}, and growing the table never recomputes a hash code. Removal
+ * shifts the following elements of the probe run back instead of leaving tombstones, so lookups
+ * never slow down after many removals. The table doubles whenever the number of elements would
+ * exceed the configured load factor. Iteration order is unspecified, iterators are fail-fast
+ * and support {@link Iterator#remove()}. Null elements are not permitted.
+ * <p>
+ * Unlike {@link CoffeeSet}, the set does not track its elements: coffees must not be modified
+ * while they are in the set, or they can no longer be found; {@link Coffee#freeze()} can be
+ * used to enforce this.
+ */
+public class OpenAddressingCoffeeSet implements Set<Coffee> {
+    /** The load factor used when none is specified. */
+    private static final float DEFAULT_LOAD_FACTOR = 0.7f;
+
+    /** The smallest table capacity. */
+    private static final int MIN_CAPACITY = 8;
+
+    /** The largest table capacity. */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /** The fraction of the table that may be occupied before it grows. */
+    private final float loadFactor;
+
+    /** The table of elements; empty slots are null. */
+    private Coffee[] table;
+
+    /** The cached hash codes of the elements, parallel to {@link #table}. */
+    private int[] hashes;
+
+    /** The number of elements in the set. */
+    private int size;
+
+    /** The number of elements the table may hold before it grows. */
+    private int threshold;
+
+    /** The number of structural modifications, used to make iterators fail-fast. */
+    private int modCount;
+
+    /**
+     * Constructs an empty {@code OpenAddressingCoffeeSet}.
+     */
+    public OpenAddressingCoffeeSet() {
+        this(0, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty {@code OpenAddressingCoffeeSet} sized to hold the specified number of
+     * elements without growing.
+     *
+     * @param expectedSize the number of elements the set is expected to hold
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public OpenAddressingCoffeeSet(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty {@code OpenAddressingCoffeeSet} with the specified load factor, sized
+     * to hold the specified number of elements without growing. Lower load factors shorten the
+     * probe runs at the cost of a larger table.
+     *
+     * @param expectedSize the number of elements the set is expected to hold
+     * @param loadFactor the fraction of the table that may be occupied, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the expected size is negative or the load factor is
+     *         not between 0 and 1 exclusive
+     */
+    public OpenAddressingCoffeeSet(int expectedSize, float loadFactor) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative.");
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1 exclusive.");
+        }
+        this.loadFactor = loadFactor;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Constructs an {@code OpenAddressingCoffeeSet} and adds all elements from the specified
+     * collection.
+     *
+     * @param coffees the collection of coffee elements to add
+     */
+    public OpenAddressingCoffeeSet(Collection<? extends Coffee> coffees) {
+        this(coffees.size());
+        addAll(coffees);
+    }
+
+    /**
+     * Returns the smallest power of two table capacity that holds the specified number of
+     * elements within the load factor.
+     *
+     * @param expectedSize the number of elements
+     * @return the table capacity
+     */
+    private int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) loadFactor) + 1;
+        if (needed > MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    /**
+     * Replaces the table with an empty one of the specified capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     */
+    private void allocate(int capacity) {
+        table = new Coffee[capacity];
+        hashes = new int[capacity];
+        threshold = capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Returns the home slot of a hash code. The hash is scrambled with the golden ratio so that
+     * hash codes differing only in their high bits still spread over the table.
+     *
+     * @param hash the hash code
+     * @param mask the table capacity minus one
+     * @return the index of the first slot to probe
+     */
+    private static int home(int hash, int mask) {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the slot holding the specified object.
+     *
+     * @param o the object to look for
+     * @return the index of its slot, or -1 if it is not in the set
+     */
+    private int indexOf(Object o) {
+        if (!(o instanceof Coffee)) {
+            return -1;
+        }
+        int hash = o.hashCode();
+        Coffee[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = home(hash, mask); ; i = (i + 1) & mask) {
+            Coffee slot = tab[i];
+            if (slot == null) {
+                return -1;
+            }
+            if (hashes[i] == hash && (slot == o || slot.equals(o))) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Adds a {@code Coffee} element to the set.
+     *
+     * @param coffee the coffee element to be added
+     * @return {@code true} if the element was added successfully; {@code false} if the element already exists
+     * @throws NullPointerException if the coffee is null
+     * @throws IllegalStateException if the set cannot grow any further
+     */
+    @Override
+    public boolean add(Coffee coffee) {
+        Objects.requireNonNull(coffee, "Coffee cannot be null.");
+        int hash = coffee.hashCode();
+        int mask = table.length - 1;
+        int i = home(hash, mask);
+        for (Coffee slot; (slot = table[i]) != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && (slot == coffee || slot.equals(coffee))) {
+                return false;
+            }
+        }
+        if (size >= threshold) {
+            grow();
+            mask = table.length - 1;
+            i = home(hash, mask);
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+        }
+        table[i] = coffee;
+        hashes[i] = hash;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Doubles the table and reinserts every element using its cached hash code.
+     *
+     * @throws IllegalStateException if the table is already at its maximum capacity
+     */
+    private void grow() {
+        if (table.length == MAX_CAPACITY) {
+            throw new IllegalStateException("OpenAddressingCoffeeSet cannot hold more elements.");
+        }
+        Coffee[] oldTable = table;
+        int[] oldHashes = hashes;
+        allocate(oldTable.length << 1);
+        int mask = table.length - 1;
+        for (int j = 0; j < oldTable.length; j++) {
+            Coffee coffee = oldTable[j];
+            if (coffee != null) {
+                int i = home(oldHashes[j], mask);
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = coffee;
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    /**
+     * Removes the specified object from the set if it is present.
+     *
+     * @param o the object to be removed
+     * @return {@code true} if the object was removed; {@code false} otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        int i = indexOf(o);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Empties the specified slot and shifts back the elements of the probe run that follows it,
+     * so that no element is separated from its home slot by an empty slot. Elements only move
+     * towards the emptied slot and never across another empty slot.
+     *
+     * @param i the index of the slot to empty
+     */
+    private void removeAt(int i) {
+        Coffee[] tab = table;
+        int mask = tab.length - 1;
+        int gap = i;
+        for (int j = (i + 1) & mask; tab[j] != null; j = (j + 1) & mask) {
+            int distance = (j - home(hashes[j], mask)) & mask;
+            if (distance >= ((j - gap) & mask)) {
+                tab[gap] = tab[j];
+                hashes[gap] = hashes[j];
+                gap = j;
+            }
+        }
+        tab[gap] = null;
+        hashes[gap] = 0;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Checks if the set contains the specified object.
+     *
+     * @param o the object to check for
+     * @return {@code true} if the object is present; {@code false} otherwise
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     *
+     * @return the size of the set
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return {@code true} if the set is empty; {@code false} otherwise
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all elements from the set. The table keeps its capacity.
+     */
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, null);
+            Arrays.fill(hashes, 0);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    /**
+     * Returns a fail-fast iterator over the elements in the set.
+     *
+     * @return an iterator over the elements in the set
+     */
+    @Override
+    public Iterator<Coffee> iterator() {
+        return new TableIterator();
+    }
+
+    /**
+     * Performs the given action for each element of the set by scanning the table directly.
+     *
+     * @param action the action to be performed for each element
+     * @throws ConcurrentModificationException if the action modifies the set
+     */
+    @Override
+    public void forEach(Consumer<? super Coffee> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        Coffee[] tab = table;
+        for (Coffee coffee : tab) {
+            if (coffee != null) {
+                action.accept(coffee);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Checks if the set contains all elements from the specified collection.
+     *
+     * @param c the collection to check
+     * @return {@code true} if all elements are present; {@code false} otherwise
+     */
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all elements from the specified collection to the set.
+     *
+     * @param c the collection of elements to add
+     * @return {@code true} if any elements were added; {@code false} otherwise
+     */
+    @Override
+    public boolean addAll(Collection<? extends Coffee> c) {
+        boolean changed = false;
+        for (Coffee coffee : c) {
+            if (add(coffee)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes all elements from the specified collection from the set.
+     *
+     * @param c the collection of elements to remove
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Retains only the elements in the set that are contained in the specified collection.
+     *
+     * @param c the collection of elements to retain
+     * @return {@code true} if any elements were removed; {@code false} otherwise
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        boolean changed = false;
+        Iterator<Coffee> it = iterator();
+        while (it.hasNext()) {
+            if (!c.contains(it.next())) {
+                it.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns an array containing all elements in the set.
+     *
+     * @return an array containing all elements in the set
+     */
+    @Override
+    public Object[] toArray() {
+        return toArray(new Object[size]);
+    }
+
+    /**
+     * Returns an array containing all elements in the set, using the specified array
+     * if it is large enough, or allocating a new array of the same runtime type otherwise.
+     * If the specified array is larger than the set, the element following the last one is
+     * set to {@code null}.
+     *
+     * @param a the array into which the elements will be stored
+     * @param <T> the type of the array elements
+     * @return an array containing all elements in the set
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        int index = 0;
+        for (Coffee coffee : table) {
+            if (coffee != null) {
+                a[index++] = (T) coffee;
+            }
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Compares the specified object with this set for equality. Following the {@link Set}
+     * contract, the result is {@code true} if the object is a set of the same size that
+     * contains every element of this set.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the object is an equal set; {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set)) {
+            return false;
+        }
+        Set<?> other = (Set<?>) o;
+        if (other.size() != size) {
+            return false;
+        }
+        for (Coffee coffee : table) {
+            if (coffee != null && !other.contains(coffee)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the set, the sum of the cached hash codes of its elements as
+     * required by the {@link Set} contract.
+     *
+     * @return the hash code of the set
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                h += hashes[i];
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of the set.
+     *
+     * @return a string listing the elements of the set
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Coffee coffee : table) {
+            if (coffee != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(coffee);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * An iterator that walks the table once around, starting just after an empty slot.
+     * <p>
+     * Because backward-shift removal never moves an element across an empty slot, starting at
+     * one guarantees that {@link #remove()} only moves elements that have not been returned yet.
+     * After a removal the current slot is visited again, since it may have received the next
+     * element of its probe run.
+     */
+    private final class TableIterator implements Iterator<Coffee> {
+        /** The index of the empty slot where the walk starts and ends. */
+        private final int start;
+
+        /** The number of slots visited so far. */
+        private int visited;
+
+        /** The index of the slot of the last returned element, or -1 if there is none. */
+        private int lastReturned = -1;
+
+        /** The number of elements not yet returned. */
+        private int remaining = size;
+
+        /** The modification count the set is expected to have. */
+        private int expectedModCount = modCount;
+
+        /**
+         * Constructs an iterator positioned at the first empty slot of the table. The load
+         * factor is below one, so the table always has one.
+         */
+        TableIterator() {
+            int i = 0;
+            while (table[i] != null) {
+                i++;
+            }
+            start = i;
+        }
+
+        /**
+         * Checks if there are more elements to return.
+         *
+         * @return {@code true} if there are more elements; {@code false} otherwise
+         */
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        /**
+         * Returns the next element in the set.
+         *
+         * @return the next element in the set
+         * @throws NoSuchElementException if there are no more elements
+         * @throws ConcurrentModificationException if the set was modified outside the iterator
+         */
+        @Override
+        public Coffee next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            Coffee[] tab = table;
+            int mask = tab.length - 1;
+            while (true) {
+                int i = (start + 1 + visited) & mask;
+                visited++;
+                if (tab[i] != null) {
+                    lastReturned = i;
+                    remaining--;
+                    return tab[i];
+                }
+            }
+        }
+
+        /**
+         * Removes the last element returned by this iterator from the set.
+         *
+         * @throws IllegalStateException if {@link #next()} has not been called, or the element
+         *         was already removed
+         * @throws ConcurrentModificationException if the set was modified outside the iterator
+         */
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(lastReturned);
+            lastReturned = -1;
+            visited--;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable, persistent {@link java.util.Set} of {@link Coffee} objects based on a hash
+ * array mapped trie (HAMT).
+ * <p>
+ * {@link #with(Coffee)} and {@link #without(Object)} return a new version of the set in
+ * O(log32 n) time and leave the receiver unchanged. The new version shares every node that the
+ * update did not touch with the old one, so holding on to older versions costs only the
+ * changed paths. A version can therefore be handed to readers as a consistent snapshot while
+ * writers keep deriving new versions, without any locking. The mutating methods of the
+ * {@code Set} interface throw {@link UnsupportedOperationException}. Iteration order is
+ * unspecified. Coffees should be {@linkplain Coffee#freeze() frozen} so that their hash codes
+ * cannot change while they are stored.
+ */
+public final class PersistentCoffeeSet extends AbstractSet<Coffee> {
+    /** The number of hash bits consumed per trie level. */
+    private static final int BITS = 5;
+
+    /** The mask extracting the hash bits of one level. */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** The empty set. */
+    private static final PersistentCoffeeSet EMPTY = new PersistentCoffeeSet(BitmapNode.EMPTY, 0);
+
+    /** The root node of the trie. */
+    private final TrieNode root;
+
+    /** The number of elements in the set. */
+    private final int size;
+
+    /**
+     * Constructs a set with the specified root and size.
+     *
+     * @param root the root node
+     * @param size the number of elements
+     */
+    private PersistentCoffeeSet(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty set.
+     *
+     * @return the empty set
+     */
+    public static PersistentCoffeeSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a set holding the elements of the specified collection.
+     *
+     * @param coffees the coffees to add
+     * @return a set holding the coffees
+     * @throws NullPointerException if the collection holds a null element
+     */
+    public static PersistentCoffeeSet of(Collection<? extends Coffee> coffees) {
+        PersistentCoffeeSet set = EMPTY;
+        for (Coffee coffee : coffees) {
+            set = set.with(coffee);
+        }
+        return set;
+    }
+
+    /**
+     * Returns a set holding the elements of this set and the specified coffee.
+     *
+     * @param coffee the coffee to add
+     * @return the new version of the set, or this set if it already holds the coffee
+     * @throws NullPointerException if the coffee is null
+     */
+    public PersistentCoffeeSet with(Coffee coffee) {
+        Objects.requireNonNull(coffee, "Coffee cannot be null.");
+        TrieNode newRoot = root.with(coffee, coffee.hashCode(), 0);
+        return newRoot == root ? this : new PersistentCoffeeSet(newRoot, size + 1);
+    }
+
+    /**
+     * Returns a set holding the elements of this set except the specified object.
+     *
+     * @param o the object to remove
+     * @return the new version of the set, or this set if it does not hold the object
+     */
+    public PersistentCoffeeSet without(Object o) {
+        if (!(o instanceof Coffee)) {
+            return this;
+        }
+        TrieNode newRoot = root.without((Coffee) o, o.hashCode(), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? EMPTY : new PersistentCoffeeSet(newRoot, size - 1);
+    }
+
+    /**
+     * Returns a set holding the elements of this set and of the specified collection.
+     *
+     * @param coffees the coffees to add
+     * @return the new version of the set
+     * @throws NullPointerException if the collection holds a null element
+     */
+    public PersistentCoffeeSet withAll(Collection<? extends Coffee> coffees) {
+        PersistentCoffeeSet set = this;
+        for (Coffee coffee : coffees) {
+            set = set.with(coffee);
+        }
+        return set;
+    }
+
+    /**
+     * Checks if the set contains the specified object.
+     *
+     * @param o the object to check for
+     * @return {@code true} if the object is present; {@code false} otherwise
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Coffee && root.contains((Coffee) o, o.hashCode(), 0);
+    }
+
+    /**
+     * Returns the number of elements in the set.
+     *
+     * @return the size of the set
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the elements in the set. The iterator does not support removal.
+     *
+     * @return an iterator over the elements in the set
+     */
+    @Override
+    public Iterator<Coffee> iterator() {
+        return new TrieIterator(root);
+    }
+
+    /**
+     * Creates the subtrie holding a coffee being added and an existing coffee or collision node
+     * that occupy the same position at the level above.
+     *
+     * @param existing the coffee or collision node already stored
+     * @param existingHash the hash code of the existing coffee or collision node
+     * @param coffee the coffee being added
+     * @param hash the hash code of the coffee being added
+     * @param shift the number of hash bits consumed by the levels above the new subtrie
+     * @return the new subtrie
+     */
+    private static TrieNode merge(Object existing, int existingHash, Coffee coffee, int hash, int shift) {
+        if (existingHash == hash) {
+            return new CollisionNode(hash, new Coffee[] {(Coffee) existing, coffee});
+        }
+        int existingPosition = (existingHash >>> shift) & MASK;
+        int position = (hash >>> shift) & MASK;
+        if (existingPosition == position) {
+            return new BitmapNode(1 << position,
+                    new Object[] {merge(existing, existingHash, coffee, hash, shift + BITS)});
+        }
+        Object[] slots = existingPosition < position
+                ? new Object[] {existing, coffee} : new Object[] {coffee, existing};
+        return new BitmapNode((1 << existingPosition) | (1 << position), slots);
+    }
+
+    /**
+     * A node of the trie.
+     */
+    private interface TrieNode {
+        /**
+         * Checks if the subtrie holds a coffee.
+         *
+         * @param coffee the coffee
+         * @param hash the hash code of the coffee
+         * @param shift the number of hash bits consumed by the levels above
+         * @return {@code true} if the coffee is present; {@code false} otherwise
+         */
+        boolean contains(Coffee coffee, int hash, int shift);
+
+        /**
+         * Returns the subtrie with the specified coffee added.
+         *
+         * @param coffee the coffee
+         * @param hash the hash code of the coffee
+         * @param shift the number of hash bits consumed by the levels above
+         * @return the new subtrie, or this node if the coffee is already present
+         */
+        TrieNode with(Coffee coffee, int hash, int shift);
+
+        /**
+         * Returns the subtrie with the specified coffee removed.
+         *
+         * @param coffee the coffee
+         * @param hash the hash code of the coffee
+         * @param shift the number of hash bits consumed by the levels above
+         * @return the new subtrie, this node if the coffee is absent, or null if it became empty
+         */
+        TrieNode without(Coffee coffee, int hash, int shift);
+
+        /**
+         * Returns the number of slots of this node.
+         *
+         * @return the number of slots
+         */
+        int slotCount();
+
+        /**
+         * Returns the content of a slot: a coffee or a child node.
+         *
+         * @param i the slot index
+         * @return the content of the slot
+         */
+        Object slot(int i);
+    }
+
+    /**
+     * An inner node whose slots hold either a coffee or a child node, compressed by a bitmap of
+     * the occupied positions.
+     */
+    private static final class BitmapNode implements TrieNode {
+        /** The empty node, used as the root of the empty set. */
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        /** The bitmap of the occupied positions. */
+        private final int bitmap;
+
+        /** The contents of the occupied positions, in position order. */
+        private final Object[] slots;
+
+        /**
+         * Constructs a new BitmapNode.
+         *
+         * @param bitmap the bitmap of the occupied positions
+         * @param slots the contents of the occupied positions
+         */
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /**
+         * Returns the index of the slot of a position.
+         *
+         * @param bit the bit of the position
+         * @return the slot index
+         */
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public boolean contains(Coffee coffee, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return false;
+            }
+            Object slot = slots[indexOf(bit)];
+            if (slot instanceof TrieNode) {
+                return ((TrieNode) slot).contains(coffee, hash, shift + BITS);
+            }
+            return slot.equals(coffee);
+        }
+
+        @Override
+        public TrieNode with(Coffee coffee, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = coffee;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof TrieNode) {
+                newSlot = ((TrieNode) slot).with(coffee, hash, shift + BITS);
+            } else if (slot.equals(coffee)) {
+                return this;
+            } else {
+                newSlot = merge(slot, slot.hashCode(), coffee, hash, shift + BITS);
+            }
+            if (newSlot == slot) {
+                return this;
+            }
+            Object[] newSlots = slots.clone();
+            newSlots[index] = newSlot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Override
+        public TrieNode without(Coffee coffee, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = indexOf(bit);
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof TrieNode) {
+                TrieNode child = ((TrieNode) slot).without(coffee, hash, shift + BITS);
+                if (child == slot) {
+                    return this;
+                }
+                newSlot = child != null && child.slotCount() == 1 && !(child.slot(0) instanceof TrieNode)
+                        ? child.slot(0) : child;
+            } else if (slot.equals(coffee)) {
+                newSlot = null;
+            } else {
+                return this;
+            }
+            if (newSlot != null) {
+                Object[] newSlots = slots.clone();
+                newSlots[index] = newSlot;
+                return new BitmapNode(bitmap, newSlots);
+            }
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+
+        @Override
+        public int slotCount() {
+            return slots.length;
+        }
+
+        @Override
+        public Object slot(int i) {
+            return slots[i];
+        }
+    }
+
+    /**
+     * A leaf node holding coffees whose hash codes are equal.
+     */
+    private static final class CollisionNode implements TrieNode {
+        /** The shared hash code of the coffees. */
+        private final int hash;
+
+        /** The coffees. */
+        private final Coffee[] coffees;
+
+        /**
+         * Constructs a new CollisionNode.
+         *
+         * @param hash the shared hash code of the coffees
+         * @param coffees the coffees
+         */
+        CollisionNode(int hash, Coffee[] coffees) {
+            this.hash = hash;
+            this.coffees = coffees;
+        }
+
+        /**
+         * Returns the index of a coffee in this node.
+         *
+         * @param coffee the coffee
+         * @return the index of the coffee, or -1 if it is absent
+         */
+        private int indexOf(Coffee coffee) {
+            for (int i = 0; i < coffees.length; i++) {
+                if (coffees[i].equals(coffee)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Coffee coffee, int hash, int shift) {
+            return hash == this.hash && indexOf(coffee) >= 0;
+        }
+
+        @Override
+        public TrieNode with(Coffee coffee, int hash, int shift) {
+            if (hash != this.hash) {
+                return merge(this, this.hash, coffee, hash, shift);
+            }
+            if (indexOf(coffee) >= 0) {
+                return this;
+            }
+            Coffee[] newCoffees = Arrays.copyOf(coffees, coffees.length + 1);
+            newCoffees[coffees.length] = coffee;
+            return new CollisionNode(this.hash, newCoffees);
+        }
+
+        @Override
+        public TrieNode without(Coffee coffee, int hash, int shift) {
+            int index = hash == this.hash ? indexOf(coffee) : -1;
+            if (index < 0) {
+                return this;
+            }
+            if (coffees.length == 1) {
+                return null;
+            }
+            Coffee[] newCoffees = new Coffee[coffees.length - 1];
+            System.arraycopy(coffees, 0, newCoffees, 0, index);
+            System.arraycopy(coffees, index + 1, newCoffees, index, coffees.length - index - 1);
+            return new CollisionNode(this.hash, newCoffees);
+        }
+
+        @Override
+        public int slotCount() {
+            return coffees.length;
+        }
+
+        @Override
+        public Object slot(int i) {
+            return coffees[i];
+        }
+    }
+
+    /**
+     * A depth-first iterator over the coffees of a trie.
+     */
+    private static final class TrieIterator implements Iterator<Coffee> {
+        /** The maximum depth of a trie: seven bitmap levels and a collision node. */
+        private static final int MAX_DEPTH = (Integer.SIZE + BITS - 1) / BITS + 1;
+
+        /** The nodes being traversed, innermost last. */
+        private final TrieNode[] nodes = new TrieNode[MAX_DEPTH];
+
+        /** The next slot index of each node being traversed. */
+        private final int[] positions = new int[MAX_DEPTH];
+
+        /** The index of the innermost node being traversed, or -1 if the traversal is complete. */
+        private int depth;
+
+        /** The next coffee to return, or null if the traversal is complete. */
+        private Coffee next;
+
+        /**
+         * Constructs an iterator over the coffees of a trie.
+         *
+         * @param root the root of the trie
+         */
+        TrieIterator(TrieNode root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        /**
+         * Moves to the next coffee in depth-first order.
+         */
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                TrieNode node = nodes[depth];
+                int position = positions[depth];
+                if (position == node.slotCount()) {
+                    nodes[depth--] = null;
+                    continue;
+                }
+                positions[depth] = position + 1;
+                Object slot = node.slot(position);
+                if (slot instanceof TrieNode) {
+                    depth++;
+                    nodes[depth] = (TrieNode) slot;
+                    positions[depth] = 0;
+                } else {
+                    next = (Coffee) slot;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Coffee next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Coffee coffee = next;
+            advance();
+            return coffee;
+        }
+    }
+}
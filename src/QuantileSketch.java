@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch answering approximate quantile queries over a stream of finite non-negative
+ * values in constant memory, in the manner of DDSketch.
+ * <p>
+ * Values are counted in logarithmically sized buckets: bucket {@code i} covers the range
+ * {@code (gamma^(i-1), gamma^i]} where {@code gamma = (1 + a) / (1 - a)} for the relative
+ * accuracy {@code a}, so every quantile is returned within a relative error of {@code a} of a
+ * value of the stream. Sketches built with the same accuracy over separate partitions of a data
+ * set can be {@linkplain #merge(QuantileSketch) merged} into the sketch of the whole data set,
+ * which lets them be built in parallel. If the values span more than the bucket limit, the
+ * lowest buckets are collapsed, which only affects the accuracy of the lowest quantiles.
+ */
+public class QuantileSketch {
+    /** The bucket limit used when none is specified. */
+    private static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    /** The smallest value counted in a bucket; smaller values are counted as zero. */
+    private static final double MIN_INDEXABLE_VALUE = Double.MIN_NORMAL;
+
+    /** The relative accuracy of the quantiles. */
+    private final double relativeAccuracy;
+
+    /** The ratio between the upper bounds of two consecutive buckets. */
+    private final double gamma;
+
+    /** The natural logarithm of {@link #gamma}. */
+    private final double logGamma;
+
+    /** The largest number of buckets. */
+    private final int maxBuckets;
+
+    /** The bucket counts, or null until the first positive value; {@code counts[i]} is bucket {@code offset + i}. */
+    private long[] counts;
+
+    /** The index of the bucket counted by {@code counts[0]}. */
+    private int offset;
+
+    /** The index of the highest non-empty bucket. */
+    private int maxIndex = Integer.MIN_VALUE;
+
+    /** The number of values counted as zero. */
+    private long zeroCount;
+
+    /** The number of values added. */
+    private long count;
+
+    /** The smallest value added. */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /** The largest value added. */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructs an empty {@code QuantileSketch} with the specified relative accuracy.
+     *
+     * @param relativeAccuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the relative accuracy is not between 0 and 1 exclusive
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        this(relativeAccuracy, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * Constructs an empty {@code QuantileSketch} with the specified relative accuracy and bucket
+     * limit.
+     *
+     * @param relativeAccuracy the relative accuracy of the quantiles, between 0 and 1 exclusive
+     * @param maxBuckets the largest number of buckets, which bounds the memory of the sketch
+     * @throws IllegalArgumentException if the relative accuracy is not between 0 and 1 exclusive,
+     *                                  or if the bucket limit is not positive
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1 exclusive.");
+        }
+        if (maxBuckets <= 0) {
+            throw new IllegalArgumentException("Bucket limit must be positive.");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value to add
+     * @throws IllegalArgumentException if the value is negative, infinite or not a number
+     */
+    public void add(double value) {
+        if (!(value >= 0 && value < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("Value must be a finite non-negative number.");
+        }
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount++;
+        } else {
+            addToBucket((int) Math.ceil(Math.log(value) / logGamma), 1);
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values counted by another sketch to this one.
+     *
+     * @param other the sketch to merge into this one
+     * @return this sketch
+     * @throws IllegalArgumentException if the other sketch has a different relative accuracy
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Only sketches with the same relative accuracy can be merged.");
+        }
+        if (other.counts != null) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    addToBucket(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Adds a number of values to a bucket, moving the window of buckets if needed.
+     *
+     * @param index the index of the bucket
+     * @param n the number of values
+     */
+    private void addToBucket(int index, long n) {
+        if (counts == null) {
+            counts = new long[maxBuckets];
+            offset = index - maxBuckets / 2;
+        }
+        if (index >= offset + counts.length) {
+            shiftTo(index - counts.length + 1);
+        } else if (index < offset) {
+            int newOffset = Math.max(index, maxIndex - counts.length + 1);
+            if (newOffset < offset) {
+                shiftTo(newOffset);
+            }
+            index = Math.max(index, offset);
+        }
+        counts[index - offset] += n;
+        maxIndex = Math.max(maxIndex, index);
+    }
+
+    /**
+     * Moves the window of buckets to start at the specified bucket. Buckets that fall below the
+     * window are collapsed into its lowest bucket.
+     *
+     * @param newOffset the index of the new lowest bucket
+     */
+    private void shiftTo(int newOffset) {
+        long[] shifted = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                shifted[Math.max(0, offset + i - newOffset)] += counts[i];
+            }
+        }
+        counts = shifted;
+        offset = newOffset;
+    }
+
+    /**
+     * Returns an approximation of the specified quantile of the added values.
+     *
+     * @param quantile the quantile, between 0 and 1 inclusive; 0.5 is the median
+     * @return the approximate quantile, or {@code NaN} if the sketch is empty
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1
+     */
+    public double getQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return min;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                double value = 2 * Math.exp((offset + i) * logGamma) / (gamma + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the relative accuracy of the quantiles.
+     *
+     * @return the relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest value added.
+     *
+     * @return the smallest value, or {@code NaN} if the sketch is empty
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest value added.
+     *
+     * @return the largest value, or {@code NaN} if the sketch is empty
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns a string representation of the sketch with its count, extremes and quartiles.
+     *
+     * @return a string describing the sketch
+     */
+    @Override
+    public String toString() {
+        double[] quartiles = {getQuantile(0.25), getQuantile(0.5), getQuantile(0.75)};
+        return "QuantileSketch{count=" + count + ", min=" + getMin() + ", quartiles="
+                + Arrays.toString(quartiles) + ", max=" + getMax() + "}";
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * A {@link NavigableSet} of {@link Coffee} objects kept in the order defined by a pluggable
+ * {@link Comparator}, such as those provided by {@link CoffeeComparators}.
+ * <p>
+ * The set is backed by a red-black tree, so insertion, removal, {@code floor} and
+ * {@code ceiling} take O(log n) time, and iterating a {@code subSet}, {@code headSet} or
+ * {@code tailSet} view of k elements takes O(log n + k) time. When the comparator was created
+ * with {@link CoffeeComparators#comparing}, the set also answers range queries directly on the
+ * sort key, for example all coffees with a price/weight ratio between two values.
+ * <p>
+ * Coffees must not be modified in a way that changes their order while they are in the set;
+ * {@link Coffee#freeze()} can be used to enforce this.
+ */
+public class SortedCoffeeSet extends TreeSet<Coffee> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an empty {@code SortedCoffeeSet} ordered by the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order the set
+     * @throws NullPointerException if the comparator is null
+     */
+    public SortedCoffeeSet(Comparator<? super Coffee> comparator) {
+        super(Objects.requireNonNull(comparator, "Comparator cannot be null."));
+    }
+
+    /**
+     * Constructs a {@code SortedCoffeeSet} ordered by the specified comparator and adds all
+     * elements from the specified collection.
+     *
+     * @param comparator the comparator that will be used to order the set
+     * @param coffees the collection of coffee elements to add
+     * @throws NullPointerException if the comparator is null
+     */
+    public SortedCoffeeSet(Comparator<? super Coffee> comparator, Collection<? extends Coffee> coffees) {
+        this(comparator);
+        addAll(coffees);
+    }
+
+    /**
+     * Returns a view of the coffees whose sort key lies in the specified range.
+     *
+     * @param fromKey the low end of the key range
+     * @param fromInclusive {@code true} if coffees with a key equal to {@code fromKey} are included
+     * @param toKey the high end of the key range
+     * @param toInclusive {@code true} if coffees with a key equal to {@code toKey} are included
+     * @return a view of the coffees whose key lies in the range
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey}
+     */
+    public NavigableSet<Coffee> keyRange(double fromKey, boolean fromInclusive, double toKey, boolean toInclusive) {
+        requireKeyComparator();
+        if (Double.compare(fromKey, toKey) == 0 && !fromInclusive && !toInclusive) {
+            // An open range around a single key is empty; its probes would be out of order.
+            Coffee probe = CoffeeComparators.probe(fromKey, false);
+            return subSet(probe, true, probe, true);
+        }
+        return subSet(CoffeeComparators.probe(fromKey, !fromInclusive), true,
+                CoffeeComparators.probe(toKey, toInclusive), true);
+    }
+
+    /**
+     * Returns a view of the coffees whose sort key is less than (or equal to, if
+     * {@code inclusive} is true) the specified key.
+     *
+     * @param toKey the high end of the key range
+     * @param inclusive {@code true} if coffees with a key equal to {@code toKey} are included
+     * @return a view of the coffees whose key lies below the bound
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     */
+    public NavigableSet<Coffee> keyHead(double toKey, boolean inclusive) {
+        requireKeyComparator();
+        return headSet(CoffeeComparators.probe(toKey, inclusive), true);
+    }
+
+    /**
+     * Returns a view of the coffees whose sort key is greater than (or equal to, if
+     * {@code inclusive} is true) the specified key.
+     *
+     * @param fromKey the low end of the key range
+     * @param inclusive {@code true} if coffees with a key equal to {@code fromKey} are included
+     * @return a view of the coffees whose key lies above the bound
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     */
+    public NavigableSet<Coffee> keyTail(double fromKey, boolean inclusive) {
+        requireKeyComparator();
+        return tailSet(CoffeeComparators.probe(fromKey, !inclusive), true);
+    }
+
+    /**
+     * Returns the greatest coffee whose sort key is less than or equal to the specified key.
+     *
+     * @param key the key to search for
+     * @return the greatest coffee with a key not above {@code key}, or {@code null} if there is none
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     */
+    public Coffee keyFloor(double key) {
+        requireKeyComparator();
+        return floor(CoffeeComparators.probe(key, true));
+    }
+
+    /**
+     * Returns the least coffee whose sort key is greater than or equal to the specified key.
+     *
+     * @param key the key to search for
+     * @return the least coffee with a key not below {@code key}, or {@code null} if there is none
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     */
+    public Coffee keyCeiling(double key) {
+        requireKeyComparator();
+        return ceiling(CoffeeComparators.probe(key, false));
+    }
+
+    /**
+     * Checks that the set is ordered by a key comparator.
+     *
+     * @throws UnsupportedOperationException if the set is not ordered by a key comparator
+     */
+    private void requireKeyComparator() {
+        if (!(comparator() instanceof CoffeeComparators.KeyComparator)) {
+            throw new UnsupportedOperationException(
+                    "Key queries require a comparator created by CoffeeComparators.comparing.");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Represents a coffee product sold as whole beans.
+ */
+public final class WholeBeanCoffee extends Coffee {
+    /**
+     * Constructs a new WholeBeanCoffee object with the specified properties.
+     *
+     * @param name the name of the coffee product
+     * @param price the price of the coffee product
+     * @param coffeeWeight the weight of the coffee content
+     * @param packagingWeight the weight of the packaging
+     * @param coffeeVolume the volume of the coffee content
+     * @param packagingVolume the volume of the packaging
+     * @param qualityRating the quality rating of the coffee product, rated from 0 to 10
+     * @throws NullPointerException if the name is null or empty
+     * @throws IllegalArgumentException if price is <= 0, or if any weight or volume is negative,
+     *                                  or if quality rating is not between 0 and 10
+     */
+    public WholeBeanCoffee(String name, double price, double coffeeWeight, double packagingWeight,
+                           double coffeeVolume, double packagingVolume, int qualityRating) {
+        super(CoffeeState.WHOLE_BEAN, name, price, coffeeWeight, packagingWeight, coffeeVolume,
+                packagingVolume, qualityRating);
+    }
+}
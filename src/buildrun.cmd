@@ -4,7 +4,7 @@ javac %1.java
 if errorlevel 1 goto ERROR
 
 :RUN
-java %1
+java %*
 goto END
 
 :ERROR